@@ -6,6 +6,7 @@ import fi.dy.masa.malilib.input.callback.AdjustableValueHotkeyCallback;
 import fi.dy.masa.malilib.network.message.MessagePacketHandler;
 import fi.dy.masa.malilib.overlay.message.MessageUtils;
 import fi.dy.masa.malilib.overlay.widget.MessageRendererWidget;
+import fi.dy.masa.malilib.render.text.StyledText;
 
 public class MaLiLibConfigInit
 {
@@ -24,6 +25,9 @@ public class MaLiLibConfigInit
 
         MaLiLibConfigs.Generic.CUSTOM_HOTBAR_MESSAGE_LIMIT.setValueChangeCallback((n, o) -> setCustomHotbarMessageLimit(n));
         MaLiLibConfigs.Generic.CUSTOM_HOTBAR_MESSAGE_LIMIT.setValueLoadCallback(MaLiLibConfigInit::setCustomHotbarMessageLimit);
+
+        MaLiLibConfigs.Generic.STYLED_TEXT_CACHE_SIZE.setValueChangeCallback((n, o) -> setStyledTextCacheSize(n));
+        MaLiLibConfigs.Generic.STYLED_TEXT_CACHE_SIZE.setValueLoadCallback(MaLiLibConfigInit::setStyledTextCacheSize);
     }
 
     private static void setCustomHotbarMessageLimit(int limit)
@@ -35,4 +39,9 @@ public class MaLiLibConfigInit
             widget.setMaxMessages(limit);
         }
     }
+
+    private static void setStyledTextCacheSize(int sizeKiB)
+    {
+        StyledText.TEXT_CACHE.setMaxWeight(sizeKiB * 1024L);
+    }
 }
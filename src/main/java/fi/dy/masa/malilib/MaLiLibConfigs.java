@@ -48,6 +48,9 @@ public class MaLiLibConfigs
         public static final IntegerConfig KEYBIND_DISPLAY_DURATION              = new IntegerConfig("keybindDisplayDuration", 5000, 0, 120000);
         public static final IntegerConfig MESSAGE_FADE_OUT_TIME                 = new IntegerConfig("messageFadeOutTime", 500, 0, 10000);
         public static final BooleanConfig OPTION_LIST_CONFIG_USE_DROPDOWN       = new BooleanConfig("optionListConfigUseDropdown", false);
+        public static final BooleanConfig OVERLAY_CULLING                       = new BooleanConfig("overlayCulling", true);
+        public static final IntegerConfig OVERLAY_MAX_RENDER_DISTANCE           = new IntegerConfig("overlayMaxRenderDistance", 0, 0, 4096);
+        public static final IntegerConfig OVERLAY_UPDATE_BUDGET                 = new IntegerConfig("overlayUpdateBudget", 8, 1, 1000);
         public static final BooleanConfig REALMS_COMMON_CONFIG                  = new BooleanConfig("realmsCommonConfig", true);
         public static final BooleanConfig REMEMBER_CONFIG_TAB_SCROLL_POSITIONS  = new BooleanConfig("rememberConfigTabScrollPositions", true);
         public static final BooleanConfig REMEMBER_FILE_BROWSER_SCROLL_POSITIONS= new BooleanConfig("rememberFileBrowserScrollPositions", true);
@@ -56,6 +59,8 @@ public class MaLiLibConfigs
         public static final BooleanConfig SHOW_INTERNAL_CONFIG_NAME             = new BooleanConfig("showInternalConfigName", false);
         public static final BooleanConfig SORT_CONFIGS_BY_NAME                  = new BooleanConfig("sortConfigsByName", false);
         public static final BooleanConfig SORT_EXTENSION_MOD_OPTIONS            = new BooleanConfig("sortExtensionModOptions", false);
+        public static final IntegerConfig STYLED_TEXT_CACHE_SIZE                = new IntegerConfig("styledTextCacheSize", 4096, 0, 262144);
+        public static final BooleanConfig TEXT_RENDER_BATCHING                  = new BooleanConfig("textRenderBatching", false);
 
         public static final ImmutableList<ConfigOption<?>> OPTIONS = ImmutableList.of(
                 ACTION_PROMPT_FUZZY_SEARCH,
@@ -80,6 +85,9 @@ public class MaLiLibConfigs
                 KEYBIND_DISPLAY_DURATION,
                 MESSAGE_FADE_OUT_TIME,
                 OPTION_LIST_CONFIG_USE_DROPDOWN,
+                OVERLAY_CULLING,
+                OVERLAY_MAX_RENDER_DISTANCE,
+                OVERLAY_UPDATE_BUDGET,
                 REALMS_COMMON_CONFIG,
                 REMEMBER_CONFIG_TAB_SCROLL_POSITIONS,
                 REMEMBER_FILE_BROWSER_SCROLL_POSITIONS,
@@ -87,7 +95,9 @@ public class MaLiLibConfigs
                 SERVER_MESSAGES,
                 SHOW_INTERNAL_CONFIG_NAME,
                 SORT_CONFIGS_BY_NAME,
-                SORT_EXTENSION_MOD_OPTIONS
+                SORT_EXTENSION_MOD_OPTIONS,
+                STYLED_TEXT_CACHE_SIZE,
+                TEXT_RENDER_BATCHING
         );
     }
 
@@ -126,6 +136,7 @@ public class MaLiLibConfigs
         public static final BooleanConfig KEYBIND_DEBUG_TOAST       = new BooleanConfig("keybindDebugToast", true);
         public static final BooleanConfig MESSAGE_KEY_TO_CHAT       = new BooleanConfig("messageKeyToChat", false);
         public static final BooleanConfig PRESSED_KEYS_TOAST        = new BooleanConfig("pressedKeysToast", false);
+        public static final BooleanConfig STYLED_TEXT_CACHE_STATS   = new BooleanConfig("styledTextCacheStats", false);
 
         public static final ImmutableList<ConfigOption<?>> OPTIONS = ImmutableList.of(
                 DEBUG_MESSAGES,
@@ -138,7 +149,8 @@ public class MaLiLibConfigs
                 KEYBIND_DEBUG_ACTIONBAR,
                 KEYBIND_DEBUG_TOAST,
                 MESSAGE_KEY_TO_CHAT,
-                PRESSED_KEYS_TOAST
+                PRESSED_KEYS_TOAST,
+                STYLED_TEXT_CACHE_STATS
         );
 
         public static final ImmutableList<HotkeyConfig> HOTKEYS = ImmutableList.of(GUI_DEBUG_KEY);
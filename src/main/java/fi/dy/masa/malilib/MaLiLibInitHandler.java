@@ -3,9 +3,11 @@ package fi.dy.masa.malilib;
 import fi.dy.masa.malilib.config.BaseModConfig;
 import fi.dy.masa.malilib.event.InitializationHandler;
 import fi.dy.masa.malilib.input.CustomHotkeyManager;
+import fi.dy.masa.malilib.network.NetworkTickHandler;
 import fi.dy.masa.malilib.network.message.ConfigOverridePacketHandler;
 import fi.dy.masa.malilib.overlay.widget.ConfigStatusIndicatorContainerWidget;
 import fi.dy.masa.malilib.registry.Registry;
+import fi.dy.masa.malilib.render.text.StyledTextCacheStatsRenderer;
 
 public class MaLiLibInitHandler implements InitializationHandler
 {
@@ -21,8 +23,10 @@ public class MaLiLibInitHandler implements InitializationHandler
         Registry.HOTKEY_MANAGER.registerHotkeyProvider(ConfigStatusIndicatorContainerWidget.getHotkeyProvider());
 
         Registry.RENDER_EVENT_DISPATCHER.registerGameOverlayRenderer(Registry.INFO_OVERLAY);
+        Registry.RENDER_EVENT_DISPATCHER.registerGameOverlayRenderer(StyledTextCacheStatsRenderer.INSTANCE);
         Registry.RENDER_EVENT_DISPATCHER.registerScreenPostRenderer(Registry.INFO_OVERLAY);
         Registry.TICK_EVENT_DISPATCHER.registerClientTickHandler(Registry.INFO_OVERLAY);
+        Registry.TICK_EVENT_DISPATCHER.registerClientTickHandler(NetworkTickHandler.INSTANCE);
 
         MaLiLibConfigInit.init();
         MaLiLibActions.init();
@@ -8,6 +8,9 @@ import net.minecraft.client.multiplayer.WorldClient;
 import fi.dy.masa.malilib.config.util.ConfigOverrideUtils;
 import fi.dy.masa.malilib.config.util.ConfigUtils;
 import fi.dy.masa.malilib.event.ClientWorldChangeHandler;
+import fi.dy.masa.malilib.network.AsyncPacketDecoder;
+import fi.dy.masa.malilib.network.PacketSendQueue;
+import fi.dy.masa.malilib.network.PacketSplitter;
 import fi.dy.masa.malilib.render.overlay.OverlayRendererContainer;
 
 public class ClientWorldChangeEventDispatcherImpl implements ClientWorldChangeEventDispatcher
@@ -39,6 +42,9 @@ public class ClientWorldChangeEventDispatcherImpl implements ClientWorldChangeEv
      */
     public void onWorldLoadPre(@Nullable WorldClient worldBefore, @Nullable WorldClient worldAfter)
     {
+        // Drop any payloads still being decoded for the previous world
+        AsyncPacketDecoder.INSTANCE.invalidatePendingResults();
+
         if (worldBefore != null && worldAfter != null)
         {
             OverlayRendererContainer.INSTANCE.saveToFile(true);
@@ -86,6 +92,8 @@ public class ClientWorldChangeEventDispatcherImpl implements ClientWorldChangeEv
     {
         ConfigOverrideUtils.resetConfigOverrides();
         ConfigUtils.saveAllConfigsToFileIfDirty();
+        PacketSplitter.removeAllSessions();
+        PacketSendQueue.INSTANCE.clear();
     }
 
     protected void onEnterWorld()
@@ -3,11 +3,13 @@ package fi.dy.masa.malilib.event.dispatch;
 import java.util.ArrayList;
 import java.util.List;
 import net.minecraft.item.ItemStack;
+import fi.dy.masa.malilib.MaLiLibConfigs;
 import fi.dy.masa.malilib.event.PostGameOverlayRenderer;
 import fi.dy.masa.malilib.event.PostItemTooltipRenderer;
 import fi.dy.masa.malilib.event.PostScreenRenderer;
 import fi.dy.masa.malilib.event.PostWorldRenderer;
 import fi.dy.masa.malilib.render.overlay.OverlayRendererContainer;
+import fi.dy.masa.malilib.render.text.TextRenderer;
 import fi.dy.masa.malilib.util.game.wrap.GameUtils;
 
 public class RenderEventDispatcherImpl implements RenderEventDispatcher
@@ -61,6 +63,12 @@ public class RenderEventDispatcherImpl implements RenderEventDispatcher
         if (this.overlayRenderers.isEmpty() == false)
         {
             GameUtils.profilerPush("malilib_game_overlay_post");
+            boolean batchText = MaLiLibConfigs.Generic.TEXT_RENDER_BATCHING.getBooleanValue();
+
+            if (batchText)
+            {
+                TextRenderer.INSTANCE.beginBatch();
+            }
 
             for (PostGameOverlayRenderer renderer : this.overlayRenderers)
             {
@@ -69,6 +77,13 @@ public class RenderEventDispatcherImpl implements RenderEventDispatcher
                 GameUtils.profilerPop();
             }
 
+            if (batchText)
+            {
+                GameUtils.profilerPush("text_batch");
+                TextRenderer.INSTANCE.endBatch();
+                GameUtils.profilerPop();
+            }
+
             GameUtils.profilerPop();
         }
     }
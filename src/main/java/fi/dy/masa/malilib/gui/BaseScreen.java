@@ -462,6 +462,13 @@ public abstract class BaseScreen extends GuiScreen
         }
 
         ScreenContext ctx = this.getContext();
+        boolean batchText = MaLiLibConfigs.Generic.TEXT_RENDER_BATCHING.getBooleanValue();
+
+        // The batch must be drawn before the screen scaling gets reset below
+        if (batchText)
+        {
+            TextRenderer.INSTANCE.beginBatch();
+        }
 
         this.renderScreenBackground(ctx);
         this.renderScreenTitle(ctx);
@@ -482,6 +489,11 @@ public abstract class BaseScreen extends GuiScreen
 
         BaseWidget.renderDebugTextAndClear(ctx);
 
+        if (batchText)
+        {
+            TextRenderer.INSTANCE.endBatch();
+        }
+
         if (this.useCustomScreenScaling)
         {
             RenderUtils.setupScaledScreenRendering(RenderUtils.getVanillaScreenScale());
@@ -897,7 +909,10 @@ public abstract class BaseScreen extends GuiScreen
     {
         if (this.hoveredWidget != null)
         {
+            // The hover info is an overlay layer, so it's rendered outside of the text batch
+            TextRenderer.INSTANCE.suspendBatch();
             this.hoveredWidget.postRenderHovered(ctx);
+            TextRenderer.INSTANCE.resumeBatch();
             RenderUtils.disableItemLighting();
         }
     }
@@ -21,6 +21,7 @@ import fi.dy.masa.malilib.render.RenderUtils;
 import fi.dy.masa.malilib.render.ShapeRenderUtils;
 import fi.dy.masa.malilib.render.text.SingleTextLineRenderer;
 import fi.dy.masa.malilib.render.text.StyledTextLine;
+import fi.dy.masa.malilib.render.text.TextRenderer;
 import fi.dy.masa.malilib.util.data.ToBooleanFunction;
 
 public class DropDownListWidget<T> extends ContainerWidget
@@ -738,6 +739,8 @@ public class DropDownListWidget<T> extends ContainerWidget
             int bgColor = 0xFF404040;
             int height = this.dropdownHeight;
 
+            // The open list is drawn on top of the other widgets, so their batched text must be drawn first
+            TextRenderer.INSTANCE.flushBatch();
             RenderUtils.color(1f, 1f, 1f, 1f);
             ShapeRenderUtils.renderOutlinedRectangle(x, ddY, z, this.getWidth(), height, bgColor, this.borderColorOpen);
 
@@ -3,12 +3,11 @@ package fi.dy.masa.malilib.gui.widget.button;
 import java.util.ArrayList;
 import java.util.List;
 import javax.annotation.Nullable;
-import com.google.common.collect.ImmutableList;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import fi.dy.masa.malilib.MaLiLibConfigs;
 import fi.dy.masa.malilib.gui.config.KeybindEditingScreen;
-import fi.dy.masa.malilib.input.Hotkey;
 import fi.dy.masa.malilib.input.HotkeyCategory;
+import fi.dy.masa.malilib.input.HotkeyConflictIndex;
 import fi.dy.masa.malilib.input.KeyBind;
 import fi.dy.masa.malilib.input.Keys;
 import fi.dy.masa.malilib.listener.EventListener;
@@ -279,24 +278,19 @@ public class KeyBindConfigButton extends GenericButton
             return;
         }
 
-        ImmutableList<HotkeyCategory> categories = Registry.HOTKEY_MANAGER.getHotkeyCategories();
-        List<Hotkey> overlaps = new ArrayList<>();
+        HotkeyConflictIndex conflictIndex = Registry.HOTKEY_MANAGER.getConflictIndex();
         List<String> hoverStrings = new ArrayList<>();
         List<String> overlapInfo = new ArrayList<>();
+        HotkeyCategory lastCategory = null;
 
-        for (HotkeyCategory category : categories)
-        {
-            List<? extends Hotkey> hotkeys = category.getHotkeys();
+        // The keys of this keybind may have just been changed
+        conflictIndex.update(this.keyBind);
 
-            for (Hotkey hotkey : hotkeys)
-            {
-                if (this.keyBind.overlaps(hotkey.getKeyBind()))
-                {
-                    overlaps.add(hotkey);
-                }
-            }
+        for (HotkeyConflictIndex.Entry overlap : conflictIndex.getOverlaps(this.keyBind))
+        {
+            HotkeyCategory category = overlap.getCategory();
 
-            if (overlaps.size() > 0)
+            if (category != lastCategory)
             {
                 if (overlapInfo.size() > 0)
                 {
@@ -306,17 +300,13 @@ public class KeyBindConfigButton extends GenericButton
                 overlapInfo.add(category.getModInfo().getModName());
                 overlapInfo.add(StringUtils.translate("malilib.hover.button.keybind.overlap.category",
                                                       category.getCategoryName()));
-
-                for (Hotkey overlap : overlaps)
-                {
-                    String translationKey = "malilib.hover.button.keybind.overlap.keybind";
-                    String name = overlap.getDisplayName();
-                    String keys = overlap.getKeyBind().getKeysDisplayString();
-                    overlapInfo.add(StringUtils.translate(translationKey, name, keys));
-                }
-
-                overlaps.clear();
+                lastCategory = category;
             }
+
+            String translationKey = "malilib.hover.button.keybind.overlap.keybind";
+            String name = overlap.getHotkey().getDisplayName();
+            String keys = overlap.getKeyBind().getKeysDisplayString();
+            overlapInfo.add(StringUtils.translate(translationKey, name, keys));
         }
 
         this.overlapInfoSize = overlapInfo.size();
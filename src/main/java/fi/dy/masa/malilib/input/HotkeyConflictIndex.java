@@ -0,0 +1,201 @@
+package fi.dy.masa.malilib.input;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * An index of all the registered hotkeys by the keys they use, for finding
+ * the possibly overlapping/conflicting keybinds of a given keybind.
+ * <br><br>
+ * Two keybinds can only overlap if one of them uses a subset of the keys of the other one,
+ * so they always share at least one key. Thus only the hotkeys in the buckets of the keys of the
+ * checked keybind need to be checked with {@link KeyBind#overlaps(KeyBind)}, instead of all
+ * the registered hotkeys.
+ * <br><br>
+ * The index is built by {@link HotkeyManager#getConflictIndex()} from the hotkey categories,
+ * and when a keybind gets changed while the index is in use (for example in the config screens),
+ * only that keybind needs to be re-indexed via {@link #update(KeyBind)}.
+ */
+public class HotkeyConflictIndex
+{
+    protected final Int2ObjectOpenHashMap<List<Entry>> entriesByKey = new Int2ObjectOpenHashMap<>();
+    protected final Map<KeyBind, List<Entry>> entriesByKeyBind = new IdentityHashMap<>();
+    protected final IntArrayList tmpKeys = new IntArrayList();
+    protected int queryId;
+
+    public HotkeyConflictIndex(List<HotkeyCategory> categories)
+    {
+        int order = 0;
+
+        for (HotkeyCategory category : categories)
+        {
+            for (Hotkey hotkey : category.getHotkeys())
+            {
+                KeyBind keyBind = hotkey.getKeyBind();
+                Entry entry = new Entry(hotkey, category, keyBind, order++);
+
+                this.entriesByKeyBind.computeIfAbsent(keyBind, (k) -> new ArrayList<>()).add(entry);
+                this.addToKeys(entry, this.getDistinctKeys(keyBind));
+            }
+        }
+    }
+
+    /**
+     * Re-indexes the given keybind with its current keys.
+     * This should be called after the keys of a keybind have been changed,
+     * if the index is still in use after that.
+     */
+    public void update(KeyBind keyBind)
+    {
+        List<Entry> entries = this.entriesByKeyBind.get(keyBind);
+
+        if (entries == null)
+        {
+            return;
+        }
+
+        int[] keys = this.getDistinctKeys(keyBind);
+
+        for (Entry entry : entries)
+        {
+            if (Arrays.equals(entry.keys, keys) == false)
+            {
+                this.removeFromKeys(entry);
+                this.addToKeys(entry, keys);
+            }
+        }
+    }
+
+    /**
+     * Returns all the indexed hotkeys whose keybind the given keybind overlaps with,
+     * as checked by {@link KeyBind#overlaps(KeyBind)}.
+     * The entries are in the same order as the hotkey categories and the hotkeys in them are.
+     */
+    public List<Entry> getOverlaps(KeyBind keyBind)
+    {
+        List<Entry> overlaps = new ArrayList<>();
+
+        if (keyBind.hasKeys() == false)
+        {
+            return overlaps;
+        }
+
+        // The query id is used to only check each entry once, even if it shares multiple keys with the keybind
+        final int queryId = ++this.queryId;
+
+        for (int key : this.getDistinctKeys(keyBind))
+        {
+            List<Entry> entries = this.entriesByKey.get(key);
+
+            if (entries == null)
+            {
+                continue;
+            }
+
+            for (Entry entry : entries)
+            {
+                if (entry.lastQueryId != queryId)
+                {
+                    entry.lastQueryId = queryId;
+
+                    if (keyBind.overlaps(entry.keyBind))
+                    {
+                        overlaps.add(entry);
+                    }
+                }
+            }
+        }
+
+        overlaps.sort((e1, e2) -> Integer.compare(e1.order, e2.order));
+
+        return overlaps;
+    }
+
+    protected void addToKeys(Entry entry, int[] keys)
+    {
+        entry.keys = keys;
+
+        for (int key : keys)
+        {
+            this.entriesByKey.computeIfAbsent(key, (k) -> new ArrayList<>()).add(entry);
+        }
+    }
+
+    protected void removeFromKeys(Entry entry)
+    {
+        for (int key : entry.keys)
+        {
+            List<Entry> entries = this.entriesByKey.get(key);
+
+            if (entries != null)
+            {
+                entries.remove(entry);
+
+                if (entries.isEmpty())
+                {
+                    this.entriesByKey.remove(key);
+                }
+            }
+        }
+
+        entry.keys = new int[0];
+    }
+
+    protected int[] getDistinctKeys(KeyBind keyBind)
+    {
+        this.tmpKeys.clear();
+        keyBind.getKeysToList(this.tmpKeys);
+
+        int[] keys = this.tmpKeys.toIntArray();
+        Arrays.sort(keys);
+        int count = 0;
+
+        for (int i = 0; i < keys.length; ++i)
+        {
+            if (i == 0 || keys[i] != keys[i - 1])
+            {
+                keys[count++] = keys[i];
+            }
+        }
+
+        return count == keys.length ? keys : Arrays.copyOf(keys, count);
+    }
+
+    public static class Entry
+    {
+        protected final Hotkey hotkey;
+        protected final HotkeyCategory category;
+        protected final KeyBind keyBind;
+        protected final int order;
+        protected int[] keys = new int[0];
+        protected int lastQueryId;
+
+        protected Entry(Hotkey hotkey, HotkeyCategory category, KeyBind keyBind, int order)
+        {
+            this.hotkey = hotkey;
+            this.category = category;
+            this.keyBind = keyBind;
+            this.order = order;
+        }
+
+        public Hotkey getHotkey()
+        {
+            return this.hotkey;
+        }
+
+        public HotkeyCategory getCategory()
+        {
+            return this.category;
+        }
+
+        public KeyBind getKeyBind()
+        {
+            return this.keyBind;
+        }
+    }
+}
@@ -7,12 +7,14 @@ public interface HotkeyManager
     /**
      * Registers a hotkey provider, which will want to register
      * some hotkeys whenever the key -> keybinds maps need to be rebuilt.<br>
-     * Any malilib-based hotkeys should be registered via this method!
+     * Any malilib-based hotkeys should be registered via this method!<br>
+     * This also updates the used keys.
      */
     void registerHotkeyProvider(HotkeyProvider provider);
 
     /**
-     * Un-registers a previously registered hotkey provider
+     * Un-registers a previously registered hotkey provider,
+     * and updates the used keys if the provider was registered
      */
     void unregisterHotkeyProvider(HotkeyProvider provider);
 
@@ -21,6 +23,17 @@ public interface HotkeyManager
      */
     ImmutableList<HotkeyCategory> getHotkeyCategories();
 
+    /**
+     * Returns an index of all the currently registered hotkeys by their keys,
+     * used for finding the overlapping keybinds.
+     * The default implementation builds a new index on each call,
+     * implementations should cache it until the hotkeys or the used keys change.
+     */
+    default HotkeyConflictIndex getConflictIndex()
+    {
+        return new HotkeyConflictIndex(this.getHotkeyCategories());
+    }
+
     /**
      * Causes the key -> keybinds map to be rebuilt for all registered hotkeys.
      */
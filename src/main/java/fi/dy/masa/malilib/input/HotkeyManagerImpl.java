@@ -10,10 +10,11 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 public class HotkeyManagerImpl implements HotkeyManager
 {
-    protected final Int2ObjectOpenHashMap<ArrayList<KeyBind>> hotkeyMap = new Int2ObjectOpenHashMap<>();
     protected final List<HotkeyCategory> keyBindCategories = new ArrayList<>();
     protected final List<HotkeyProvider> keyBindProviders = new ArrayList<>();
     @Nullable protected ImmutableList<HotkeyCategory> immutableKeyBindCategories;
+    @Nullable protected HotkeyConflictIndex conflictIndex;
+    protected volatile HotkeyMatcher matcher = HotkeyMatcher.EMPTY;
 
     public HotkeyManagerImpl()
     {
@@ -31,12 +32,17 @@ public class HotkeyManagerImpl implements HotkeyManager
         {
             this.addKeyBindCategory(category);
         }
+
+        this.updateUsedKeys();
     }
 
     @Override
     public void unregisterHotkeyProvider(HotkeyProvider provider)
     {
-        this.keyBindProviders.remove(provider);
+        if (this.keyBindProviders.remove(provider))
+        {
+            this.updateUsedKeys();
+        }
     }
 
     @Override
@@ -50,32 +56,76 @@ public class HotkeyManagerImpl implements HotkeyManager
         return this.immutableKeyBindCategories;
     }
 
+    /**
+     * Returns the cached conflict index, which is re-built lazily
+     * after the hotkey categories or the used keys have been updated.
+     */
+    @Override
+    public HotkeyConflictIndex getConflictIndex()
+    {
+        if (this.conflictIndex == null)
+        {
+            this.conflictIndex = new HotkeyConflictIndex(this.getHotkeyCategories());
+        }
+
+        return this.conflictIndex;
+    }
+
+    /**
+     * Builds a new key -> keybinds map and the matcher from it, and then swaps the matcher in
+     * with one write. The input handling only ever reads the matcher via the volatile field,
+     * so it always sees either the old or the new complete snapshot, and never a half-built one.
+     */
     @Override
     public void updateUsedKeys()
     {
-        this.hotkeyMap.clear();
+        Int2ObjectOpenHashMap<ArrayList<KeyBind>> hotkeyMap = new Int2ObjectOpenHashMap<>();
+        IntArrayList keys = new IntArrayList();
 
         for (HotkeyProvider handler : this.keyBindProviders)
         {
             for (Hotkey hotkey : handler.getAllHotkeys())
             {
-                this.addKeyBindToMap(hotkey.getKeyBind());
+                addKeyBindToMap(hotkey.getKeyBind(), hotkeyMap, keys);
             }
         }
 
-        this.hotkeyMap.values().forEach((list) -> list.sort(Comparator.comparingInt((v) -> v.getSettings().getPriority())));
+        hotkeyMap.values().forEach((list) -> list.sort(Comparator.comparingInt((v) -> v.getSettings().getPriority())));
+        this.matcher = HotkeyMatcher.compile(hotkeyMap);
+        this.conflictIndex = null; // mark for rebuild
     }
 
-    protected void addKeyBindToMap(KeyBind keybind)
+    protected static void addKeyBindToMap(KeyBind keybind, Int2ObjectOpenHashMap<ArrayList<KeyBind>> hotkeyMap, IntArrayList keys)
     {
-        IntArrayList keys = new IntArrayList();
+        keys.clear();
         keybind.getKeysToList(keys);
         final int size = keys.size();
 
         for (int i = 0; i < size; ++i)
         {
             int key = keys.getInt(i);
-            this.hotkeyMap.computeIfAbsent(key, (k) -> new ArrayList<>()).add(keybind);
+            hotkeyMap.computeIfAbsent(key, (k) -> new ArrayList<>()).add(keybind);
+        }
+    }
+
+    /**
+     * Resets the pressed and toggle states of all the registered keybinds.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE
+     */
+    void resetKeyBindStates()
+    {
+        for (HotkeyProvider handler : this.keyBindProviders)
+        {
+            for (Hotkey hotkey : handler.getAllHotkeys())
+            {
+                KeyBind keyBind = hotkey.getKeyBind();
+
+                if (keyBind instanceof KeyBindImpl)
+                {
+                    ((KeyBindImpl) keyBind).resetPressedState();
+                }
+            }
         }
     }
 
@@ -85,6 +135,7 @@ public class HotkeyManagerImpl implements HotkeyManager
         this.keyBindCategories.remove(category);
         this.keyBindCategories.add(category);
         this.immutableKeyBindCategories = null; // mark for rebuild
+        this.conflictIndex = null;
     }
 
     /**
@@ -92,29 +143,8 @@ public class HotkeyManagerImpl implements HotkeyManager
      */
     boolean checkKeyBindsForChanges(int eventKey)
     {
-        boolean cancel = false;
-        boolean isFirst = true;
-        List<KeyBind> keyBinds = this.hotkeyMap.get(eventKey);
-
-        if (keyBinds != null && keyBinds.isEmpty() == false)
-        {
-            // FIXME is there a better way to avoid CMEs when switching config screens?
-            keyBinds = new ArrayList<>(keyBinds);
-
-            for (KeyBind keyBind : keyBinds)
-            {
-                // Note: updateIsPressed() has to be called for key releases too, to reset the state
-                KeyUpdateResult result = keyBind.updateIsPressed(isFirst);
-
-                if (result.triggered)
-                {
-                    isFirst = false;
-                }
-
-                cancel |= result.cancel;
-            }
-        }
-
-        return cancel;
+        // The matcher is an immutable snapshot built in updateUsedKeys(), so changes
+        // to the keybinds or the providers while iterating can't cause CMEs here
+        return this.matcher.updateKeyBinds(eventKey);
     }
 }
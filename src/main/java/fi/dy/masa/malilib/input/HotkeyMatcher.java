@@ -0,0 +1,262 @@
+package fi.dy.masa.malilib.input;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * A precompiled lookup structure of the keybinds, built from the key code to keybinds map
+ * in {@link HotkeyManagerImpl#updateUsedKeys()}.
+ * <br><br>
+ * The matcher is a snapshot, the key -> entries arrays are never modified after being built.
+ * Any changes to the registered hotkeys or their keys are only picked up by building a new matcher,
+ * which then replaces the old one. The only mutable state is the per-event check cache,
+ * which is only used from the input handling.
+ * <br><br>
+ * The keys of a keybind can change before the matcher gets rebuilt, for example while
+ * they are being edited in a config screen. Such keybinds are noticed via
+ * {@link KeyBindImpl#getKeysVersion()}, and are then always evaluated against their current keys,
+ * like all the keybinds were before, until the matcher is rebuilt.
+ * <br><br>
+ * All the keybinds that use the same set of keys share one {@link KeySet}, and on each key event
+ * the "are all the keys of this set currently held" check is done at most once per set.
+ * A keybind that is not currently pressed, and whose keys are not all currently held
+ * (or which would have too few or too many keys held), can't become pressed by the event,
+ * so its {@link KeyBind#updateIsPressed(boolean)} call would do nothing and is skipped.
+ * <br><br>
+ * The keybinds are still evaluated in the same priority order as before,
+ * so the first-only, exclusive and cancel behavior doesn't change.
+ */
+public class HotkeyMatcher
+{
+    public static final HotkeyMatcher EMPTY = new HotkeyMatcher(new Int2ObjectOpenHashMap<>(), 0, 0);
+
+    protected final Int2ObjectOpenHashMap<Entry[]> entriesByKey;
+    protected final int keyBindCount;
+    protected final int keySetCount;
+    protected int checkId;
+
+    protected HotkeyMatcher(Int2ObjectOpenHashMap<Entry[]> entriesByKey, int keyBindCount, int keySetCount)
+    {
+        this.entriesByKey = entriesByKey;
+        this.keyBindCount = keyBindCount;
+        this.keySetCount = keySetCount;
+    }
+
+    public int getKeyBindCount()
+    {
+        return this.keyBindCount;
+    }
+
+    public int getKeySetCount()
+    {
+        return this.keySetCount;
+    }
+
+    /**
+     * Updates the pressed state of all the keybinds that use the given key,
+     * and that could change their state because of the key event.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE
+     * @return true if the key event should be cancelled
+     */
+    boolean updateKeyBinds(int eventKey)
+    {
+        Entry[] entries = this.entriesByKey.get(eventKey);
+
+        if (entries == null)
+        {
+            return false;
+        }
+
+        // The matcher runs on the same thread that updates the held keys, so it can use the live state
+        // instead of a snapshot, which would have to be copied after almost every key event
+        final PressedKeyState pressedKeys = KeyBindImpl.getPressedKeys();
+        final int checkId = ++this.checkId;
+        boolean cancel = false;
+        boolean isFirst = true;
+
+        for (Entry entry : entries)
+        {
+            if (entry.canChangeState(pressedKeys, checkId) == false)
+            {
+                continue;
+            }
+
+            // Note: updateIsPressed() has to be called for key releases too, to reset the state
+            KeyUpdateResult result = entry.keyBind.updateIsPressed(isFirst);
+
+            if (result.triggered)
+            {
+                isFirst = false;
+            }
+
+            cancel |= result.cancel;
+        }
+
+        return cancel;
+    }
+
+    /**
+     * Builds a new matcher from the given key code to keybinds map.
+     * The keybind lists are expected to already be in the priority order.
+     */
+    public static HotkeyMatcher compile(Int2ObjectOpenHashMap<? extends List<KeyBind>> hotkeyMap)
+    {
+        Int2ObjectOpenHashMap<Entry[]> entriesByKey = new Int2ObjectOpenHashMap<>(hotkeyMap.size());
+        Map<KeyBind, Entry> entries = new IdentityHashMap<>();
+        Map<IntArrayList, KeySet> keySets = new HashMap<>();
+        IntArrayList keys = new IntArrayList();
+
+        for (Map.Entry<Integer, ? extends List<KeyBind>> mapEntry : hotkeyMap.int2ObjectEntrySet())
+        {
+            List<KeyBind> keyBinds = mapEntry.getValue();
+            final int size = keyBinds.size();
+            Entry[] arr = new Entry[size];
+
+            for (int i = 0; i < size; ++i)
+            {
+                KeyBind keyBind = keyBinds.get(i);
+                Entry entry = entries.get(keyBind);
+
+                if (entry == null)
+                {
+                    entry = createEntry(keyBind, keys, keySets);
+                    entries.put(keyBind, entry);
+                }
+
+                arr[i] = entry;
+            }
+
+            entriesByKey.put(mapEntry.getKey().intValue(), arr);
+        }
+
+        return new HotkeyMatcher(entriesByKey, entries.size(), keySets.size());
+    }
+
+    protected static Entry createEntry(KeyBind keyBind, IntArrayList keys, Map<IntArrayList, KeySet> keySets)
+    {
+        // The skip check relies on the matching rules of KeyBindImpl, other implementations are always evaluated
+        if ((keyBind instanceof KeyBindImpl) == false)
+        {
+            return new Entry(keyBind, null, 0, 0);
+        }
+
+        final int keysVersion = ((KeyBindImpl) keyBind).getKeysVersion();
+
+        keys.clear();
+        keyBind.getKeysToList(keys);
+        final int keyCount = keys.size();
+
+        int[] distinctKeys = keys.toIntArray();
+        Arrays.sort(distinctKeys);
+        int distinctCount = 0;
+
+        for (int i = 0; i < distinctKeys.length; ++i)
+        {
+            if (i == 0 || distinctKeys[i] != distinctKeys[i - 1])
+            {
+                distinctKeys[distinctCount++] = distinctKeys[i];
+            }
+        }
+
+        IntArrayList signature = IntArrayList.wrap(distinctKeys, distinctCount);
+        KeySet keySet = keySets.get(signature);
+
+        if (keySet == null)
+        {
+            keySet = new KeySet(Arrays.copyOf(distinctKeys, distinctCount));
+            keySets.put(signature, keySet);
+        }
+
+        return new Entry(keyBind, keySet, keyCount, keysVersion);
+    }
+
+    protected static class Entry
+    {
+        protected final KeyBind keyBind;
+        @Nullable protected final KeySet keySet;
+        protected final int keyCount;
+        protected final int keysVersion;
+
+        protected Entry(KeyBind keyBind, @Nullable KeySet keySet, int keyCount, int keysVersion)
+        {
+            this.keyBind = keyBind;
+            this.keySet = keySet;
+            this.keyCount = keyCount;
+            this.keysVersion = keysVersion;
+        }
+
+        /**
+         * @return false if the keybind is not pressed, and it can't become pressed
+         *         with the currently held keys
+         */
+        protected boolean canChangeState(PressedKeyState pressedKeys, int checkId)
+        {
+            if (this.keySet == null || this.keyBind.isPhysicallyHeld())
+            {
+                return true;
+            }
+
+            // The keys have been changed after the matcher was built, so the key count
+            // and the key set are out of date. Let the keybind check its current keys.
+            if (((KeyBindImpl) this.keyBind).getKeysVersion() != this.keysVersion)
+            {
+                return true;
+            }
+
+            final int pressedCount = pressedKeys.size();
+
+            if (this.keyCount > pressedCount ||
+                (this.keyCount != pressedCount && this.keyBind.getSettings().getAllowExtraKeys() == false))
+            {
+                return false;
+            }
+
+            return this.keySet.areAllKeysHeld(pressedKeys, checkId);
+        }
+    }
+
+    protected static class KeySet
+    {
+        protected final int[] keys;
+        protected int lastCheckId;
+        protected boolean lastResult;
+
+        protected KeySet(int[] keys)
+        {
+            this.keys = keys;
+        }
+
+        /**
+         * @return true if all the keys in this set are currently held.
+         *         The result is cached for the duration of one key event (identified by the checkId).
+         */
+        protected boolean areAllKeysHeld(PressedKeyState pressedKeys, int checkId)
+        {
+            if (this.lastCheckId != checkId)
+            {
+                boolean result = true;
+
+                for (int key : this.keys)
+                {
+                    if (pressedKeys.contains(key) == false)
+                    {
+                        result = false;
+                        break;
+                    }
+                }
+
+                this.lastCheckId = checkId;
+                this.lastResult = result;
+            }
+
+            return this.lastResult;
+        }
+    }
+}
@@ -3,9 +3,8 @@ package fi.dy.masa.malilib.input;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import javax.annotation.Nullable;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
-import org.lwjgl.input.Keyboard;
-import org.lwjgl.input.Mouse;
 import fi.dy.masa.malilib.gui.util.GuiUtils;
 import fi.dy.masa.malilib.registry.Registry;
 
@@ -16,6 +15,8 @@ public class InputDispatcherImpl implements InputDispatcher
     protected final List<MouseClickHandler> mouseClickHandlers = new ArrayList<>();
     protected final List<MouseScrollHandler> mouseScrollHandlers = new ArrayList<>();
     protected final List<MouseMoveHandler> mouseMoveHandlers = new ArrayList<>();
+    protected InputSource inputSource = LwjglInputSource.INSTANCE;
+    @Nullable protected InputEventRecorder recorder;
 
     public InputDispatcherImpl()
     {
@@ -91,33 +92,48 @@ public class InputDispatcherImpl implements InputDispatcher
         this.mouseMoveHandlers.remove(handler);
     }
 
+    /**
+     * Sets the source the input events are read from. By default this is {@link LwjglInputSource}.
+     * The source is also used for the context checks of the keybinds.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE
+     */
+    public void setInputSource(InputSource inputSource)
+    {
+        this.inputSource = inputSource;
+        KeyBindImpl.setContextSource(inputSource);
+    }
+
+    /**
+     * Sets the recorder that will receive all the raw input events, or null to stop recording.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE
+     */
+    public void setInputEventRecorder(@Nullable InputEventRecorder recorder)
+    {
+        this.recorder = recorder;
+    }
+
     /**
      * NOT PUBLIC API - DO NOT CALL
      */
     public boolean onKeyInput()
     {
-        int keyCode = Keyboard.getEventKey();
-        boolean keyState = Keyboard.getEventKeyState();
-        char eventChar = Keyboard.getEventCharacter();
-        boolean isChar = keyCode == 0 && eventChar >= ' ';
+        int keyCode = this.inputSource.getEventKey();
+        boolean keyState = this.inputSource.getEventKeyState();
+        char eventChar = this.inputSource.getEventCharacter();
+        boolean isChar = isCharOnlyEvent(keyCode, eventChar);
 
-        if (isChar)
+        if (this.recorder != null)
         {
-            keyCode = (int) eventChar + 256;
+            this.recorder.onKeyboardEvent(keyCode, keyState, eventChar, this.inputSource.isScreenOpen());
         }
 
-        // Update the cached pressed keys status
-        KeyBindImpl.onKeyInputPre(keyCode, 0, 0, eventChar, keyState);
-
-        boolean cancel = ((HotkeyManagerImpl) Registry.HOTKEY_MANAGER).checkKeyBindsForChanges(keyCode);
+        keyCode = getKeyCode(keyCode, eventChar);
 
         // Since char-only keys can't be properly held down (there is no properly detectable release event,
         // the char value in the release event is not set), clear them immediately.
-        if (isChar)
-        {
-            KeyBindImpl.onKeyInputPre(keyCode, 0, 0, eventChar, false);
-            ((HotkeyManagerImpl) Registry.HOTKEY_MANAGER).checkKeyBindsForChanges(keyCode);
-        }
+        boolean cancel = updateKeyBinds(keyCode, eventChar, keyState, isChar);
 
         if (this.keyboardHandlers.isEmpty() == false)
         {
@@ -138,30 +154,28 @@ public class InputDispatcherImpl implements InputDispatcher
      */
     public boolean onMouseInput()
     {
-        final int eventButton = Mouse.getEventButton();
-        final int dWheel = Mouse.getEventDWheel();
-        final boolean eventButtonState = Mouse.getEventButtonState();
+        final int eventButton = this.inputSource.getEventButton();
+        final int dWheel = this.inputSource.getEventDWheel();
+        final boolean eventButtonState = this.inputSource.getEventButtonState();
+        final int rawMouseX = this.inputSource.getMouseX();
+        final int rawMouseY = this.inputSource.getMouseY();
         boolean cancel = false;
         boolean clickOrScroll = false;
         int width = GuiUtils.getScaledWindowWidth();
         int height = GuiUtils.getScaledWindowHeight();
-        int mouseX = Mouse.getX() * width / GuiUtils.getDisplayWidth();
-        int mouseY = height - Mouse.getY() * height / GuiUtils.getDisplayHeight() - 1;
+        int mouseX = rawMouseX * width / GuiUtils.getDisplayWidth();
+        int mouseY = height - rawMouseY * height / GuiUtils.getDisplayHeight() - 1;
 
-        if (dWheel != 0)
+        if (this.recorder != null)
         {
-            // Support mouse scrolls in the keybind system
-            int keyCode = dWheel < 0 ? -201 : -199;
-            boolean keyState = true;
-
-            // Update the cached pressed keys status
-            KeyBindImpl.onKeyInputPre(keyCode, 0, 0, (char) 0, keyState);
-
-            cancel = ((HotkeyManagerImpl) Registry.HOTKEY_MANAGER).checkKeyBindsForChanges(keyCode);
+            this.recorder.onMouseEvent(eventButton, eventButtonState, dWheel, rawMouseX, rawMouseY, this.inputSource.isScreenOpen());
+        }
 
-            // Since scroll "keys" can't be held down, clear them immediately
-            KeyBindImpl.onKeyInputPre(keyCode, 0, 0, (char) 0, false);
-            ((HotkeyManagerImpl) Registry.HOTKEY_MANAGER).checkKeyBindsForChanges(keyCode);
+        if (dWheel != 0)
+        {
+            // Support mouse scrolls in the keybind system.
+            // Since scroll "keys" can't be held down, clear them immediately.
+            cancel = updateKeyBinds(getScrollKeyCode(dWheel), (char) 0, true, true);
 
             if (this.mouseScrollHandlers.isEmpty() == false)
             {
@@ -179,14 +193,8 @@ public class InputDispatcherImpl implements InputDispatcher
 
         if (eventButton != -1)
         {
-            // Support mouse scrolls in the keybind system
-            int keyCode = eventButton - 100;
-            boolean keyState = eventButtonState;
-
-            // Update the cached pressed keys status
-            KeyBindImpl.onKeyInputPre(keyCode, 0, 0, (char) 0, keyState);
-
-            cancel = ((HotkeyManagerImpl) Registry.HOTKEY_MANAGER).checkKeyBindsForChanges(keyCode);
+            // Support mouse buttons in the keybind system
+            cancel = updateKeyBinds(getMouseButtonKeyCode(eventButton), (char) 0, eventButtonState, false);
 
             if (this.mouseClickHandlers.isEmpty() == false)
             {
@@ -217,4 +225,52 @@ public class InputDispatcherImpl implements InputDispatcher
     {
         return this.modifierKeys.contains(eventKey);
     }
+
+    /**
+     * Updates the cached pressed keys status, and then the keybinds using the given key.
+     * This is the entire keybind handling part of the input path, and it doesn't read the LWJGL
+     * input state, so it's also used by {@link InputEventReplayer} to replay events headlessly.
+     * @param releaseImmediately true for "keys" that can't be held down,
+     *                           they get released again right after the key press has been handled
+     * @return true if the key event should be cancelled
+     */
+    static boolean updateKeyBinds(int keyCode, char eventChar, boolean keyState, boolean releaseImmediately)
+    {
+        return updateKeyBinds((HotkeyManagerImpl) Registry.HOTKEY_MANAGER, keyCode, eventChar, keyState, releaseImmediately);
+    }
+
+    static boolean updateKeyBinds(HotkeyManagerImpl manager, int keyCode, char eventChar,
+                                  boolean keyState, boolean releaseImmediately)
+    {
+        KeyBindImpl.onKeyInputPre(keyCode, 0, 0, eventChar, keyState);
+        boolean cancel = manager.checkKeyBindsForChanges(keyCode);
+
+        if (releaseImmediately)
+        {
+            KeyBindImpl.onKeyInputPre(keyCode, 0, 0, eventChar, false);
+            manager.checkKeyBindsForChanges(keyCode);
+        }
+
+        return cancel;
+    }
+
+    static boolean isCharOnlyEvent(int eventKey, char eventChar)
+    {
+        return eventKey == 0 && eventChar >= ' ';
+    }
+
+    static int getKeyCode(int eventKey, char eventChar)
+    {
+        return isCharOnlyEvent(eventKey, eventChar) ? (int) eventChar + 256 : eventKey;
+    }
+
+    static int getScrollKeyCode(int dWheel)
+    {
+        return dWheel < 0 ? -201 : -199;
+    }
+
+    static int getMouseButtonKeyCode(int button)
+    {
+        return button - 100;
+    }
 }
@@ -0,0 +1,87 @@
+package fi.dy.masa.malilib.input;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import fi.dy.masa.malilib.util.data.json.JsonUtils;
+
+/**
+ * Records the raw input events passing through {@link InputDispatcherImpl}, when set via
+ * {@link InputDispatcherImpl#setInputEventRecorder(InputEventRecorder)}.
+ * The recorded events can be saved to a file, and then replayed with {@link InputEventReplayer}.
+ */
+public class InputEventRecorder
+{
+    protected final List<RecordedInputEvent> events = new ArrayList<>();
+    protected long startTime = -1L;
+
+    public void onKeyboardEvent(int key, boolean keyState, char character, boolean screenOpen)
+    {
+        this.events.add(RecordedInputEvent.keyboardEvent(this.getEventTime(), key, keyState, character, screenOpen));
+    }
+
+    public void onMouseEvent(int button, boolean buttonState, int dWheel, int mouseX, int mouseY, boolean screenOpen)
+    {
+        this.events.add(RecordedInputEvent.mouseEvent(this.getEventTime(), button, buttonState, dWheel, mouseX, mouseY, screenOpen));
+    }
+
+    protected long getEventTime()
+    {
+        long time = System.nanoTime();
+
+        if (this.startTime == -1L)
+        {
+            this.startTime = time;
+        }
+
+        return time - this.startTime;
+    }
+
+    public ImmutableList<RecordedInputEvent> getEvents()
+    {
+        return ImmutableList.copyOf(this.events);
+    }
+
+    public void clear()
+    {
+        this.events.clear();
+        this.startTime = -1L;
+    }
+
+    public JsonObject toJson()
+    {
+        JsonObject obj = new JsonObject();
+        obj.add("events", JsonUtils.toArray(this.events, RecordedInputEvent::toJson));
+        return obj;
+    }
+
+    public boolean writeToFile(File file)
+    {
+        return JsonUtils.writeJsonToFile(this.toJson(), file);
+    }
+
+    public static ImmutableList<RecordedInputEvent> eventsFromJson(JsonElement el)
+    {
+        ImmutableList.Builder<RecordedInputEvent> builder = ImmutableList.builder();
+
+        JsonUtils.readArrayElementsIfExists(el, "events", (e) -> {
+            RecordedInputEvent event = RecordedInputEvent.fromJson(e);
+
+            if (event != null)
+            {
+                builder.add(event);
+            }
+        });
+
+        return builder.build();
+    }
+
+    public static ImmutableList<RecordedInputEvent> readFromFile(File file)
+    {
+        JsonElement el = JsonUtils.parseJsonFile(file);
+        return el != null ? eventsFromJson(el) : ImmutableList.of();
+    }
+}
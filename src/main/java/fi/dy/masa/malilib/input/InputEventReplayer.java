@@ -0,0 +1,265 @@
+package fi.dy.masa.malilib.input;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import fi.dy.masa.malilib.registry.Registry;
+
+/**
+ * Replays recorded input events through the keybind handling part of the input path,
+ * ie. {@link KeyBindImpl#onKeyInputPre(int, int, int, char, boolean)} and the hotkey manager,
+ * without the game or LWJGL. The dispatch time of each event is measured, as well as
+ * the memory allocated during the replay, when the JVM supports measuring it.
+ * The keybind context checks use the GUI screen state recorded with each event.
+ * <br><br>
+ * Each round starts from a clean state, ie. no keys pressed, and the pressed and toggle
+ * states of all the keybinds registered to the hotkey manager cleared, so that each round
+ * triggers the same keybinds. Note that this also clears the states once more after the replay.
+ * <br><br>
+ * Note: The keybind callbacks are run as normal, so any hotkeys triggered by the replay
+ * need to have callbacks that work in the environment the replay is run in.
+ * The other input handlers registered to the {@link InputDispatcher} are not called.
+ */
+public class InputEventReplayer
+{
+    /**
+     * Replays the events once through the hotkeys registered to the main hotkey manager
+     */
+    public static Result replay(List<RecordedInputEvent> events)
+    {
+        return replay(events, 0, 1);
+    }
+
+    /**
+     * Replays the events through the hotkeys registered to the main hotkey manager
+     * @see #replay(HotkeyManagerImpl, List, int, int)
+     */
+    public static Result replay(List<RecordedInputEvent> events, int warmupRounds, int rounds)
+    {
+        return replay((HotkeyManagerImpl) Registry.HOTKEY_MANAGER, events, warmupRounds, rounds);
+    }
+
+    /**
+     * Replays the events first warmupRounds times without measuring anything,
+     * and then rounds times measuring the dispatch times, through the hotkeys
+     * registered to the given hotkey manager. Each round starts from a clean state.
+     */
+    public static Result replay(HotkeyManagerImpl manager, List<RecordedInputEvent> events, int warmupRounds, int rounds)
+    {
+        final int eventCount = events.size();
+        ReplayInputSource source = new ReplayInputSource();
+        InputSource previousContextSource = KeyBindImpl.getContextSource();
+
+        KeyBindImpl.setContextSource(source);
+
+        try
+        {
+            for (int round = 0; round < warmupRounds; ++round)
+            {
+                resetState(manager);
+
+                for (int i = 0; i < eventCount; ++i)
+                {
+                    replayEvent(manager, source, events.get(i));
+                }
+            }
+
+            long[] times = new long[eventCount * rounds];
+            int cancelCount = 0;
+            int index = 0;
+            long allocatedBytesStart = getAllocatedBytes();
+
+            for (int round = 0; round < rounds; ++round)
+            {
+                resetState(manager);
+
+                for (int i = 0; i < eventCount; ++i)
+                {
+                    RecordedInputEvent event = events.get(i);
+                    long start = System.nanoTime();
+                    boolean cancel = replayEvent(manager, source, event);
+                    times[index++] = System.nanoTime() - start;
+
+                    if (cancel)
+                    {
+                        ++cancelCount;
+                    }
+                }
+            }
+
+            long allocatedBytesEnd = getAllocatedBytes();
+            long allocatedBytes = allocatedBytesStart >= 0 && allocatedBytesEnd >= 0 ? allocatedBytesEnd - allocatedBytesStart : -1L;
+
+            return new Result(times, cancelCount, allocatedBytes);
+        }
+        finally
+        {
+            resetState(manager);
+            source.setEvent(null);
+            KeyBindImpl.setContextSource(previousContextSource);
+        }
+    }
+
+    /**
+     * Runs one event through the keybind handling, the same way as
+     * {@link InputDispatcherImpl#onKeyInput()} and {@link InputDispatcherImpl#onMouseInput()} do.
+     * The source must be the current keybind context source for the recorded
+     * screen state to be used, which {@link #replay(HotkeyManagerImpl, List, int, int)} takes care of.
+     * @return true if the event would have been cancelled by the keybinds
+     */
+    public static boolean replayEvent(HotkeyManagerImpl manager, ReplayInputSource source, RecordedInputEvent event)
+    {
+        source.setEvent(event);
+
+        if (event.isKeyboardEvent())
+        {
+            int key = event.getKey();
+            char eventChar = event.getCharacter();
+            boolean isChar = InputDispatcherImpl.isCharOnlyEvent(key, eventChar);
+            int keyCode = InputDispatcherImpl.getKeyCode(key, eventChar);
+
+            return InputDispatcherImpl.updateKeyBinds(manager, keyCode, eventChar, event.getState(), isChar);
+        }
+
+        boolean cancel = false;
+
+        if (event.getDWheel() != 0)
+        {
+            int keyCode = InputDispatcherImpl.getScrollKeyCode(event.getDWheel());
+            cancel = InputDispatcherImpl.updateKeyBinds(manager, keyCode, (char) 0, true, true);
+        }
+
+        if (event.getKey() != -1)
+        {
+            int keyCode = InputDispatcherImpl.getMouseButtonKeyCode(event.getKey());
+            cancel = InputDispatcherImpl.updateKeyBinds(manager, keyCode, (char) 0, event.getState(), false);
+        }
+
+        return cancel;
+    }
+
+    /**
+     * Clears the pressed keys and the pressed and toggle states of all the keybinds
+     */
+    protected static void resetState(HotkeyManagerImpl manager)
+    {
+        KeyBindImpl.resetPressedKeys();
+        manager.resetKeyBindStates();
+    }
+
+    /**
+     * @return the number of bytes allocated by the current thread so far,
+     *         or -1 if the JVM doesn't support measuring it
+     */
+    protected static long getAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+
+        return -1L;
+    }
+
+    public static class Result
+    {
+        protected final long[] sortedTimes;
+        protected final long totalTime;
+        protected final int cancelCount;
+        protected final long allocatedBytes;
+
+        protected Result(long[] times, int cancelCount, long allocatedBytes)
+        {
+            long total = 0L;
+
+            for (long time : times)
+            {
+                total += time;
+            }
+
+            Arrays.sort(times);
+
+            this.sortedTimes = times;
+            this.totalTime = total;
+            this.cancelCount = cancelCount;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        public int getEventCount()
+        {
+            return this.sortedTimes.length;
+        }
+
+        public int getCancelCount()
+        {
+            return this.cancelCount;
+        }
+
+        public long getTotalTimeNanos()
+        {
+            return this.totalTime;
+        }
+
+        public double getAverageTimeNanos()
+        {
+            return this.sortedTimes.length > 0 ? (double) this.totalTime / this.sortedTimes.length : 0.0;
+        }
+
+        /**
+         * @param percentile the percentile in the range 0.0 - 1.0
+         * @return the dispatch time of the given percentile, in nanoseconds
+         */
+        public long getPercentileTimeNanos(double percentile)
+        {
+            if (this.sortedTimes.length == 0)
+            {
+                return 0L;
+            }
+
+            int index = (int) Math.ceil(percentile * this.sortedTimes.length) - 1;
+            index = Math.max(0, Math.min(index, this.sortedTimes.length - 1));
+
+            return this.sortedTimes[index];
+        }
+
+        public long getMaxTimeNanos()
+        {
+            return this.sortedTimes.length > 0 ? this.sortedTimes[this.sortedTimes.length - 1] : 0L;
+        }
+
+        /**
+         * @return the number of bytes allocated during the measured rounds,
+         *         or -1 if the JVM doesn't support measuring it
+         */
+        public long getAllocatedBytes()
+        {
+            return this.allocatedBytes;
+        }
+
+        public double getAllocatedBytesPerEvent()
+        {
+            if (this.allocatedBytes < 0 || this.sortedTimes.length == 0)
+            {
+                return -1.0;
+            }
+
+            return (double) this.allocatedBytes / this.sortedTimes.length;
+        }
+
+        public String getSummary()
+        {
+            return String.format("events: %d, cancelled: %d, avg: %.1f ns, p50: %d ns, p99: %d ns, max: %d ns, alloc/event: %.1f B",
+                                 this.getEventCount(), this.cancelCount, this.getAverageTimeNanos(),
+                                 this.getPercentileTimeNanos(0.5), this.getPercentileTimeNanos(0.99),
+                                 this.getMaxTimeNanos(), this.getAllocatedBytesPerEvent());
+        }
+    }
+}
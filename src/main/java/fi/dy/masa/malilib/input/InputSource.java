@@ -0,0 +1,55 @@
+package fi.dy.masa.malilib.input;
+
+/**
+ * The source of the raw input event values that {@link InputDispatcherImpl} reads for each
+ * keyboard and mouse event. Normally this is {@link LwjglInputSource}, which reads the
+ * current LWJGL event, but the events can also come from a recording via {@link ReplayInputSource}.
+ */
+public interface InputSource
+{
+    /**
+     * @return the key code of the current keyboard event, or 0 for a character-only event
+     */
+    int getEventKey();
+
+    /**
+     * @return true if the key of the current keyboard event was pressed, false if it was released
+     */
+    boolean getEventKeyState();
+
+    /**
+     * @return the character of the current keyboard event
+     */
+    char getEventCharacter();
+
+    /**
+     * @return the button of the current mouse event, or -1 if it's not a button event
+     */
+    int getEventButton();
+
+    /**
+     * @return true if the button of the current mouse event was pressed, false if it was released
+     */
+    boolean getEventButtonState();
+
+    /**
+     * @return the mouse wheel delta of the current mouse event, or 0 if it's not a scroll event
+     */
+    int getEventDWheel();
+
+    /**
+     * @return the raw (un-scaled) mouse x position in the window
+     */
+    int getMouseX();
+
+    /**
+     * @return the raw (un-scaled) mouse y position in the window, counted from the bottom edge
+     */
+    int getMouseY();
+
+    /**
+     * @return true if a GUI screen is open at the time of the current event.
+     *         This is used for the context check of the keybinds.
+     */
+    boolean isScreenOpen();
+}
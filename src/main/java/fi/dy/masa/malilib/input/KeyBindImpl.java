@@ -13,7 +13,6 @@ import fi.dy.masa.malilib.MaLiLib;
 import fi.dy.masa.malilib.MaLiLibConfigs;
 import fi.dy.masa.malilib.MinecraftClientAccessor;
 import fi.dy.masa.malilib.config.value.KeybindDisplayMode;
-import fi.dy.masa.malilib.gui.util.GuiUtils;
 import fi.dy.masa.malilib.input.callback.AdjustableValueHotkeyCallback;
 import fi.dy.masa.malilib.input.callback.HotkeyCallback;
 import fi.dy.masa.malilib.overlay.message.MessageDispatcher;
@@ -27,11 +26,12 @@ import fi.dy.masa.malilib.util.game.wrap.GameUtils;
 
 public class KeyBindImpl implements KeyBind
 {
-    private static final IntArrayList PRESSED_KEYS = new IntArrayList();
+    private static final PressedKeyState PRESSED_KEYS = new PressedKeyState();
 
     public static final KeyUpdateResult NO_ACTION = new KeyUpdateResult(false, false);
 
     private static int triggeredCount;
+    private static InputSource contextSource = LwjglInputSource.INSTANCE;
 
     private final KeyBindSettings defaultSettings;
     private final IntArrayList defaultKeyCodes = new IntArrayList(4);
@@ -44,6 +44,7 @@ public class KeyBindImpl implements KeyBind
     private String nameTranslationKey = "";
     private boolean pressed;
     private boolean pressedToggle;
+    private int keysVersion;
 
     private KeyBindImpl(String defaultStorageString, KeyBindSettings settings)
     {
@@ -96,6 +97,7 @@ public class KeyBindImpl implements KeyBind
     {
         this.keyCodes.clear();
         this.pressed = false;
+        ++this.keysVersion;
     }
 
     @Override
@@ -109,6 +111,7 @@ public class KeyBindImpl implements KeyBind
     {
         this.keyCodes.clear();
         this.keyCodes.addAll(newKeys);
+        ++this.keysVersion;
     }
 
     @Override
@@ -158,6 +161,7 @@ public class KeyBindImpl implements KeyBind
     {
         this.keyCodes.clear();
         this.keyCodes.addAll(this.defaultKeyCodes);
+        ++this.keysVersion;
     }
 
     @Override
@@ -228,7 +232,7 @@ public class KeyBindImpl implements KeyBind
     {
         if (this.keyCodes.isEmpty() ||
             (this.settings.getContext() != Context.ANY &&
-            ((this.settings.getContext() == Context.INGAME) != (GuiUtils.getCurrentScreen() == null))))
+            ((this.settings.getContext() == Context.INGAME) == contextSource.isScreenOpen())))
         {
             this.pressed = false;
             return NO_ACTION;
@@ -241,13 +245,12 @@ public class KeyBindImpl implements KeyBind
 
         if (sizePressed >= sizeRequired && (allowExtraKeys || sizePressed == sizeRequired))
         {
-            this.pressed = PRESSED_KEYS.containsAll(this.keyCodes);
-            final int pressedSize = PRESSED_KEYS.size();;
+            this.pressed = this.areAllKeysPressed();
             int keyCodeIndex = 0;
 
-            for (int i = 0; i < pressedSize; ++i)
+            for (int i = 0; i < sizePressed; ++i)
             {
-                int keyCode = PRESSED_KEYS.getInt(i);
+                int keyCode = PRESSED_KEYS.getKeyAt(i);
 
                 if (this.keyCodes.getInt(keyCodeIndex) == keyCode)
                 {
@@ -300,6 +303,40 @@ public class KeyBindImpl implements KeyBind
         return NO_ACTION;
     }
 
+    /**
+     * Clears the pressed and toggle states, without triggering anything.
+     * Used to start replaying recorded input events from a clean state.
+     */
+    void resetPressedState()
+    {
+        this.pressed = false;
+        this.pressedToggle = false;
+    }
+
+    /**
+     * @return a counter that changes every time the keys of this keybind are changed.
+     *         Used by the {@link HotkeyMatcher} to notice when its precompiled keys are out of date.
+     */
+    int getKeysVersion()
+    {
+        return this.keysVersion;
+    }
+
+    protected boolean areAllKeysPressed()
+    {
+        final int size = this.keyCodes.size();
+
+        for (int i = 0; i < size; ++i)
+        {
+            if (PRESSED_KEYS.contains(this.keyCodes.getInt(i)) == false)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     protected KeyUpdateResult triggerKeyAction(boolean pressedLast)
     {
         KeyAction activateOn = this.settings.getActivateOn();
@@ -398,8 +435,18 @@ public class KeyBindImpl implements KeyBind
         if (this.contextOverlaps(other) && this.hasKeys() && other.hasKeys())
         {
             IntArrayList thisKeys = this.keyCodes;
-            IntArrayList otherKeys = new IntArrayList();
-            other.getKeysToList(otherKeys);
+            IntArrayList otherKeys;
+
+            // Avoid the list copy for the common case, this gets called a lot by the overlap checks
+            if (other instanceof KeyBindImpl)
+            {
+                otherKeys = ((KeyBindImpl) other).keyCodes;
+            }
+            else
+            {
+                otherKeys = new IntArrayList();
+                other.getKeysToList(otherKeys);
+            }
 
             int thisKeyCount = thisKeys.size();
             int otherKeyCount = otherKeys.size();
@@ -526,15 +573,14 @@ public class KeyBindImpl implements KeyBind
         {
             KeyBind ignoredKeys = MaLiLibConfigs.Hotkeys.IGNORED_KEYS.getKeyBind();
 
-            if (PRESSED_KEYS.contains(keyCode) == false &&
-                ignoredKeys.containsKey(keyCode) == false)
+            if (ignoredKeys.containsKey(keyCode) == false)
             {
                 PRESSED_KEYS.add(keyCode);
             }
         }
         else
         {
-            PRESSED_KEYS.rem(keyCode);
+            PRESSED_KEYS.remove(keyCode);
         }
 
         if (MaLiLibConfigs.Debug.PRESSED_KEYS_TOAST.getBooleanValue())
@@ -547,7 +593,7 @@ public class KeyBindImpl implements KeyBind
             }
             else
             {
-                heldKeys = Keys.writeKeysToString(PRESSED_KEYS, " + ", Keys::charAsStorageString);
+                heldKeys = Keys.writeKeysToString(PRESSED_KEYS.toList(), " + ", Keys::charAsStorageString);
             }
 
             MessageDispatcher.generic(2000).type(MessageOutput.TOAST).messageMarker("pressed_keys")
@@ -574,11 +620,66 @@ public class KeyBindImpl implements KeyBind
         }
     }
 
+    /**
+     * Clears all the pressed keys, without checking the actual key states.
+     * Used to start replaying recorded input events from a clean state.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE!!!
+     */
+    static void resetPressedKeys()
+    {
+        PRESSED_KEYS.clear();
+        triggeredCount = 0;
+    }
+
+    /**
+     * Sets the source for the current input context, ie. whether a GUI screen is open,
+     * which is checked against the context of the keybinds when they get updated.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL FROM MOD CODE!!!
+     */
+    static void setContextSource(InputSource source)
+    {
+        contextSource = source;
+    }
+
+    static InputSource getContextSource()
+    {
+        return contextSource;
+    }
+
     public static int getCurrentlyPressedKeysCount()
     {
         return PRESSED_KEYS.size();
     }
 
+    /**
+     * @return true if the given key is currently held, according to the tracked pressed keys
+     */
+    public static boolean isKeyPressed(int keyCode)
+    {
+        return PRESSED_KEYS.contains(keyCode);
+    }
+
+    /**
+     * @return the live state of the currently held keys, for the input handling
+     *         that runs on the same thread that updates it. Other users should use
+     *         {@link #getPressedKeysSnapshot()} instead.
+     */
+    static PressedKeyState getPressedKeys()
+    {
+        return PRESSED_KEYS;
+    }
+
+    /**
+     * @return an immutable snapshot of the currently held keys.
+     *         The same snapshot object is returned until the held keys change.
+     */
+    public static PressedKeyState.Snapshot getPressedKeysSnapshot()
+    {
+        return PRESSED_KEYS.getSnapshot();
+    }
+
     public static int getTriggeredCount()
     {
         return triggeredCount;
@@ -610,11 +711,11 @@ public class KeyBindImpl implements KeyBind
         if (PRESSED_KEYS.isEmpty() == false)
         {
             StringBuilder sb = new StringBuilder(128);
-            final int size = PRESSED_KEYS.size();;
+            final int size = PRESSED_KEYS.size();
 
             for (int i = 0; i < size; ++i)
             {
-                int key = PRESSED_KEYS.getInt(i);
+                int key = PRESSED_KEYS.getKeyAt(i);
 
                 if (i > 0)
                 {
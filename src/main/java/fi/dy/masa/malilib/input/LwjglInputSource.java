@@ -0,0 +1,64 @@
+package fi.dy.masa.malilib.input;
+
+import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
+import fi.dy.masa.malilib.gui.util.GuiUtils;
+
+public class LwjglInputSource implements InputSource
+{
+    public static final LwjglInputSource INSTANCE = new LwjglInputSource();
+
+    @Override
+    public int getEventKey()
+    {
+        return Keyboard.getEventKey();
+    }
+
+    @Override
+    public boolean getEventKeyState()
+    {
+        return Keyboard.getEventKeyState();
+    }
+
+    @Override
+    public char getEventCharacter()
+    {
+        return Keyboard.getEventCharacter();
+    }
+
+    @Override
+    public int getEventButton()
+    {
+        return Mouse.getEventButton();
+    }
+
+    @Override
+    public boolean getEventButtonState()
+    {
+        return Mouse.getEventButtonState();
+    }
+
+    @Override
+    public int getEventDWheel()
+    {
+        return Mouse.getEventDWheel();
+    }
+
+    @Override
+    public int getMouseX()
+    {
+        return Mouse.getX();
+    }
+
+    @Override
+    public int getMouseY()
+    {
+        return Mouse.getY();
+    }
+
+    @Override
+    public boolean isScreenOpen()
+    {
+        return GuiUtils.getCurrentScreen() != null;
+    }
+}
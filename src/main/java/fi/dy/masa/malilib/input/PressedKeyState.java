@@ -0,0 +1,257 @@
+package fi.dy.masa.malilib.input;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * The set of the currently held keys. The keys are kept in the order they were pressed in,
+ * which the order sensitive keybinds need, and additionally in a bitset over the key code space,
+ * so that the membership checks are constant time instead of linear searches.
+ * <br><br>
+ * The key codes are offset by {@link #KEY_CODE_OFFSET} in the bitset, to also cover the
+ * negative key codes used for the mouse buttons and the scroll wheel. Any key codes outside of
+ * the bitset range still work, they just fall back to a linear search of the key array.
+ * <br><br>
+ * {@link #getSnapshot()} returns an immutable copy of the current state, which is only
+ * re-created after the state changes, for code that needs to keep or share the state.
+ * The keybind handling itself uses the live state, as it runs on the same thread that updates it.
+ */
+public class PressedKeyState
+{
+    public static final int KEY_CODE_OFFSET = 256;
+    public static final int KEY_CODE_RANGE = 1024;
+
+    protected final long[] bits = new long[KEY_CODE_RANGE >>> 6];
+    protected int[] keys = new int[8];
+    protected int size;
+    @Nullable protected Snapshot snapshot;
+
+    public int size()
+    {
+        return this.size;
+    }
+
+    public boolean isEmpty()
+    {
+        return this.size == 0;
+    }
+
+    public int getKeyAt(int index)
+    {
+        if (index >= this.size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.size);
+        }
+
+        return this.keys[index];
+    }
+
+    public boolean contains(int keyCode)
+    {
+        return containsKey(keyCode, this.bits, this.keys, this.size);
+    }
+
+    /**
+     * Adds the key to the end of the pressed keys, if it's not already pressed
+     * @return true if the key was added
+     */
+    public boolean add(int keyCode)
+    {
+        if (this.contains(keyCode))
+        {
+            return false;
+        }
+
+        if (this.size >= this.keys.length)
+        {
+            this.keys = Arrays.copyOf(this.keys, this.keys.length * 2);
+        }
+
+        this.keys[this.size++] = keyCode;
+        setBit(this.bits, keyCode, true);
+        this.snapshot = null;
+
+        return true;
+    }
+
+    /**
+     * Removes the key, keeping the order of the remaining keys
+     * @return true if the key was pressed
+     */
+    public boolean remove(int keyCode)
+    {
+        if (this.contains(keyCode) == false)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < this.size; ++i)
+        {
+            if (this.keys[i] == keyCode)
+            {
+                System.arraycopy(this.keys, i + 1, this.keys, i, this.size - i - 1);
+                --this.size;
+                break;
+            }
+        }
+
+        setBit(this.bits, keyCode, false);
+        this.snapshot = null;
+
+        return true;
+    }
+
+    /**
+     * Removes all the keys that match the given predicate, keeping the order of the remaining keys
+     * @return true if any keys were removed
+     */
+    public boolean removeIf(IntPredicate predicate)
+    {
+        final int oldSize = this.size;
+        int newSize = 0;
+
+        for (int i = 0; i < oldSize; ++i)
+        {
+            int keyCode = this.keys[i];
+
+            if (predicate.test(keyCode))
+            {
+                setBit(this.bits, keyCode, false);
+            }
+            else
+            {
+                this.keys[newSize++] = keyCode;
+            }
+        }
+
+        if (newSize != oldSize)
+        {
+            this.size = newSize;
+            this.snapshot = null;
+            return true;
+        }
+
+        return false;
+    }
+
+    public void clear()
+    {
+        if (this.size > 0)
+        {
+            Arrays.fill(this.bits, 0L);
+            this.size = 0;
+            this.snapshot = null;
+        }
+    }
+
+    /**
+     * @return a new list of the pressed keys, in the order they were pressed in
+     */
+    public IntArrayList toList()
+    {
+        return new IntArrayList(this.keys, 0, this.size);
+    }
+
+    /**
+     * @return an immutable snapshot of the current state. The same snapshot object
+     *         is returned until the state changes.
+     */
+    public Snapshot getSnapshot()
+    {
+        if (this.snapshot == null)
+        {
+            this.snapshot = new Snapshot(Arrays.copyOf(this.keys, this.size), this.bits.clone());
+        }
+
+        return this.snapshot;
+    }
+
+    protected static boolean containsKey(int keyCode, long[] bits, int[] keys, int size)
+    {
+        int index = keyCode + KEY_CODE_OFFSET;
+
+        if (index >= 0 && index < KEY_CODE_RANGE)
+        {
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        for (int i = 0; i < size; ++i)
+        {
+            if (keys[i] == keyCode)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    protected static void setBit(long[] bits, int keyCode, boolean value)
+    {
+        int index = keyCode + KEY_CODE_OFFSET;
+
+        if (index >= 0 && index < KEY_CODE_RANGE)
+        {
+            if (value)
+            {
+                bits[index >>> 6] |= (1L << index);
+            }
+            else
+            {
+                bits[index >>> 6] &= ~(1L << index);
+            }
+        }
+    }
+
+    public static class Snapshot
+    {
+        protected final int[] keys;
+        protected final long[] bits;
+
+        protected Snapshot(int[] keys, long[] bits)
+        {
+            this.keys = keys;
+            this.bits = bits;
+        }
+
+        public int size()
+        {
+            return this.keys.length;
+        }
+
+        public boolean isEmpty()
+        {
+            return this.keys.length == 0;
+        }
+
+        public int getKeyAt(int index)
+        {
+            return this.keys[index];
+        }
+
+        public boolean contains(int keyCode)
+        {
+            return containsKey(keyCode, this.bits, this.keys, this.keys.length);
+        }
+
+        /**
+         * @return true if all the given keys are pressed
+         */
+        public boolean containsAll(IntArrayList keyCodes)
+        {
+            final int size = keyCodes.size();
+
+            for (int i = 0; i < size; ++i)
+            {
+                if (this.contains(keyCodes.getInt(i)) == false)
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package fi.dy.masa.malilib.input;
+
+import javax.annotation.Nullable;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import fi.dy.masa.malilib.util.data.json.JsonUtils;
+
+/**
+ * One raw keyboard or mouse event, as read from an {@link InputSource}.
+ */
+public class RecordedInputEvent
+{
+    protected final boolean isKeyboardEvent;
+    protected final long time;
+    protected final int key;
+    protected final boolean state;
+    protected final char character;
+    protected final int dWheel;
+    protected final int mouseX;
+    protected final int mouseY;
+    protected final boolean screenOpen;
+
+    protected RecordedInputEvent(boolean isKeyboardEvent, long time, int key, boolean state,
+                                 char character, int dWheel, int mouseX, int mouseY, boolean screenOpen)
+    {
+        this.isKeyboardEvent = isKeyboardEvent;
+        this.time = time;
+        this.key = key;
+        this.state = state;
+        this.character = character;
+        this.dWheel = dWheel;
+        this.mouseX = mouseX;
+        this.mouseY = mouseY;
+        this.screenOpen = screenOpen;
+    }
+
+    public boolean isKeyboardEvent()
+    {
+        return this.isKeyboardEvent;
+    }
+
+    /**
+     * @return the time of the event in nanoseconds, relative to the start of the recording
+     */
+    public long getTime()
+    {
+        return this.time;
+    }
+
+    /**
+     * @return the key code for keyboard events, or the button for mouse events
+     */
+    public int getKey()
+    {
+        return this.key;
+    }
+
+    /**
+     * @return the key state for keyboard events, or the button state for mouse events
+     */
+    public boolean getState()
+    {
+        return this.state;
+    }
+
+    public char getCharacter()
+    {
+        return this.character;
+    }
+
+    public int getDWheel()
+    {
+        return this.dWheel;
+    }
+
+    public int getMouseX()
+    {
+        return this.mouseX;
+    }
+
+    public int getMouseY()
+    {
+        return this.mouseY;
+    }
+
+    /**
+     * @return true if a GUI screen was open when the event happened
+     */
+    public boolean isScreenOpen()
+    {
+        return this.screenOpen;
+    }
+
+    public JsonObject toJson()
+    {
+        JsonObject obj = new JsonObject();
+
+        obj.addProperty("type", this.isKeyboardEvent ? "key" : "mouse");
+        obj.addProperty("time", this.time);
+        obj.addProperty("key", this.key);
+        obj.addProperty("state", this.state);
+        obj.addProperty("screen", this.screenOpen);
+
+        if (this.isKeyboardEvent)
+        {
+            obj.addProperty("char", (int) this.character);
+        }
+        else
+        {
+            obj.addProperty("dwheel", this.dWheel);
+            obj.addProperty("x", this.mouseX);
+            obj.addProperty("y", this.mouseY);
+        }
+
+        return obj;
+    }
+
+    @Nullable
+    public static RecordedInputEvent fromJson(JsonElement el)
+    {
+        if (el.isJsonObject() == false)
+        {
+            return null;
+        }
+
+        JsonObject obj = el.getAsJsonObject();
+
+        if (JsonUtils.hasString(obj, "type") == false ||
+            JsonUtils.hasInteger(obj, "key") == false ||
+            JsonUtils.hasBoolean(obj, "state") == false)
+        {
+            return null;
+        }
+
+        long time = JsonUtils.getLongOrDefault(obj, "time", 0L);
+        int key = JsonUtils.getInteger(obj, "key");
+        boolean state = JsonUtils.getBoolean(obj, "state");
+        boolean screenOpen = JsonUtils.getBooleanOrDefault(obj, "screen", false);
+
+        if (JsonUtils.getString(obj, "type").equals("key"))
+        {
+            char character = (char) JsonUtils.getIntegerOrDefault(obj, "char", 0);
+            return keyboardEvent(time, key, state, character, screenOpen);
+        }
+
+        int dWheel = JsonUtils.getIntegerOrDefault(obj, "dwheel", 0);
+        int mouseX = JsonUtils.getIntegerOrDefault(obj, "x", 0);
+        int mouseY = JsonUtils.getIntegerOrDefault(obj, "y", 0);
+
+        return mouseEvent(time, key, state, dWheel, mouseX, mouseY, screenOpen);
+    }
+
+    public static RecordedInputEvent keyboardEvent(long time, int key, boolean keyState, char character, boolean screenOpen)
+    {
+        return new RecordedInputEvent(true, time, key, keyState, character, 0, 0, 0, screenOpen);
+    }
+
+    public static RecordedInputEvent mouseEvent(long time, int button, boolean buttonState, int dWheel,
+                                                int mouseX, int mouseY, boolean screenOpen)
+    {
+        return new RecordedInputEvent(false, time, button, buttonState, (char) 0, dWheel, mouseX, mouseY, screenOpen);
+    }
+}
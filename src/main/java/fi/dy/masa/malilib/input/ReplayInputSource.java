@@ -0,0 +1,72 @@
+package fi.dy.masa.malilib.input;
+
+import javax.annotation.Nullable;
+
+/**
+ * An input source that returns the values of the currently set recorded event.
+ * Setting this as the input source of {@link InputDispatcherImpl}, and then calling
+ * the dispatcher's input methods for each event, replays a recording through the entire input path.
+ */
+public class ReplayInputSource implements InputSource
+{
+    @Nullable protected RecordedInputEvent event;
+
+    public void setEvent(@Nullable RecordedInputEvent event)
+    {
+        this.event = event;
+    }
+
+    @Override
+    public int getEventKey()
+    {
+        return this.event != null && this.event.isKeyboardEvent() ? this.event.getKey() : 0;
+    }
+
+    @Override
+    public boolean getEventKeyState()
+    {
+        return this.event != null && this.event.isKeyboardEvent() && this.event.getState();
+    }
+
+    @Override
+    public char getEventCharacter()
+    {
+        return this.event != null ? this.event.getCharacter() : (char) 0;
+    }
+
+    @Override
+    public int getEventButton()
+    {
+        return this.event != null && this.event.isKeyboardEvent() == false ? this.event.getKey() : -1;
+    }
+
+    @Override
+    public boolean getEventButtonState()
+    {
+        return this.event != null && this.event.isKeyboardEvent() == false && this.event.getState();
+    }
+
+    @Override
+    public int getEventDWheel()
+    {
+        return this.event != null ? this.event.getDWheel() : 0;
+    }
+
+    @Override
+    public int getMouseX()
+    {
+        return this.event != null ? this.event.getMouseX() : 0;
+    }
+
+    @Override
+    public int getMouseY()
+    {
+        return this.event != null ? this.event.getMouseY() : 0;
+    }
+
+    @Override
+    public boolean isScreenOpen()
+    {
+        return this.event != null && this.event.isScreenOpen();
+    }
+}
@@ -6,6 +6,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import net.minecraft.client.network.NetHandlerPlayClient;
 import net.minecraft.network.play.server.SPacketCustomPayload;
+import net.minecraft.util.text.ITextComponent;
 import fi.dy.masa.malilib.network.ClientPacketChannelHandlerImpl;
 import fi.dy.masa.malilib.registry.Registry;
 
@@ -18,4 +19,11 @@ public abstract class MixinNetHandlerPlayClient
         NetHandlerPlayClient handler = (NetHandlerPlayClient) (Object) this;
         ((ClientPacketChannelHandlerImpl) Registry.CLIENT_PACKET_CHANNEL_HANDLER).processPacketFromServer(packet, handler);
     }
+
+    @Inject(method = "onDisconnect", at = @At("HEAD"))
+    private void onDisconnect(ITextComponent reason, CallbackInfo ci)
+    {
+        NetHandlerPlayClient handler = (NetHandlerPlayClient) (Object) this;
+        ((ClientPacketChannelHandlerImpl) Registry.CLIENT_PACKET_CHANNEL_HANDLER).onDisconnect(handler);
+    }
 }
@@ -0,0 +1,73 @@
+package fi.dy.masa.malilib.mixin.render;
+
+import java.nio.FloatBuffer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+import net.minecraft.client.renderer.GlStateManager;
+import fi.dy.masa.malilib.render.text.BatchMatrixTracker;
+
+@Mixin(GlStateManager.class)
+public abstract class GlStateManagerMixin
+{
+    @Inject(method = "matrixMode", at = @At("HEAD"))
+    private static void onMatrixMode(int mode, CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onMatrixMode(mode);
+    }
+
+    @Inject(method = "pushMatrix", at = @At("HEAD"))
+    private static void onPushMatrix(CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onPushMatrix();
+    }
+
+    @Inject(method = "popMatrix", at = @At("HEAD"))
+    private static void onPopMatrix(CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onPopMatrix();
+    }
+
+    @Inject(method = "loadIdentity", at = @At("HEAD"))
+    private static void onLoadIdentity(CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onLoadIdentity();
+    }
+
+    @Inject(method = "translate(FFF)V", at = @At("HEAD"))
+    private static void onTranslate(float x, float y, float z, CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onTranslate(x, y, z);
+    }
+
+    @Inject(method = "translate(DDD)V", at = @At("HEAD"))
+    private static void onTranslate(double x, double y, double z, CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onTranslate((float) x, (float) y, (float) z);
+    }
+
+    @Inject(method = "scale(FFF)V", at = @At("HEAD"))
+    private static void onScale(float x, float y, float z, CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onScale(x, y, z);
+    }
+
+    @Inject(method = "scale(DDD)V", at = @At("HEAD"))
+    private static void onScale(double x, double y, double z, CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onScale((float) x, (float) y, (float) z);
+    }
+
+    @Inject(method = "rotate(FFFF)V", at = @At("HEAD"))
+    private static void onRotate(float angle, float x, float y, float z, CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onRotate(angle, x, y, z);
+    }
+
+    @Inject(method = "multMatrix", at = @At("HEAD"))
+    private static void onMultMatrix(FloatBuffer matrix, CallbackInfo ci)
+    {
+        BatchMatrixTracker.INSTANCE.onMultMatrix(matrix);
+    }
+}
@@ -0,0 +1,172 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.ResourceLocation;
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.util.game.wrap.GameUtils;
+
+/**
+ * Decodes the payloads for {@link AsyncPluginChannelHandler}s on a small worker pool.
+ * The payloads of each channel are decoded one at a time in the order they were received,
+ * and the decoded results are passed to the client thread in the same order.
+ * <br><br>
+ * Each job is tagged with the current connection generation when it's submitted.
+ * The generation is advanced on disconnect and on world changes, and any results
+ * from an older generation are dropped instead of being delivered.
+ */
+public class AsyncPacketDecoder
+{
+    public static final AsyncPacketDecoder INSTANCE = new AsyncPacketDecoder(Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)));
+
+    protected final ExecutorService executor;
+    protected final Map<ResourceLocation, ChannelQueue> channelQueues = new HashMap<>();
+    protected final AtomicInteger generation = new AtomicInteger();
+
+    public AsyncPacketDecoder(int threadCount)
+    {
+        this.executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                                               new LinkedBlockingQueue<>(),
+                                               new ThreadFactoryBuilder().setNameFormat("malilib packet decoder #%d").setDaemon(true).build());
+        ((ThreadPoolExecutor) this.executor).allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queues the payload to be decoded by the given handler.
+     * The ownership of the buffer is transferred, ie. it will be released after decoding.
+     */
+    public <T> void submit(AsyncPluginChannelHandler<T> handler,
+                           ResourceLocation channel,
+                           PacketBuffer buf,
+                           @Nullable PacketChannelStats stats)
+    {
+        ChannelQueue queue;
+
+        synchronized (this.channelQueues)
+        {
+            queue = this.channelQueues.computeIfAbsent(channel, (c) -> new ChannelQueue());
+        }
+
+        final int generation = this.generation.get();
+        queue.add(() -> this.decode(handler, channel, buf, stats, generation));
+    }
+
+    /**
+     * Advances the connection generation, so that the results of all the currently
+     * pending or running jobs get dropped instead of being delivered.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void invalidatePendingResults()
+    {
+        this.generation.incrementAndGet();
+    }
+
+    protected boolean isCurrentGeneration(int generation)
+    {
+        return this.generation.get() == generation;
+    }
+
+    protected <T> void decode(AsyncPluginChannelHandler<T> handler,
+                              ResourceLocation channel,
+                              PacketBuffer buf,
+                              @Nullable PacketChannelStats stats,
+                              int generation)
+    {
+        // Don't bother decoding data for a connection or world that is already gone
+        if (this.isCurrentGeneration(generation) == false)
+        {
+            buf.release();
+            return;
+        }
+
+        buf = PacketCompression.decompressIfEnabled(handler, channel, buf);
+
+        if (buf == null)
+        {
+            return;
+        }
+
+        try
+        {
+            long startTime = System.nanoTime();
+            T data = handler.decodePayload(buf);
+
+            if (stats != null)
+            {
+                stats.onPacketDecoded(System.nanoTime() - startTime);
+            }
+
+            if (data != null)
+            {
+                // The generation is checked again on the client thread, because
+                // a disconnect or world change may happen before the task runs
+                GameUtils.scheduleToClientThread(() -> {
+                    if (this.isCurrentGeneration(generation))
+                    {
+                        handler.onPayloadDecoded(data);
+                    }
+                });
+            }
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("Failed to decode a packet on channel '{}'", channel, e);
+        }
+        finally
+        {
+            buf.release();
+        }
+    }
+
+    /**
+     * A queue of tasks that are run one at a time in order on the executor
+     */
+    protected class ChannelQueue implements Runnable
+    {
+        protected final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        protected boolean running;
+
+        protected synchronized void add(Runnable task)
+        {
+            this.tasks.addLast(task);
+
+            if (this.running == false)
+            {
+                this.running = true;
+                AsyncPacketDecoder.this.executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                Runnable task;
+
+                synchronized (this)
+                {
+                    task = this.tasks.pollFirst();
+
+                    if (task == null)
+                    {
+                        this.running = false;
+                        return;
+                    }
+                }
+
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package fi.dy.masa.malilib.network;
+
+import javax.annotation.Nullable;
+import net.minecraft.network.PacketBuffer;
+
+/**
+ * A channel handler that decodes the received payloads on a worker thread,
+ * and then gets the decoded result on the client thread.
+ * This is meant for handlers that parse large payloads, so that the
+ * parsing doesn't block the game. The payloads on each channel are decoded
+ * and delivered in the order they were received.
+ */
+public interface AsyncPluginChannelHandler<T> extends PluginChannelHandler
+{
+    /**
+     * Decodes the received payload. <b>This is called on a worker thread</b>,
+     * so this must not access the game state or any other non-thread-safe data.
+     * The buffer is released after this method returns.
+     * @return the decoded data, or null if nothing should be passed on to the client thread
+     */
+    @Nullable
+    T decodePayload(PacketBuffer buf);
+
+    /**
+     * Called on the client thread with the data decoded by {@link #decodePayload(PacketBuffer)}
+     */
+    void onPayloadDecoded(T data);
+
+    /**
+     * Decodes and handles the payload synchronously on the calling thread
+     */
+    @Override
+    default void onPacketReceived(PacketBuffer buf)
+    {
+        T data = this.decodePayload(buf);
+
+        if (data != null)
+        {
+            this.onPayloadDecoded(data);
+        }
+    }
+}
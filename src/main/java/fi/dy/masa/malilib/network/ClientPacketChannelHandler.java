@@ -1,8 +1,24 @@
 package fi.dy.masa.malilib.network;
 
+import java.util.Collection;
+import javax.annotation.Nullable;
+import net.minecraft.util.ResourceLocation;
+
 public interface ClientPacketChannelHandler
 {
     void registerClientChannelHandler(PluginChannelHandler handler);
 
     void unregisterClientChannelHandler(PluginChannelHandler handler);
-}
\ No newline at end of file
+
+    /**
+     * @return the network traffic counters for the given channel,
+     *         or null if nothing has been registered for that channel
+     */
+    @Nullable
+    PacketChannelStats getChannelStats(ResourceLocation channel);
+
+    /**
+     * @return the network traffic counters of all the channels that have been registered
+     */
+    Collection<PacketChannelStats> getAllChannelStats();
+}
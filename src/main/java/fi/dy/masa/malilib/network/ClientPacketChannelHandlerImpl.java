@@ -1,12 +1,17 @@
 package fi.dy.masa.malilib.network;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import net.minecraft.client.network.NetHandlerPlayClient;
@@ -22,7 +27,11 @@ public class ClientPacketChannelHandlerImpl implements ClientPacketChannelHandle
     public static final ResourceLocation REGISTER = new ResourceLocation("minecraft:register");
     public static final ResourceLocation UNREGISTER = new ResourceLocation("minecraft:unregister");
 
+    protected static final int MAX_CACHED_CHANNEL_NAMES = 1024;
+
     protected final ArrayListMultimap<ResourceLocation, PluginChannelHandler> handlers = ArrayListMultimap.create();
+    protected final Map<ResourceLocation, PacketChannelStats> channelStats = new HashMap<>();
+    protected final HashMap<String, ChannelEntry> channelLookup = new HashMap<>();
 
     public ClientPacketChannelHandlerImpl()
     {
@@ -46,6 +55,8 @@ public class ClientPacketChannelHandlerImpl implements ClientPacketChannelHandle
             }
         }
 
+        this.rebuildChannelLookup();
+
         if (toRegister.isEmpty() == false)
         {
             this.sendRegisterPacket(REGISTER, toRegister);
@@ -65,47 +76,162 @@ public class ClientPacketChannelHandlerImpl implements ClientPacketChannelHandle
             }
         }
 
+        this.rebuildChannelLookup();
+
         if (toUnRegister.isEmpty() == false)
         {
             this.sendRegisterPacket(UNREGISTER, toUnRegister);
         }
     }
 
+    @Override
+    @Nullable
+    public PacketChannelStats getChannelStats(ResourceLocation channel)
+    {
+        return this.channelStats.get(channel);
+    }
+
+    @Override
+    public Collection<PacketChannelStats> getAllChannelStats()
+    {
+        return Collections.unmodifiableCollection(this.channelStats.values());
+    }
+
+    /**
+     * Builds the channel name to handlers lookup table, so that the
+     * incoming packets don't need to parse the channel name
+     */
+    protected void rebuildChannelLookup()
+    {
+        this.channelLookup.clear();
+
+        for (ResourceLocation channel : this.handlers.keySet())
+        {
+            List<PluginChannelHandler> handlers = this.handlers.get(channel);
+
+            if (handlers.isEmpty() == false)
+            {
+                PacketChannelStats stats = this.channelStats.computeIfAbsent(channel, PacketChannelStats::new);
+                this.channelLookup.put(channel.toString(), new ChannelEntry(channel, handlers, stats));
+            }
+        }
+    }
+
+    @Nullable
+    protected ChannelEntry getChannelEntry(String channelName)
+    {
+        ChannelEntry entry = this.channelLookup.get(channelName);
+
+        if (entry == null)
+        {
+            // The channel name was not in the canonical form (ie. missing the namespace or
+            // having upper case characters), or the channel is not handled at all.
+            // The result is cached, so that the name only needs to be parsed once.
+            ResourceLocation channel = new ResourceLocation(channelName);
+            entry = this.channelLookup.getOrDefault(channel.toString(), ChannelEntry.NONE);
+
+            if (this.channelLookup.size() < MAX_CACHED_CHANNEL_NAMES)
+            {
+                this.channelLookup.put(channelName, entry);
+            }
+        }
+
+        return entry != ChannelEntry.NONE ? entry : null;
+    }
+
     /**
      * NOT PUBLIC API - DO NOT CALL
      */
     public boolean processPacketFromServer(SPacketCustomPayload packet, NetHandlerPlayClient netHandler)
     {
-        ResourceLocation channel = new ResourceLocation(packet.getChannelName());
-        List<PluginChannelHandler> handlers = this.handlers.get(channel);
+        ChannelEntry entry = this.getChannelEntry(packet.getChannelName());
 
-        if (handlers.isEmpty() == false)
+        if (entry == null)
         {
-            for (PluginChannelHandler handler : handlers)
-            {
-                PacketBuffer buf;
+            return false;
+        }
 
-                if (handler.usePacketSplitter())
-                {
-                    buf = PacketSplitter.receive(netHandler, packet);
-                }
-                else
-                {
-                    buf = PacketUtils.retainedSlice(packet.getBufferData());
-                }
+        ResourceLocation channel = entry.channel;
+        PacketChannelStats stats = entry.stats;
+        PacketBuffer data = packet.getBufferData();
+        PacketBuffer reassembled = null;
 
-                // Finished the complete packet
-                if (buf != null)
+        stats.onFragmentReceived(data.readableBytes());
+
+        // Reassemble the split packet only once, even if there are multiple handlers on the channel
+        if (entry.usePacketSplitter)
+        {
+            reassembled = PacketSplitter.receive(netHandler, channel, PacketUtils.slice(data));
+        }
+
+        if (reassembled != null || entry.allUsePacketSplitter == false)
+        {
+            stats.onPacketCompleted();
+        }
+
+        for (PluginChannelHandler handler : entry.handlers)
+        {
+            PacketBuffer buf;
+
+            if (handler.usePacketSplitter())
+            {
+                // Not finished yet with the complete packet
+                if (reassembled == null)
                 {
-                    handler.onPacketReceived(buf);
-                    buf.release();
+                    continue;
                 }
+
+                // Each handler gets its own reader index
+                buf = new PacketBuffer(reassembled.retainedDuplicate());
+            }
+            else
+            {
+                buf = PacketUtils.retainedSlice(data);
             }
 
-            return true;
+            this.handlePacket(handler, channel, buf, stats);
+        }
+
+        if (reassembled != null)
+        {
+            reassembled.release();
+        }
+
+        return true;
+    }
+
+    /**
+     * Discards the incomplete split packets and the pending decoded payloads of the closed connection.
+     * <br><br>
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onDisconnect(NetHandlerPlayClient netHandler)
+    {
+        PacketSplitter.removeSessions(netHandler);
+        AsyncPacketDecoder.INSTANCE.invalidatePendingResults();
+    }
+
+    protected void handlePacket(PluginChannelHandler handler,
+                                ResourceLocation channel,
+                                PacketBuffer buf,
+                                PacketChannelStats stats)
+    {
+        if (handler instanceof AsyncPluginChannelHandler)
+        {
+            // The decompression and decoding happen on a worker thread
+            AsyncPacketDecoder.INSTANCE.submit((AsyncPluginChannelHandler<?>) handler, channel, buf, stats);
+            return;
         }
 
-        return false;
+        buf = PacketCompression.decompressIfEnabled(handler, channel, buf);
+
+        if (buf != null)
+        {
+            long startTime = System.nanoTime();
+            handler.onPacketReceived(buf);
+            stats.onPacketDecoded(System.nanoTime() - startTime);
+            buf.release();
+        }
     }
 
     protected void sendRegisterPacket(ResourceLocation type, Collection<ResourceLocation> channels)
@@ -124,4 +250,24 @@ public class ClientPacketChannelHandlerImpl implements ClientPacketChannelHandle
             MaLiLib.debugLog("Failed to send register channel packet for '{}' - network handler was null", channels);
         }
     }
+
+    protected static class ChannelEntry
+    {
+        protected static final ChannelEntry NONE = new ChannelEntry(new ResourceLocation("malilib:none"), ImmutableList.of(), new PacketChannelStats(new ResourceLocation("malilib:none")));
+
+        protected final ResourceLocation channel;
+        protected final ImmutableList<PluginChannelHandler> handlers;
+        protected final PacketChannelStats stats;
+        protected final boolean usePacketSplitter;
+        protected final boolean allUsePacketSplitter;
+
+        protected ChannelEntry(ResourceLocation channel, List<PluginChannelHandler> handlers, PacketChannelStats stats)
+        {
+            this.channel = channel;
+            this.handlers = ImmutableList.copyOf(handlers);
+            this.stats = stats;
+            this.usePacketSplitter = handlers.stream().anyMatch(PluginChannelHandler::usePacketSplitter);
+            this.allUsePacketSplitter = handlers.stream().allMatch(PluginChannelHandler::usePacketSplitter);
+        }
+    }
 }
@@ -0,0 +1,22 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.function.Supplier;
+import fi.dy.masa.malilib.event.ClientTickHandler;
+
+public class NetworkTickHandler implements ClientTickHandler
+{
+    public static final NetworkTickHandler INSTANCE = new NetworkTickHandler();
+
+    @Override
+    public Supplier<String> getProfilerSectionSupplier()
+    {
+        return () -> "malilib_network";
+    }
+
+    @Override
+    public void onClientTick()
+    {
+        PacketSplitter.removeTimedOutSessions();
+        PacketSendQueue.INSTANCE.tick();
+    }
+}
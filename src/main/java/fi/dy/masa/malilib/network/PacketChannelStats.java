@@ -0,0 +1,100 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import net.minecraft.util.ResourceLocation;
+
+/**
+ * Network traffic counters for one incoming plugin channel
+ */
+public class PacketChannelStats
+{
+    protected final ResourceLocation channel;
+    protected final AtomicLong fragmentCount = new AtomicLong();
+    protected final AtomicLong byteCount = new AtomicLong();
+    protected final AtomicLong packetCount = new AtomicLong();
+    protected final AtomicLong decodeCount = new AtomicLong();
+    protected final AtomicLong decodeTimeNanos = new AtomicLong();
+
+    public PacketChannelStats(ResourceLocation channel)
+    {
+        this.channel = channel;
+    }
+
+    public ResourceLocation getChannel()
+    {
+        return this.channel;
+    }
+
+    /**
+     * @return the number of raw custom payload packets received on this channel.
+     *         For split packets, this is the number of fragments.
+     */
+    public long getFragmentCount()
+    {
+        return this.fragmentCount.get();
+    }
+
+    /**
+     * @return the number of raw payload bytes received on this channel
+     */
+    public long getByteCount()
+    {
+        return this.byteCount.get();
+    }
+
+    /**
+     * @return the number of complete (reassembled, if split) packets received on this channel
+     */
+    public long getPacketCount()
+    {
+        return this.packetCount.get();
+    }
+
+    /**
+     * @return the number of times a handler has handled or decoded a packet on this channel
+     */
+    public long getDecodeCount()
+    {
+        return this.decodeCount.get();
+    }
+
+    /**
+     * @return the total time spent by the handlers handling or decoding the packets on this channel
+     */
+    public long getDecodeTimeNanos()
+    {
+        return this.decodeTimeNanos.get();
+    }
+
+    public double getAverageDecodeTimeNanos()
+    {
+        long count = this.decodeCount.get();
+        return count > 0 ? (double) this.decodeTimeNanos.get() / (double) count : 0.0;
+    }
+
+    public void reset()
+    {
+        this.fragmentCount.set(0);
+        this.byteCount.set(0);
+        this.packetCount.set(0);
+        this.decodeCount.set(0);
+        this.decodeTimeNanos.set(0);
+    }
+
+    void onFragmentReceived(int bytes)
+    {
+        this.fragmentCount.incrementAndGet();
+        this.byteCount.addAndGet(bytes);
+    }
+
+    void onPacketCompleted()
+    {
+        this.packetCount.incrementAndGet();
+    }
+
+    void onPacketDecoded(long timeNanos)
+    {
+        this.decodeCount.incrementAndGet();
+        this.decodeTimeNanos.addAndGet(timeNanos);
+    }
+}
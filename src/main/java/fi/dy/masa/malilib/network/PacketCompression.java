@@ -0,0 +1,175 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.ResourceLocation;
+import fi.dy.masa.malilib.MaLiLib;
+
+/**
+ * The optional compression stage for plugin channel payloads.
+ * A compressed payload starts with a flag byte, which is {@link #FLAG_UNCOMPRESSED}
+ * if the rest of the payload is stored as-is (when the payload is smaller than the
+ * compression threshold, or if it didn't compress well), or {@link #FLAG_DEFLATE}
+ * if the rest of the payload is the uncompressed size as a VarInt, followed by the deflated data.
+ */
+public class PacketCompression
+{
+    public static final int FLAG_UNCOMPRESSED = 0;
+    public static final int FLAG_DEFLATE = 1;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 256;
+    /** Deflate can't compress better than about 1032:1, so any larger declared size is bogus */
+    public static final int MAX_DEFLATE_RATIO = 1032;
+
+    /**
+     * Compresses the readable bytes of the given buffer, if there are at least threshold bytes.
+     * <b>Note:</b> The input buffer is released.
+     * @return a new buffer with the compression flag byte and the (possibly) compressed payload
+     */
+    public static PacketBuffer compress(PacketBuffer buf, int threshold)
+    {
+        int length = buf.readableBytes();
+
+        if (length >= threshold)
+        {
+            byte[] input = new byte[length];
+            buf.getBytes(buf.readerIndex(), input);
+
+            Deflater deflater = new Deflater();
+            deflater.setInput(input);
+            deflater.finish();
+
+            PacketBuffer out = new PacketBuffer(Unpooled.buffer(length / 2 + 16));
+            byte[] tmp = new byte[8192];
+
+            out.writeByte(FLAG_DEFLATE);
+            out.writeVarInt(length);
+
+            while (deflater.finished() == false && out.writerIndex() <= length)
+            {
+                int count = deflater.deflate(tmp);
+                out.writeBytes(tmp, 0, count);
+            }
+
+            boolean success = deflater.finished();
+            deflater.end();
+
+            // Only use the compressed data if it's actually smaller than the original
+            if (success && out.writerIndex() <= length)
+            {
+                buf.release();
+                return out;
+            }
+
+            out.release();
+        }
+
+        PacketBuffer out = new PacketBuffer(Unpooled.buffer(length + 1));
+        out.writeByte(FLAG_UNCOMPRESSED);
+        out.writeBytes(buf, buf.readerIndex(), length);
+        buf.release();
+
+        return out;
+    }
+
+    /**
+     * Decompresses the received payload, if the handler uses compression.
+     * If the decompression fails, then the buffer is released and null is returned.
+     * @return the buffer to pass to the handler, or null on failure
+     */
+    @Nullable
+    public static PacketBuffer decompressIfEnabled(PluginChannelHandler handler, ResourceLocation channel, PacketBuffer buf)
+    {
+        if (handler.useCompression() == false)
+        {
+            return buf;
+        }
+
+        try
+        {
+            return decompress(buf, PacketSplitter.DEFAULT_MAX_RECEIVE_SIZE_S2C);
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("Failed to decompress a packet on channel '{}'", channel, e);
+            buf.release();
+            return null;
+        }
+    }
+
+    /**
+     * Decompresses a payload written by {@link #compress(PacketBuffer, int)}.
+     * If the payload was stored uncompressed, then the same buffer is returned,
+     * positioned after the flag byte. Otherwise the input buffer is released,
+     * and a new buffer with the decompressed data is returned.
+     * @param maxLength the maximum allowed decompressed size
+     * @throws IllegalArgumentException if the payload is invalid or too large
+     */
+    public static PacketBuffer decompress(PacketBuffer buf, int maxLength)
+    {
+        int flag = buf.readByte();
+
+        if (flag == FLAG_UNCOMPRESSED)
+        {
+            return buf;
+        }
+        else if (flag != FLAG_DEFLATE)
+        {
+            throw new IllegalArgumentException("Invalid compression flag: " + flag);
+        }
+
+        int uncompressedLength = buf.readVarInt();
+
+        if (uncompressedLength < 0 || uncompressedLength > maxLength)
+        {
+            throw new IllegalArgumentException("Invalid or too large uncompressed payload size: " + uncompressedLength);
+        }
+
+        // Reject the size before allocating the output array, so that a tiny payload
+        // can't make the receiver allocate up to maxLength bytes for nothing
+        if ((long) buf.readableBytes() * MAX_DEFLATE_RATIO < uncompressedLength)
+        {
+            throw new IllegalArgumentException("Uncompressed payload size " + uncompressedLength +
+                                               " is not possible for " + buf.readableBytes() + " bytes of compressed data");
+        }
+
+        byte[] input = new byte[buf.readableBytes()];
+        byte[] output = new byte[uncompressedLength];
+        buf.readBytes(input);
+
+        Inflater inflater = new Inflater();
+        inflater.setInput(input);
+
+        try
+        {
+            int count = 0;
+
+            while (count < uncompressedLength)
+            {
+                int read = inflater.inflate(output, count, uncompressedLength - count);
+
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary() || inflater.finished()))
+                {
+                    throw new IllegalArgumentException("Truncated compressed payload");
+                }
+
+                count += read;
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new IllegalArgumentException("Invalid compressed payload", e);
+        }
+        finally
+        {
+            inflater.end();
+        }
+
+        buf.release();
+
+        return new PacketBuffer(Unpooled.wrappedBuffer(output));
+    }
+}
@@ -0,0 +1,265 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.minecraft.client.network.NetHandlerPlayClient;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.client.CPacketCustomPayload;
+import net.minecraft.util.ResourceLocation;
+import fi.dy.masa.malilib.listener.TaskCompletionListener;
+
+/**
+ * A paced outbound queue for split client-to-server packets.
+ * Each channel has its own queue, and the queues are drained in a round-robin
+ * fashion one fragment at a time on each client tick, until the per-tick byte budget
+ * has been used. This prevents large uploads from flooding the connection
+ * and from stalling the traffic on other channels.
+ */
+public class PacketSendQueue
+{
+    public static final PacketSendQueue INSTANCE = new PacketSendQueue();
+    public static final int DEFAULT_MAX_BYTES_PER_TICK = 65536;
+
+    protected final Map<ResourceLocation, ArrayDeque<QueuedPacket>> queues = new LinkedHashMap<>();
+    protected int maxBytesPerTick = DEFAULT_MAX_BYTES_PER_TICK;
+
+    /**
+     * Sets the number of bytes that can be sent per client tick.
+     * At least one fragment is always sent per tick, if there is anything queued.
+     */
+    public void setMaxBytesPerTick(int maxBytesPerTick)
+    {
+        this.maxBytesPerTick = maxBytesPerTick;
+    }
+
+    public int getMaxBytesPerTick()
+    {
+        return this.maxBytesPerTick;
+    }
+
+    /**
+     * @return the number of packets currently queued on all channels
+     */
+    public int getQueuedPacketCount()
+    {
+        int count = 0;
+
+        for (ArrayDeque<QueuedPacket> queue : this.queues.values())
+        {
+            count += queue.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the number of bytes still waiting to be sent on all channels
+     */
+    public long getQueuedBytes()
+    {
+        long bytes = 0;
+
+        for (ArrayDeque<QueuedPacket> queue : this.queues.values())
+        {
+            for (QueuedPacket packet : queue)
+            {
+                bytes += packet.getTotalBytes() - packet.getSentBytes();
+            }
+        }
+
+        return bytes;
+    }
+
+    public QueuedPacket enqueue(ResourceLocation channel,
+                                PacketBuffer packet,
+                                NetHandlerPlayClient networkHandler,
+                                @Nullable TaskCompletionListener listener)
+    {
+        QueuedPacket queuedPacket = new QueuedPacket(channel, packet, networkHandler, listener);
+        this.queues.computeIfAbsent(channel, (c) -> new ArrayDeque<>()).addLast(queuedPacket);
+        return queuedPacket;
+    }
+
+    /**
+     * Sends queued packet fragments until the per-tick budget has been used
+     */
+    public void tick()
+    {
+        if (this.queues.isEmpty())
+        {
+            return;
+        }
+
+        // The listeners are called after the loop, in case they queue new packets
+        List<QueuedPacket> finished = new ArrayList<>();
+        // Always send at least one fragment per tick, so that a zero or negative budget can't stall the queue
+        int budget = Math.max(1, this.maxBytesPerTick);
+
+        while (budget > 0 && this.queues.isEmpty() == false)
+        {
+            Iterator<ArrayDeque<QueuedPacket>> iter = this.queues.values().iterator();
+
+            while (budget > 0 && iter.hasNext())
+            {
+                ArrayDeque<QueuedPacket> queue = iter.next();
+                QueuedPacket packet = queue.peekFirst();
+
+                if (packet.isCancelled() == false)
+                {
+                    budget -= packet.sendNextFragment();
+                }
+
+                if (packet.isCancelled() || packet.isCompleted())
+                {
+                    queue.removeFirst();
+                    finished.add(packet);
+
+                    if (queue.isEmpty())
+                    {
+                        iter.remove();
+                    }
+                }
+            }
+        }
+
+        for (QueuedPacket packet : finished)
+        {
+            packet.onFinished();
+        }
+    }
+
+    /**
+     * Aborts all the queued packets, for example when disconnecting
+     */
+    public void clear()
+    {
+        List<QueuedPacket> packets = new ArrayList<>();
+
+        for (ArrayDeque<QueuedPacket> queue : this.queues.values())
+        {
+            packets.addAll(queue);
+        }
+
+        this.queues.clear();
+
+        for (QueuedPacket packet : packets)
+        {
+            packet.cancel();
+            packet.onFinished();
+        }
+    }
+
+    public static class QueuedPacket
+    {
+        protected final ResourceLocation channel;
+        protected final PacketBuffer packet;
+        protected final NetHandlerPlayClient networkHandler;
+        @Nullable protected final TaskCompletionListener listener;
+        protected final int totalSize;
+        protected int sentBytes;
+        protected boolean cancelled;
+        protected boolean released;
+
+        protected QueuedPacket(ResourceLocation channel,
+                               PacketBuffer packet,
+                               NetHandlerPlayClient networkHandler,
+                               @Nullable TaskCompletionListener listener)
+        {
+            this.channel = channel;
+            this.packet = packet;
+            this.networkHandler = networkHandler;
+            this.listener = listener;
+            this.totalSize = packet.writerIndex();
+        }
+
+        public ResourceLocation getChannel()
+        {
+            return this.channel;
+        }
+
+        /**
+         * @return the total size of the payload, without the split packet headers
+         */
+        public int getTotalBytes()
+        {
+            return this.totalSize;
+        }
+
+        /**
+         * @return the number of payload bytes sent so far
+         */
+        public int getSentBytes()
+        {
+            return this.sentBytes;
+        }
+
+        /**
+         * @return the sending progress, from 0.0 to 1.0
+         */
+        public double getProgress()
+        {
+            return this.totalSize > 0 ? (double) this.sentBytes / (double) this.totalSize : 1.0;
+        }
+
+        public boolean isCompleted()
+        {
+            return this.sentBytes >= this.totalSize;
+        }
+
+        public boolean isCancelled()
+        {
+            return this.cancelled;
+        }
+
+        /**
+         * Cancels sending the rest of this packet.
+         * Note: The server will not receive the full packet if some of it was already sent.
+         */
+        public void cancel()
+        {
+            this.cancelled = true;
+        }
+
+        /**
+         * Sends the next fragment of the packet
+         * @return the number of payload bytes sent
+         */
+        protected int sendNextFragment()
+        {
+            int offset = this.sentBytes;
+            int payloadLimit = PacketSplitter.MAX_PAYLOAD_PER_PACKET_C2S;
+            PacketBuffer buf = PacketSplitter.createFragment(this.packet, this.totalSize, offset, payloadLimit);
+
+            this.networkHandler.sendPacket(new CPacketCustomPayload(this.channel.toString(), buf));
+            this.sentBytes = Math.min(offset + payloadLimit, this.totalSize);
+
+            return this.sentBytes - offset;
+        }
+
+        protected void onFinished()
+        {
+            if (this.released == false)
+            {
+                this.packet.release();
+                this.released = true;
+            }
+
+            if (this.listener != null)
+            {
+                if (this.cancelled)
+                {
+                    this.listener.onTaskAborted();
+                }
+                else
+                {
+                    this.listener.onTaskCompleted();
+                }
+            }
+        }
+    }
+}
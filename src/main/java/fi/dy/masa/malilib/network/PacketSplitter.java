@@ -1,10 +1,16 @@
 package fi.dy.masa.malilib.network;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import javax.annotation.Nullable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import org.apache.commons.lang3.tuple.Pair;
 import net.minecraft.client.network.NetHandlerPlayClient;
 import net.minecraft.network.INetHandler;
@@ -12,6 +18,8 @@ import net.minecraft.network.PacketBuffer;
 import net.minecraft.network.play.client.CPacketCustomPayload;
 import net.minecraft.network.play.server.SPacketCustomPayload;
 import net.minecraft.util.ResourceLocation;
+import fi.dy.masa.malilib.MaLiLib;
+import fi.dy.masa.malilib.listener.TaskCompletionListener;
 
 /**
  * Network packet splitter code from QuickCarpet by skyrising
@@ -25,8 +33,86 @@ public class PacketSplitter
     public static final int MAX_PAYLOAD_PER_PACKET_C2S = MAX_TOTAL_PER_PACKET_C2S - 5;
     public static final int DEFAULT_MAX_RECEIVE_SIZE_C2S = 1048576;
     public static final int DEFAULT_MAX_RECEIVE_SIZE_S2C = 67108864;
+    public static final long DEFAULT_SESSION_TIMEOUT_MS = 60000L;
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 268435456L;
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES_PER_CHANNEL = DEFAULT_MAX_RECEIVE_SIZE_S2C;
 
     private static final Map<Pair<INetHandler, ResourceLocation>, ReadingSession> READING_SESSIONS = new HashMap<>();
+    private static final Object2LongOpenHashMap<ResourceLocation> IN_FLIGHT_BYTES_PER_CHANNEL = new Object2LongOpenHashMap<>();
+
+    private static long sessionTimeoutMs = DEFAULT_SESSION_TIMEOUT_MS;
+    private static long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+    private static long maxInFlightBytesPerChannel = DEFAULT_MAX_IN_FLIGHT_BYTES_PER_CHANNEL;
+    private static long inFlightBytes;
+    private static long timedOutSessionCount;
+    private static long droppedSessionCount;
+
+    /**
+     * Sets the time after which an incomplete reading session that hasn't
+     * received any new data gets discarded
+     */
+    public static void setSessionTimeout(long timeoutMs)
+    {
+        sessionTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Sets the maximum number of bytes of incomplete split packets held in memory
+     * in total across all channels. Any reading session that would exceed this gets discarded.
+     */
+    public static void setMaxInFlightBytes(long maxBytes)
+    {
+        maxInFlightBytes = maxBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes of incomplete split packets held in memory
+     * on any single channel. Any reading session that would exceed this gets discarded.
+     */
+    public static void setMaxInFlightBytesPerChannel(long maxBytes)
+    {
+        maxInFlightBytesPerChannel = maxBytes;
+    }
+
+    /**
+     * @return the number of currently active (incomplete) reading sessions
+     */
+    public static int getLiveSessionCount()
+    {
+        return READING_SESSIONS.size();
+    }
+
+    /**
+     * @return the total number of bytes currently held by incomplete reading sessions
+     */
+    public static long getInFlightBytes()
+    {
+        return inFlightBytes;
+    }
+
+    /**
+     * @return the number of bytes currently held by incomplete reading sessions on the given channel
+     */
+    public static long getInFlightBytes(ResourceLocation channel)
+    {
+        return IN_FLIGHT_BYTES_PER_CHANNEL.getLong(channel);
+    }
+
+    /**
+     * @return the number of reading sessions that have been discarded due to timing out
+     */
+    public static long getTimedOutSessionCount()
+    {
+        return timedOutSessionCount;
+    }
+
+    /**
+     * @return the number of reading sessions that have been discarded due to exceeding the memory limits
+     */
+    public static long getDroppedSessionCount()
+    {
+        return droppedSessionCount;
+    }
 
     public static void send(ResourceLocation channel,
                             PacketBuffer packet,
@@ -36,6 +122,56 @@ public class PacketSplitter
              buf -> networkHandler.sendPacket(new CPacketCustomPayload(channel.toString(), buf)));
     }
 
+    /**
+     * Sends the packet using the settings of the given handler,
+     * ie. the payload gets compressed first if the handler uses compression.
+     */
+    public static void send(PluginChannelHandler handler,
+                            ResourceLocation channel,
+                            PacketBuffer packet,
+                            NetHandlerPlayClient networkHandler)
+    {
+        if (handler.useCompression())
+        {
+            packet = PacketCompression.compress(packet, handler.getCompressionThreshold());
+        }
+
+        send(channel, packet, networkHandler);
+    }
+
+    /**
+     * Adds the packet to the paced send queue, which sends a limited amount
+     * of data per client tick, instead of sending all of the fragments at once.
+     * @param listener an optional listener to inform when the packet has been fully sent, or was aborted
+     * @return the queue entry, which can be used to follow the progress or to cancel the sending
+     */
+    public static PacketSendQueue.QueuedPacket sendQueued(ResourceLocation channel,
+                                                          PacketBuffer packet,
+                                                          NetHandlerPlayClient networkHandler,
+                                                          @Nullable TaskCompletionListener listener)
+    {
+        return PacketSendQueue.INSTANCE.enqueue(channel, packet, networkHandler, listener);
+    }
+
+    /**
+     * Adds the packet to the paced send queue using the settings of the given handler,
+     * ie. the payload gets compressed first if the handler uses compression.
+     * @see #sendQueued(ResourceLocation, PacketBuffer, NetHandlerPlayClient, TaskCompletionListener)
+     */
+    public static PacketSendQueue.QueuedPacket sendQueued(PluginChannelHandler handler,
+                                                          ResourceLocation channel,
+                                                          PacketBuffer packet,
+                                                          NetHandlerPlayClient networkHandler,
+                                                          @Nullable TaskCompletionListener listener)
+    {
+        if (handler.useCompression())
+        {
+            packet = PacketCompression.compress(packet, handler.getCompressionThreshold());
+        }
+
+        return PacketSendQueue.INSTANCE.enqueue(channel, packet, networkHandler, listener);
+    }
+
     private static void send(PacketBuffer packet,
                              int payloadLimit,
                              Consumer<PacketBuffer> sender)
@@ -46,78 +182,253 @@ public class PacketSplitter
 
         for (int offset = 0; offset < totalSize; offset += payloadLimit)
         {
-            int packetSize = Math.min(totalSize - offset, payloadLimit);
-            PacketBuffer buf = new PacketBuffer(Unpooled.buffer(packetSize));
+            sender.accept(createFragment(packet, totalSize, offset, payloadLimit));
+        }
 
-            buf.resetWriterIndex();
+        packet.release();
+    }
 
-            if (offset == 0)
-            {
-                buf.writeVarInt(totalSize);
-            }
+    /**
+     * Creates the split packet fragment starting from the given offset of the full payload.
+     * The first fragment also contains the total size of the payload.
+     */
+    static PacketBuffer createFragment(PacketBuffer packet, int totalSize, int offset, int payloadLimit)
+    {
+        int packetSize = Math.min(totalSize - offset, payloadLimit);
 
-            buf.writeBytes(packet, packetSize);
+        // Slice the payload instead of copying it to a new buffer for each fragment.
+        // The slices need to be retained, because the packets get written later on the network thread.
+        // Note: The vanilla custom payload packets never release their data, which is also why
+        // the fragments can't use pooled buffers, as the memory would never get returned to the pool.
+        ByteBuf payload = packet.retainedSlice(offset, packetSize);
 
-            sender.accept(buf);
+        if (offset == 0)
+        {
+            PacketBuffer header = new PacketBuffer(Unpooled.buffer(5));
+            header.writeVarInt(totalSize);
+            payload = Unpooled.wrappedBuffer(header, payload);
         }
 
-        packet.release();
+        return new PacketBuffer(payload);
     }
 
     @Nullable
     public static PacketBuffer receive(NetHandlerPlayClient networkHandler,
                                        SPacketCustomPayload message)
     {
-        return receive(networkHandler, message, DEFAULT_MAX_RECEIVE_SIZE_S2C);
+        ResourceLocation channel = new ResourceLocation(message.getChannelName());
+        return receive(networkHandler, channel, PacketUtils.slice(message.getBufferData()), DEFAULT_MAX_RECEIVE_SIZE_S2C);
+    }
+
+    /**
+     * Receives one fragment of a split packet on an already parsed channel.
+     * @return the complete reassembled payload, if this was the last fragment, otherwise null
+     */
+    @Nullable
+    public static PacketBuffer receive(NetHandlerPlayClient networkHandler,
+                                       ResourceLocation channel,
+                                       PacketBuffer data)
+    {
+        return receive(networkHandler, channel, data, DEFAULT_MAX_RECEIVE_SIZE_S2C);
     }
 
     @Nullable
     private static PacketBuffer receive(NetHandlerPlayClient networkHandler,
-                                        SPacketCustomPayload message,
+                                        ResourceLocation channel,
+                                        PacketBuffer data,
                                         int maxLength)
     {
-        Pair<INetHandler, ResourceLocation> key = Pair.of(networkHandler,
-                                                          new ResourceLocation(message.getChannelName()));
+        Pair<INetHandler, ResourceLocation> key = Pair.of(networkHandler, channel);
 
-        return READING_SESSIONS.computeIfAbsent(key, ReadingSession::new)
-                .receive(PacketUtils.slice(message.getBufferData()), maxLength);
+        return READING_SESSIONS.computeIfAbsent(key, ReadingSession::new).receive(data, maxLength);
+    }
+
+    /**
+     * Discards all the incomplete reading sessions that haven't received any data within the session timeout
+     */
+    public static void removeTimedOutSessions()
+    {
+        if (READING_SESSIONS.isEmpty())
+        {
+            return;
+        }
+
+        long timeoutTime = System.nanoTime() - sessionTimeoutMs * 1000000L;
+        Iterator<ReadingSession> iter = READING_SESSIONS.values().iterator();
+
+        while (iter.hasNext())
+        {
+            ReadingSession session = iter.next();
+
+            if (session.lastReceiveTime < timeoutTime)
+            {
+                MaLiLib.debugLog("PacketSplitter: Discarding a timed out reading session on channel '{}' ({} / {} bytes received)",
+                                 session.channel, session.getReceivedBytes(), session.expectedSize);
+                iter.remove();
+                session.discard();
+                ++timedOutSessionCount;
+            }
+        }
+    }
+
+    /**
+     * Discards all the incomplete reading sessions of the given connection
+     */
+    public static void removeSessions(INetHandler networkHandler)
+    {
+        Iterator<ReadingSession> iter = READING_SESSIONS.values().iterator();
+
+        while (iter.hasNext())
+        {
+            ReadingSession session = iter.next();
+
+            if (session.key.getLeft() == networkHandler)
+            {
+                iter.remove();
+                session.discard();
+            }
+        }
+    }
+
+    /**
+     * Discards all the incomplete reading sessions, for example when disconnecting
+     */
+    public static void removeAllSessions()
+    {
+        List<ReadingSession> sessions = new ArrayList<>(READING_SESSIONS.values());
+        READING_SESSIONS.clear();
+        sessions.forEach(ReadingSession::discard);
+    }
+
+    private static void addInFlightBytes(ResourceLocation channel, long amount)
+    {
+        inFlightBytes += amount;
+
+        if (IN_FLIGHT_BYTES_PER_CHANNEL.addTo(channel, amount) + amount <= 0)
+        {
+            IN_FLIGHT_BYTES_PER_CHANNEL.removeLong(channel);
+        }
     }
 
     private static class ReadingSession
     {
         private final Pair<INetHandler, ResourceLocation> key;
+        private final ResourceLocation channel;
         private int expectedSize = -1;
-        private PacketBuffer received;
+        private long lastReceiveTime;
+        private CompositeByteBuf received;
+        private boolean discarding;
+        private long skippedBytes;
 
         private ReadingSession(Pair<INetHandler, ResourceLocation> key)
         {
             this.key = key;
+            this.channel = key.getRight();
+        }
+
+        private int getReceivedBytes()
+        {
+            return this.received != null ? this.received.writerIndex() : 0;
+        }
+
+        /**
+         * Turns this session into a tombstone, which keeps swallowing the remaining fragments
+         * of the dropped packet without storing them. Otherwise the next fragment would start a new
+         * session, and its payload bytes would get read as the size header of a new packet.
+         * @param skippedBytes the number of payload bytes of the packet already received or dropped
+         */
+        private void startDiscarding(long skippedBytes)
+        {
+            this.discard();
+            this.discarding = true;
+            this.skippedBytes = skippedBytes;
+
+            if (this.skippedBytes >= this.expectedSize)
+            {
+                READING_SESSIONS.remove(this.key);
+            }
         }
 
         @Nullable
         private PacketBuffer receive(PacketBuffer data, int maxLength)
         {
+            this.lastReceiveTime = System.nanoTime();
+
+            if (this.discarding)
+            {
+                this.skippedBytes += data.readableBytes();
+
+                if (this.skippedBytes >= this.expectedSize)
+                {
+                    READING_SESSIONS.remove(this.key);
+                }
+
+                return null;
+            }
+
             if (this.expectedSize < 0)
             {
                 this.expectedSize = data.readVarInt();
 
-                if (this.expectedSize > maxLength)
+                if (this.expectedSize < 0 || this.expectedSize > maxLength)
                 {
-                    throw new IllegalArgumentException("Payload too large");
+                    int size = this.expectedSize;
+
+                    // A negative size can't be skipped over, so the session is just removed in that case
+                    if (size < 0)
+                    {
+                        READING_SESSIONS.remove(this.key);
+                    }
+                    else
+                    {
+                        this.startDiscarding(data.readableBytes());
+                    }
+
+                    throw new IllegalArgumentException("Invalid payload size: " + size);
                 }
 
-                this.received = new PacketBuffer(Unpooled.buffer(this.expectedSize));
+                // Use a component limit large enough for all the fragments, so that the composite
+                // buffer never consolidates (ie. copies) the components into one buffer
+                int maxComponents = this.expectedSize / MAX_PAYLOAD_PER_PACKET_C2S + 2;
+                this.received = Unpooled.compositeBuffer(maxComponents);
+            }
+
+            int length = data.readableBytes();
+
+            if (this.expectedSize > this.getReceivedBytes() + length &&
+                (inFlightBytes + length > maxInFlightBytes ||
+                 getInFlightBytes(this.channel) + length > maxInFlightBytesPerChannel))
+            {
+                MaLiLib.LOGGER.warn("PacketSplitter: Discarding a reading session on channel '{}', " +
+                                    "the in-flight data memory limit was exceeded", this.channel);
+                this.startDiscarding((long) this.getReceivedBytes() + length);
+                ++droppedSessionCount;
+                return null;
             }
 
-            this.received.writeBytes(data.readBytes(data.readableBytes()));
+            // Keep a reference to the received fragment instead of copying the data
+            this.received.addComponent(true, data.retainedSlice());
 
             if (this.received.writerIndex() >= this.expectedSize)
             {
                 READING_SESSIONS.remove(this.key);
-                return this.received;
+                addInFlightBytes(this.channel, -(this.received.writerIndex() - length));
+                return new PacketBuffer(this.received);
             }
 
+            addInFlightBytes(this.channel, length);
+
             return null;
         }
+
+        private void discard()
+        {
+            if (this.received != null)
+            {
+                addInFlightBytes(this.channel, -this.received.writerIndex());
+                this.received.release();
+                this.received = null;
+            }
+        }
     }
 }
@@ -20,6 +20,28 @@ public interface PluginChannelHandler
      */
     boolean usePacketSplitter();
 
+    /**
+     * @return true if the payloads on the channels of this handler use the compression stage,
+     * see {@link PacketCompression}. Both ends of the connection must agree on this,
+     * as compressed payloads have an additional flag byte in the beginning.
+     * The received payloads are decompressed before being passed to {@link #onPacketReceived(PacketBuffer)},
+     * and the payloads sent via the {@link PacketSplitter} send method that takes
+     * the handler as an argument are compressed before splitting.
+     */
+    default boolean useCompression()
+    {
+        return false;
+    }
+
+    /**
+     * @return the minimum payload size in bytes for the payload to actually
+     * get compressed when sending, if {@link #useCompression()} returns true
+     */
+    default int getCompressionThreshold()
+    {
+        return PacketCompression.DEFAULT_COMPRESSION_THRESHOLD;
+    }
+
     /**
      * @return a list of message channels this handler can handle
      */
@@ -1,11 +1,14 @@
 package fi.dy.masa.malilib.network.message;
 
+import fi.dy.masa.malilib.network.PacketCompression;
 import fi.dy.masa.malilib.network.PluginChannelHandler;
 
 public abstract class BasePacketHandler implements PluginChannelHandler
 {
     protected boolean registerToServer;
     protected boolean usePacketSplitter;
+    protected boolean useCompression;
+    protected int compressionThreshold = PacketCompression.DEFAULT_COMPRESSION_THRESHOLD;
 
     @Override
     public boolean usePacketSplitter()
@@ -18,4 +21,16 @@ public abstract class BasePacketHandler implements PluginChannelHandler
     {
         return this.registerToServer;
     }
+
+    @Override
+    public boolean useCompression()
+    {
+        return this.useCompression;
+    }
+
+    @Override
+    public int getCompressionThreshold()
+    {
+        return this.compressionThreshold;
+    }
 }
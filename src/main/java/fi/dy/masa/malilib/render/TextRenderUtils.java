@@ -207,6 +207,8 @@ public class TextRenderUtils
             int textStartX = startPos.x + 4;
             int textStartY = startPos.y + 4;
 
+            // The hover text is drawn without the depth test, so any batched text must be drawn first
+            TextRenderer.INSTANCE.flushBatch();
             GlStateManager.disableRescaleNormal();
             RenderUtils.disableItemLighting();
             GlStateManager.disableLighting();
@@ -247,6 +249,8 @@ public class TextRenderUtils
             int textStartX = startPos.x + 4;
             int textStartY = startPos.y + 4;
 
+            // The hover text is drawn without the depth test, so it can't be batched
+            textRenderer.suspendBatch();
             GlStateManager.disableRescaleNormal();
             RenderUtils.disableItemLighting();
             GlStateManager.disableLighting();
@@ -262,6 +266,7 @@ public class TextRenderUtils
             }
 
             textRenderer.renderBuffers();
+            textRenderer.resumeBatch();
             GlStateManager.enableLighting();
             GlStateManager.enableDepth();
             RenderHelper.enableStandardItemLighting();
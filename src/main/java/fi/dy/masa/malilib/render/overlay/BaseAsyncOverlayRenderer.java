@@ -0,0 +1,241 @@
+package fi.dy.masa.malilib.render.overlay;
+
+import javax.annotation.Nullable;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.vertex.VertexFormat;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Vec3d;
+import fi.dy.masa.malilib.MaLiLib;
+
+/**
+ * An overlay renderer that builds its geometry on a worker thread.
+ * The update is split into two parts: {@link #createSnapshot(Vec3d, Entity, Minecraft)}
+ * is called on the render thread, and it should capture all the input data needed
+ * for building the geometry. Then {@link #buildGeometry(Object, Vec3d, BufferBuilder[])}
+ * is called on a worker thread with that snapshot, and it fills this renderer's own private buffers.
+ * The finished buffers get uploaded to the render objects on the render thread on a following frame,
+ * and until then the previous geometry keeps getting drawn.
+ * <br><br>
+ * Only one build runs at a time per renderer. If updates are requested while a build
+ * is running, then only the latest one of them is built after the current build finishes.
+ */
+public abstract class BaseAsyncOverlayRenderer<S> extends BaseOverlayRenderer
+{
+    public static final int DEFAULT_BUFFER_SIZE = 262144;
+
+    @Nullable private BufferBuilder[] idleBuffers;
+    @Nullable private BuildTask<S> runningTask;
+    @Nullable private BuildTask<S> queuedTask;
+    private int generation;
+
+    /**
+     * Captures the input data for building the geometry. This is called on the render thread.
+     * The returned snapshot must not be modified afterwards, and it must not reference
+     * any game state that could change while the geometry is being built.
+     * @param cameraPos The position of the camera when the method is called.
+     *                  The camera position should be subtracted from any world coordinates for the vertex positions.
+     */
+    protected abstract S createSnapshot(Vec3d cameraPos, Entity entity, Minecraft mc);
+
+    /**
+     * Builds the geometry from the snapshot. <b>This is called on a worker thread</b>,
+     * so this must not access the game state or the render objects.
+     * @param snapshot the snapshot created by {@link #createSnapshot(Vec3d, Entity, Minecraft)}
+     * @param cameraPos the camera position passed to {@link #createSnapshot(Vec3d, Entity, Minecraft)}
+     * @param buffers one buffer for each render object of this renderer, in the order
+     *                the render objects were allocated. The buffers have already been started
+     *                using the GL mode and vertex format of their render object.
+     */
+    protected abstract void buildGeometry(S snapshot, Vec3d cameraPos, BufferBuilder[] buffers);
+
+    /**
+     * @return the initial capacity of the private buffers, in bytes.
+     *         The buffers will grow as needed.
+     */
+    protected int getBufferSize()
+    {
+        return DEFAULT_BUFFER_SIZE;
+    }
+
+    /**
+     * @return true if a build is currently running or waiting to run
+     */
+    public boolean isBuildPending()
+    {
+        return this.runningTask != null || this.queuedTask != null;
+    }
+
+    @Override
+    public boolean usesAsyncUpdates()
+    {
+        return true;
+    }
+
+    @Override
+    public final void update(Vec3d cameraPos, Entity entity, Minecraft mc)
+    {
+        S snapshot = this.createSnapshot(cameraPos, entity, mc);
+        final int count = this.renderObjects.size();
+        int[] glModes = new int[count];
+        VertexFormat[] vertexFormats = new VertexFormat[count];
+
+        for (int i = 0; i < count; ++i)
+        {
+            BaseRenderObject obj = this.renderObjects.get(i);
+            glModes[i] = obj.getGlMode();
+            vertexFormats[i] = obj.getVertexFormat();
+        }
+
+        BuildTask<S> task = new BuildTask<>(this, snapshot, cameraPos, glModes, vertexFormats, this.generation);
+
+        if (this.runningTask == null)
+        {
+            this.startTask(task);
+        }
+        else
+        {
+            // Any previously queued task is outdated now
+            this.queuedTask = task;
+        }
+    }
+
+    @Override
+    public void uploadPendingData()
+    {
+        BuildTask<S> task = this.runningTask;
+
+        if (task == null || task.finished == false)
+        {
+            return;
+        }
+
+        this.runningTask = null;
+        BufferBuilder[] buffers = task.buffers;
+
+        if (task.succeeded == false)
+        {
+            // The buffers may have been left in an unknown state, so don't reuse them
+            this.idleBuffers = null;
+        }
+        else if (task.generation == this.generation && buffers.length == this.renderObjects.size())
+        {
+            for (int i = 0; i < buffers.length; ++i)
+            {
+                this.renderObjects.get(i).uploadData(buffers[i]);
+            }
+
+            this.setUpdatePosition(task.cameraPos);
+            this.idleBuffers = buffers;
+        }
+        else
+        {
+            for (BufferBuilder buffer : buffers)
+            {
+                buffer.reset();
+            }
+
+            this.idleBuffers = buffers;
+        }
+
+        if (this.queuedTask != null)
+        {
+            BuildTask<S> queued = this.queuedTask;
+            this.queuedTask = null;
+            this.startTask(queued);
+        }
+    }
+
+    @Override
+    public void allocateGlResources()
+    {
+        super.allocateGlResources();
+        this.setNeedsUpdate();
+    }
+
+    @Override
+    public void deleteGlResources()
+    {
+        // Any running build will be discarded, as it was started for the old render objects
+        ++this.generation;
+        this.queuedTask = null;
+
+        super.deleteGlResources();
+    }
+
+    private void startTask(BuildTask<S> task)
+    {
+        BufferBuilder[] buffers = this.idleBuffers;
+        final int count = task.glModes.length;
+
+        if (buffers == null || buffers.length != count)
+        {
+            buffers = new BufferBuilder[count];
+
+            for (int i = 0; i < count; ++i)
+            {
+                buffers[i] = new BufferBuilder(this.getBufferSize());
+            }
+        }
+
+        this.idleBuffers = null;
+        task.buffers = buffers;
+        this.runningTask = task;
+
+        OverlayBuildExecutor.INSTANCE.execute(task);
+    }
+
+    private static class BuildTask<S> implements Runnable
+    {
+        protected final BaseAsyncOverlayRenderer<S> renderer;
+        protected final S snapshot;
+        protected final Vec3d cameraPos;
+        protected final int[] glModes;
+        protected final VertexFormat[] vertexFormats;
+        protected final int generation;
+        protected BufferBuilder[] buffers;
+        protected boolean succeeded;
+        protected volatile boolean finished;
+
+        protected BuildTask(BaseAsyncOverlayRenderer<S> renderer, S snapshot, Vec3d cameraPos,
+                            int[] glModes, VertexFormat[] vertexFormats, int generation)
+        {
+            this.renderer = renderer;
+            this.snapshot = snapshot;
+            this.cameraPos = cameraPos;
+            this.glModes = glModes;
+            this.vertexFormats = vertexFormats;
+            this.generation = generation;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (int i = 0; i < this.buffers.length; ++i)
+                {
+                    this.buffers[i].begin(this.glModes[i], this.vertexFormats[i]);
+                }
+
+                this.renderer.buildGeometry(this.snapshot, this.cameraPos, this.buffers);
+
+                for (BufferBuilder buffer : this.buffers)
+                {
+                    buffer.finishDrawing();
+                }
+
+                this.succeeded = true;
+            }
+            catch (Exception e)
+            {
+                MaLiLib.LOGGER.warn("Failed to build the geometry for overlay renderer '{}'", this.renderer.getClass().getName(), e);
+            }
+            finally
+            {
+                // The volatile write publishes the buffer contents and the success flag to the render thread
+                this.finished = true;
+            }
+        }
+    }
+}
@@ -104,6 +104,24 @@ public abstract class BaseOverlayRenderer
      */
     public abstract void update(Vec3d cameraPos, Entity entity, Minecraft mc);
 
+    /**
+     * @return true if this renderer builds its geometry asynchronously.
+     *         For such renderers the update position is only changed when
+     *         the new geometry gets uploaded, see {@link BaseAsyncOverlayRenderer}.
+     */
+    public boolean usesAsyncUpdates()
+    {
+        return false;
+    }
+
+    /**
+     * Uploads any geometry that has been built asynchronously since the last call.
+     * This is called on the render thread once per frame before the update check.
+     */
+    public void uploadPendingData()
+    {
+    }
+
     protected void preRender()
     {
         GlStateManager.glLineWidth(this.lineWidth);
@@ -133,12 +151,24 @@ public abstract class BaseOverlayRenderer
 
         for (BaseRenderObject obj : this.renderObjects)
         {
-            obj.draw();
+            if (this.shouldDrawObject(obj))
+            {
+                obj.draw();
+            }
         }
 
         this.postRender();
     }
 
+    /**
+     * Checks the object's bounding box against the view frustum and the max render distance
+     * @return true if the given render object should be drawn this frame
+     */
+    protected boolean shouldDrawObject(BaseRenderObject obj)
+    {
+        return OverlayRendererContainer.INSTANCE.getCuller().isVisible(obj.getBoundingBox());
+    }
+
     /**
      * Allocates the OpenGL resources according to the current Video settings
      */
@@ -175,20 +205,26 @@ public abstract class BaseOverlayRenderer
      */
     protected BaseRenderObject allocateBuffer(int glMode, VertexFormat vertexFormat, EventListener func)
     {
-        BaseRenderObject obj;
+        BaseRenderObject obj = this.createRenderObject(glMode, vertexFormat, func);
+        this.renderObjects.add(obj);
+        return obj;
+    }
 
+    /**
+     * Creates a new VBO or display list according to the current Video settings,
+     * without adding it to the render object list
+     * @param func the function to set up the array pointers according to the used vertex format
+     */
+    protected BaseRenderObject createRenderObject(int glMode, VertexFormat vertexFormat, EventListener func)
+    {
         if (OpenGlHelper.useVbo())
         {
-            obj = new VboRenderObject(glMode, vertexFormat, func);
+            return new VboRenderObject(glMode, vertexFormat, func);
         }
         else
         {
-            obj = new DisplayListRenderObject(glMode, vertexFormat);
+            return new DisplayListRenderObject(glMode, vertexFormat);
         }
-
-        this.renderObjects.add(obj);
-
-        return obj;
     }
 
     public String getSaveId()
@@ -1,14 +1,17 @@
 package fi.dy.masa.malilib.render.overlay;
 
+import javax.annotation.Nullable;
 import net.minecraft.client.renderer.BufferBuilder;
 import net.minecraft.client.renderer.vertex.VertexFormat;
 import net.minecraft.client.renderer.vertex.VertexFormatElement;
+import fi.dy.masa.malilib.util.position.IntBoundingBox;
 
 public abstract class BaseRenderObject
 {
     protected final VertexFormat vertexFormat;
     protected final boolean hasTexture;
     protected final int glMode;
+    @Nullable protected IntBoundingBox boundingBox;
 
     public BaseRenderObject(int glMode, VertexFormat vertexFormat)
     {
@@ -34,6 +37,26 @@ public abstract class BaseRenderObject
         return this.vertexFormat;
     }
 
+    /**
+     * @return the world coordinate bounding box of the geometry in this object,
+     *         or null if the object should not be culled
+     */
+    @Nullable
+    public IntBoundingBox getBoundingBox()
+    {
+        return this.boundingBox;
+    }
+
+    /**
+     * Sets the world coordinate bounding box of the geometry in this object,
+     * which is used for the frustum and distance culling.
+     * A null box means that the object will always be drawn.
+     */
+    public void setBoundingBox(@Nullable IntBoundingBox boundingBox)
+    {
+        this.boundingBox = boundingBox;
+    }
+
     /**
      * Uploads the given BufferBuilder to the VBO or Render List
      * @param buffer the BufferBuilder to upload
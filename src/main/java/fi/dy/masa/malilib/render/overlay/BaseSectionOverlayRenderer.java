@@ -0,0 +1,354 @@
+package fi.dy.masa.malilib.render.overlay;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+import org.lwjgl.opengl.GL11;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Vec3d;
+import fi.dy.masa.malilib.listener.LayerRangeChangeListener;
+import fi.dy.masa.malilib.util.game.wrap.EntityWrap;
+import fi.dy.masa.malilib.util.position.IntBoundingBox;
+import fi.dy.masa.malilib.util.position.SubChunkPos;
+
+/**
+ * An overlay renderer that partitions its geometry into 16x16x16 block sections,
+ * each with their own render objects. Only the sections that have been marked dirty
+ * get rebuilt, nearest to the camera first, and at most
+ * {@link #getMaxSectionRebuildsPerUpdate()} sections per update.
+ * <br><br>
+ * The geometry of each section is built relative to the minimum corner of the section,
+ * so the sections don't need to be rebuilt when the camera moves.
+ * <br><br>
+ * The renderer implements {@link LayerRangeChangeListener}, so it can be registered
+ * as a listener to a layer range to only rebuild the sections affected by a range change.
+ */
+public abstract class BaseSectionOverlayRenderer extends BaseOverlayRenderer implements LayerRangeChangeListener
+{
+    public static final int DEFAULT_MAX_SECTION_REBUILDS_PER_UPDATE = 16;
+
+    protected final Map<SubChunkPos, Section> sections = new HashMap<>();
+    protected final Set<SubChunkPos> dirtySections = new HashSet<>();
+    @Nullable protected BufferBuilder[] sectionBuffers;
+    protected boolean resourcesAllocated;
+
+    /**
+     * Builds the geometry for one section.
+     * @param pos the position of the section
+     * @param originX the X coordinate of the minimum corner of the section.
+     *                This should be subtracted from the world coordinates for the vertex positions.
+     * @param originY the Y coordinate of the minimum corner of the section
+     * @param originZ the Z coordinate of the minimum corner of the section
+     * @param buffers the started buffers for the section's render objects,
+     *                by default one for GL_QUADS and one for GL_LINES
+     */
+    protected abstract void buildSection(SubChunkPos pos, int originX, int originY, int originZ, BufferBuilder[] buffers);
+
+    /**
+     * @return the maximum number of sections to rebuild per update call.
+     *         Any remaining dirty sections will be rebuilt on the following updates.
+     */
+    protected int getMaxSectionRebuildsPerUpdate()
+    {
+        return DEFAULT_MAX_SECTION_REBUILDS_PER_UPDATE;
+    }
+
+    /**
+     * Allocates the render objects for one section
+     */
+    protected void allocateSectionObjects(List<BaseRenderObject> list)
+    {
+        list.add(this.createRenderObject(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR, VboRenderObject::setupArrayPointersPosColor));
+        list.add(this.createRenderObject(GL11.GL_LINES, DefaultVertexFormats.POSITION_COLOR, VboRenderObject::setupArrayPointersPosColor));
+    }
+
+    /**
+     * @return the number of sections waiting to be rebuilt
+     */
+    public int getDirtySectionCount()
+    {
+        return this.dirtySections.size();
+    }
+
+    public int getSectionCount()
+    {
+        return this.sections.size();
+    }
+
+    /**
+     * Marks the given section to be rebuilt, adding the section if it doesn't exist yet
+     */
+    public void markSectionDirty(SubChunkPos pos)
+    {
+        this.sections.computeIfAbsent(pos, Section::new);
+        this.dirtySections.add(pos);
+    }
+
+    public void markSectionsDirty(Collection<SubChunkPos> positions)
+    {
+        for (SubChunkPos pos : positions)
+        {
+            this.markSectionDirty(pos);
+        }
+    }
+
+    public void markAllSectionsDirty()
+    {
+        this.dirtySections.addAll(this.sections.keySet());
+    }
+
+    /**
+     * Removes the given section and frees its render objects
+     */
+    public void removeSection(SubChunkPos pos)
+    {
+        Section section = this.sections.remove(pos);
+        this.dirtySections.remove(pos);
+
+        if (section != null)
+        {
+            section.deleteGlResources();
+        }
+    }
+
+    public void removeAllSections()
+    {
+        for (Section section : this.sections.values())
+        {
+            section.deleteGlResources();
+        }
+
+        this.sections.clear();
+        this.dirtySections.clear();
+    }
+
+    @Override
+    public void updateAll()
+    {
+        this.markAllSectionsDirty();
+    }
+
+    @Override
+    public void updateBetweenX(int minX, int maxX)
+    {
+        this.markSectionsDirtyBetween(minX >> 4, maxX >> 4, (pos) -> pos.getX());
+    }
+
+    @Override
+    public void updateBetweenY(int minY, int maxY)
+    {
+        this.markSectionsDirtyBetween(minY >> 4, maxY >> 4, (pos) -> pos.getY());
+    }
+
+    @Override
+    public void updateBetweenZ(int minZ, int maxZ)
+    {
+        this.markSectionsDirtyBetween(minZ >> 4, maxZ >> 4, (pos) -> pos.getZ());
+    }
+
+    protected void markSectionsDirtyBetween(int minSection, int maxSection, ToIntFunction<SubChunkPos> coordGetter)
+    {
+        int min = Math.min(minSection, maxSection);
+        int max = Math.max(minSection, maxSection);
+
+        for (SubChunkPos pos : this.sections.keySet())
+        {
+            int coord = coordGetter.applyAsInt(pos);
+
+            if (coord >= min && coord <= max)
+            {
+                this.dirtySections.add(pos);
+            }
+        }
+    }
+
+    @Override
+    public boolean needsUpdate(Entity entity, Minecraft mc)
+    {
+        return this.needsUpdate || this.dirtySections.isEmpty() == false;
+    }
+
+    @Override
+    public void update(Vec3d cameraPos, Entity entity, Minecraft mc)
+    {
+        this.needsUpdate = false;
+
+        if (this.resourcesAllocated == false || this.dirtySections.isEmpty())
+        {
+            return;
+        }
+
+        List<SubChunkPos> positions = new ArrayList<>(this.dirtySections);
+        int count = Math.min(positions.size(), this.getMaxSectionRebuildsPerUpdate());
+
+        if (count < positions.size())
+        {
+            SubChunkPos center = new SubChunkPos(EntityWrap.getEntityBlockPos(entity));
+            positions.sort(new SubChunkPos.DistanceComparator(center));
+        }
+
+        for (int i = 0; i < count; ++i)
+        {
+            SubChunkPos pos = positions.get(i);
+            Section section = this.sections.get(pos);
+
+            if (section != null)
+            {
+                this.rebuildSection(section);
+            }
+
+            this.dirtySections.remove(pos);
+        }
+    }
+
+    protected void rebuildSection(Section section)
+    {
+        if (section.renderObjects.isEmpty())
+        {
+            this.allocateSectionObjects(section.renderObjects);
+
+            for (BaseRenderObject obj : section.renderObjects)
+            {
+                obj.setBoundingBox(section.box);
+            }
+        }
+
+        List<BaseRenderObject> objects = section.renderObjects;
+        final int count = objects.size();
+        BufferBuilder[] buffers = this.getSectionBuffers(count);
+
+        for (int i = 0; i < count; ++i)
+        {
+            BaseRenderObject obj = objects.get(i);
+            buffers[i].begin(obj.getGlMode(), obj.getVertexFormat());
+        }
+
+        SubChunkPos pos = section.pos;
+        this.buildSection(pos, section.originX, section.originY, section.originZ, buffers);
+
+        section.hasData = false;
+
+        for (int i = 0; i < count; ++i)
+        {
+            BufferBuilder buffer = buffers[i];
+            buffer.finishDrawing();
+            section.hasData |= buffer.getVertexCount() > 0;
+            objects.get(i).uploadData(buffer);
+        }
+    }
+
+    protected BufferBuilder[] getSectionBuffers(int count)
+    {
+        BufferBuilder[] buffers = this.sectionBuffers;
+
+        if (buffers == null || buffers.length != count)
+        {
+            buffers = new BufferBuilder[count];
+
+            for (int i = 0; i < count; ++i)
+            {
+                buffers[i] = new BufferBuilder(65536);
+            }
+
+            this.sectionBuffers = buffers;
+        }
+
+        return buffers;
+    }
+
+    @Override
+    public void draw()
+    {
+        this.preRender();
+
+        // The container has translated the matrix by the update position minus the camera position,
+        // and the section geometry is relative to the section origin.
+        Vec3d updatePos = this.getUpdatePosition();
+
+        for (Section section : this.sections.values())
+        {
+            if (section.hasData && OverlayRendererContainer.INSTANCE.getCuller().isVisible(section.box))
+            {
+                GlStateManager.pushMatrix();
+                GlStateManager.translate(section.originX - updatePos.x, section.originY - updatePos.y, section.originZ - updatePos.z);
+
+                for (BaseRenderObject obj : section.renderObjects)
+                {
+                    obj.draw();
+                }
+
+                GlStateManager.popMatrix();
+            }
+        }
+
+        this.postRender();
+    }
+
+    @Override
+    public void allocateGlResources()
+    {
+        // The section render objects are allocated when the sections get built
+        this.resourcesAllocated = true;
+        this.markAllSectionsDirty();
+    }
+
+    @Override
+    public void deleteGlResources()
+    {
+        for (Section section : this.sections.values())
+        {
+            section.deleteGlResources();
+        }
+
+        this.resourcesAllocated = false;
+
+        super.deleteGlResources();
+    }
+
+    public static class Section
+    {
+        public final SubChunkPos pos;
+        public final int originX;
+        public final int originY;
+        public final int originZ;
+        public final IntBoundingBox box;
+        protected final List<BaseRenderObject> renderObjects = new ArrayList<>(2);
+        protected boolean hasData;
+
+        public Section(SubChunkPos pos)
+        {
+            this.pos = pos;
+            this.originX = pos.getX() << 4;
+            this.originY = pos.getY() << 4;
+            this.originZ = pos.getZ() << 4;
+            this.box = new IntBoundingBox(this.originX, this.originY, this.originZ,
+                                          this.originX + 15, this.originY + 15, this.originZ + 15);
+        }
+
+        public boolean hasData()
+        {
+            return this.hasData;
+        }
+
+        protected void deleteGlResources()
+        {
+            for (BaseRenderObject obj : this.renderObjects)
+            {
+                obj.deleteGlResources();
+            }
+
+            this.renderObjects.clear();
+            this.hasData = false;
+        }
+    }
+}
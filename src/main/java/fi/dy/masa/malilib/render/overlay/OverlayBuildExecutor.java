@@ -0,0 +1,31 @@
+package fi.dy.masa.malilib.render.overlay;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The worker pool used by the {@link BaseAsyncOverlayRenderer}s to build their geometry
+ */
+public class OverlayBuildExecutor
+{
+    public static final OverlayBuildExecutor INSTANCE = new OverlayBuildExecutor(Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1)));
+
+    protected final ExecutorService executor;
+
+    public OverlayBuildExecutor(int threadCount)
+    {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60L, TimeUnit.SECONDS,
+                                                             new LinkedBlockingQueue<>(),
+                                                             new ThreadFactoryBuilder().setNameFormat("malilib overlay builder #%d").setDaemon(true).setPriority(Thread.NORM_PRIORITY - 1).build());
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    public void execute(Runnable task)
+    {
+        this.executor.execute(task);
+    }
+}
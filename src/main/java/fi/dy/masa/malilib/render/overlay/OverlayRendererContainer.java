@@ -2,7 +2,10 @@ package fi.dy.masa.malilib.render.overlay;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -12,7 +15,9 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.OpenGlHelper;
 import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Vec3d;
+import fi.dy.masa.malilib.MaLiLibConfigs;
 import fi.dy.masa.malilib.util.BackupUtils;
 import fi.dy.masa.malilib.util.data.json.JsonUtils;
 import fi.dy.masa.malilib.util.game.wrap.EntityWrap;
@@ -24,6 +29,8 @@ public class OverlayRendererContainer
 
     protected final List<BaseOverlayRenderer> renderers = new ArrayList<>();
     protected final List<BaseOverlayRenderer> enabledRenderers = new ArrayList<>();
+    protected final RenderObjectCuller culler = new RenderObjectCuller();
+    protected final Map<BaseOverlayRenderer, Long> pendingUpdates = new HashMap<>();
     protected boolean resourcesAllocated;
     protected boolean useVbo;
     protected int countActive;
@@ -31,6 +38,7 @@ public class OverlayRendererContainer
     private boolean canRender;
     private boolean enabledRenderersNeedUpdate;
     private long loginTime;
+    private long frameCounter;
 
     public void addRenderer(BaseOverlayRenderer renderer)
     {
@@ -46,6 +54,7 @@ public class OverlayRendererContainer
     public void removeRenderer(BaseOverlayRenderer renderer)
     {
         this.renderers.remove(renderer);
+        this.pendingUpdates.remove(renderer);
         this.setEnabledRenderersNeedUpdate();
 
         if (this.resourcesAllocated)
@@ -59,6 +68,15 @@ public class OverlayRendererContainer
         this.enabledRenderersNeedUpdate = true;
     }
 
+    /**
+     * @return the culler used for the render objects during the current frame.
+     *         It also has the drawn and culled object counts of the previous frame.
+     */
+    public RenderObjectCuller getCuller()
+    {
+        return this.culler;
+    }
+
     protected Vec3d getCameraPos(Entity cameraEntity, float partialTicks)
     {
         double x = EntityWrap.lerpX(cameraEntity, partialTicks);
@@ -86,6 +104,8 @@ public class OverlayRendererContainer
             }
         }
 
+        this.pendingUpdates.keySet().retainAll(this.enabledRenderers);
+
         this.enabledRenderersNeedUpdate = false;
     }
 
@@ -136,6 +156,7 @@ public class OverlayRendererContainer
 
         this.checkVideoSettings();
         this.countActive = 0;
+        ++this.frameCounter;
 
         Minecraft mc = GameUtils.getClient();
 
@@ -143,13 +164,14 @@ public class OverlayRendererContainer
         {
             GameUtils.profilerPush(() -> renderer.getClass().getName());
 
+            renderer.uploadPendingData();
+
             if (renderer.shouldRender(mc))
             {
-                if (renderer.needsUpdate(entity, mc))
+                // Once a renderer has requested an update, it stays queued until it gets updated
+                if (this.pendingUpdates.containsKey(renderer) == false && renderer.needsUpdate(entity, mc))
                 {
-                    renderer.setLastUpdatePos(EntityWrap.getEntityBlockPos(entity));
-                    renderer.setUpdatePosition(cameraPos);
-                    renderer.update(cameraPos, entity, mc);
+                    this.pendingUpdates.put(renderer, this.frameCounter);
                 }
 
                 ++this.countActive;
@@ -157,12 +179,91 @@ public class OverlayRendererContainer
 
             GameUtils.profilerPop();
         }
+
+        if (this.pendingUpdates.isEmpty() == false)
+        {
+            this.runScheduledUpdates(cameraPos, entity, mc);
+        }
+    }
+
+    /**
+     * Runs the queued renderer updates in priority order, until the frame's update time budget
+     * runs out. At least one update is always run per frame. The remaining updates are carried over
+     * to the following frames, so they will have a higher priority then.
+     */
+    protected void runScheduledUpdates(Vec3d cameraPos, Entity entity, Minecraft mc)
+    {
+        List<BaseOverlayRenderer> queue = new ArrayList<>();
+
+        for (BaseOverlayRenderer renderer : this.pendingUpdates.keySet())
+        {
+            if (renderer.shouldRender(mc))
+            {
+                queue.add(renderer);
+            }
+        }
+
+        if (queue.size() > 1)
+        {
+            queue.sort(this.getUpdatePriorityComparator(cameraPos));
+        }
+
+        long budgetNanos = MaLiLibConfigs.Generic.OVERLAY_UPDATE_BUDGET.getIntegerValue() * 1000000L;
+        long startTime = System.nanoTime();
+        BlockPos entityPos = EntityWrap.getEntityBlockPos(entity);
+
+        for (BaseOverlayRenderer renderer : queue)
+        {
+            GameUtils.profilerPush(() -> renderer.getClass().getName());
+
+            renderer.setLastUpdatePos(entityPos);
+
+            // Async renderers set the update position once the new geometry gets uploaded
+            if (renderer.usesAsyncUpdates() == false)
+            {
+                renderer.setUpdatePosition(cameraPos);
+            }
+
+            renderer.update(cameraPos, entity, mc);
+            this.pendingUpdates.remove(renderer);
+
+            GameUtils.profilerPop();
+
+            if (System.nanoTime() - startTime >= budgetNanos)
+            {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Orders the queued renderers so that the ones that have been waiting the longest come first,
+     * and within the same wait time the ones that the camera has moved the furthest away from
+     * since their last update (ie. the ones with the most outdated geometry) come first.
+     */
+    protected Comparator<BaseOverlayRenderer> getUpdatePriorityComparator(Vec3d cameraPos)
+    {
+        Comparator<BaseOverlayRenderer> byRequestFrame = Comparator.comparingLong(this.pendingUpdates::get);
+        Comparator<BaseOverlayRenderer> byDistance = Comparator.comparingDouble((r) -> -r.getUpdatePosition().squareDistanceTo(cameraPos));
+        return byRequestFrame.thenComparing(byDistance);
+    }
+
+    /**
+     * @return the number of renderer updates that have been carried over to the next frame
+     */
+    public int getPendingUpdateCount()
+    {
+        return this.pendingUpdates.size();
     }
 
     protected void draw(Vec3d cameraPos)
     {
         if (this.resourcesAllocated && this.countActive > 0)
         {
+            this.culler.setupFrame(MaLiLibConfigs.Generic.OVERLAY_CULLING.getBooleanValue(),
+                                   cameraPos.x, cameraPos.y, cameraPos.z,
+                                   MaLiLibConfigs.Generic.OVERLAY_MAX_RENDER_DISTANCE.getIntegerValue());
+
             GlStateManager.pushMatrix();
 
             GlStateManager.disableTexture2D();
@@ -0,0 +1,232 @@
+package fi.dy.masa.malilib.render.overlay;
+
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
+import org.lwjgl.opengl.ARBVertexBufferObject;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GLContext;
+import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GlStateManager;
+import net.minecraft.client.renderer.OpenGlHelper;
+import net.minecraft.client.renderer.vertex.VertexFormat;
+import fi.dy.masa.malilib.listener.EventListener;
+
+/**
+ * A VBO render object that holds multiple separately updatable pieces of geometry.
+ * The vertex data is kept in a {@link VertexArena}, and only the changed byte ranges
+ * get uploaded with glBufferSubData() before the next draw, instead of re-uploading
+ * the entire buffer like {@link VboRenderObject} does.
+ * <br><br>
+ * The pieces of geometry are added with {@link #addGeometry(BufferBuilder)},
+ * which returns an ID that can be used to replace or remove that piece later.
+ * This requires VBOs to be enabled, as the display lists can't be partially updated.
+ */
+public class PartialVboRenderObject extends BaseRenderObject
+{
+    public static final int DEFAULT_INITIAL_CAPACITY = 262144;
+
+    @Nullable private static Boolean useArbVbo;
+
+    protected final VertexArena arena;
+    protected final EventListener arrayPointerSetter;
+    protected int glBufferId;
+    protected int glBufferCapacity;
+    protected long uploadedBytes;
+
+    public PartialVboRenderObject(int glMode, VertexFormat vertexFormat, EventListener arrayPointerSetter)
+    {
+        this(glMode, vertexFormat, arrayPointerSetter, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public PartialVboRenderObject(int glMode, VertexFormat vertexFormat, EventListener arrayPointerSetter, int initialCapacity)
+    {
+        super(glMode, vertexFormat);
+
+        this.arena = new VertexArena(vertexFormat.getSize(), initialCapacity);
+        this.arrayPointerSetter = arrayPointerSetter;
+        this.glBufferId = OpenGlHelper.glGenBuffers();
+    }
+
+    public VertexArena getArena()
+    {
+        return this.arena;
+    }
+
+    /**
+     * @return the total number of bytes uploaded to the GL buffer so far
+     */
+    public long getUploadedBytes()
+    {
+        return this.uploadedBytes;
+    }
+
+    /**
+     * Adds the vertex data from the given finished BufferBuilder as a new piece of geometry.
+     * The BufferBuilder is reset afterwards.
+     * @return the ID of the added geometry
+     */
+    public int addGeometry(BufferBuilder buffer)
+    {
+        int id = this.arena.add(getVertexData(buffer));
+        buffer.reset();
+        return id;
+    }
+
+    /**
+     * Replaces the given piece of geometry with the vertex data from the given finished BufferBuilder.
+     * The BufferBuilder is reset afterwards.
+     * @return the new ID of the geometry, which may be different from the old ID
+     */
+    public int replaceGeometry(int id, BufferBuilder buffer)
+    {
+        int newId = this.arena.replace(id, getVertexData(buffer));
+
+        if (newId == -1)
+        {
+            newId = this.arena.add(getVertexData(buffer));
+        }
+
+        buffer.reset();
+
+        return newId;
+    }
+
+    public void removeGeometry(int id)
+    {
+        this.arena.remove(id);
+    }
+
+    /**
+     * Replaces all the existing geometry with the contents of the given buffer
+     */
+    @Override
+    public void uploadData(BufferBuilder buffer)
+    {
+        this.arena.clear();
+        this.addGeometry(buffer);
+    }
+
+    /**
+     * Uploads the changed parts of the vertex data to the GL buffer
+     */
+    protected void uploadChanges()
+    {
+        VertexArena arena = this.arena;
+
+        if (arena.isDirty() == false)
+        {
+            return;
+        }
+
+        ByteBuffer data = arena.getBuffer();
+        OpenGlHelper.glBindBuffer(OpenGlHelper.GL_ARRAY_BUFFER, this.glBufferId);
+
+        if (arena.hasCapacityChanged() || this.glBufferCapacity != data.capacity())
+        {
+            ByteBuffer buf = data.duplicate();
+            buf.clear();
+            OpenGlHelper.glBufferData(OpenGlHelper.GL_ARRAY_BUFFER, buf, GL15.GL_DYNAMIC_DRAW);
+            this.glBufferCapacity = buf.capacity();
+            this.uploadedBytes += buf.capacity();
+        }
+        else
+        {
+            for (int[] range : arena.getDirtyRanges())
+            {
+                int offset = range[0];
+                int length = Math.min(range[1], this.glBufferCapacity - offset);
+
+                if (length > 0)
+                {
+                    ByteBuffer buf = data.duplicate();
+                    buf.clear();
+                    buf.position(offset);
+                    buf.limit(offset + length);
+                    bufferSubData(OpenGlHelper.GL_ARRAY_BUFFER, offset, buf);
+                    this.uploadedBytes += length;
+                }
+            }
+        }
+
+        arena.clearDirty();
+    }
+
+    /**
+     * OpenGlHelper doesn't have a glBufferSubData() wrapper, so this does the same
+     * ARB extension vs. GL 1.5 switch that OpenGlHelper uses for its other VBO methods.
+     */
+    protected static void bufferSubData(int target, long offset, ByteBuffer data)
+    {
+        if (useArbVbo == null)
+        {
+            // Same check as in OpenGlHelper.initializeTextures()
+            ContextCapabilities caps = GLContext.getCapabilities();
+            useArbVbo = caps.OpenGL15 == false && caps.GL_ARB_vertex_buffer_object;
+        }
+
+        if (useArbVbo)
+        {
+            ARBVertexBufferObject.glBufferSubDataARB(target, offset, data);
+        }
+        else
+        {
+            GL15.glBufferSubData(target, offset, data);
+        }
+    }
+
+    @Override
+    public void draw()
+    {
+        this.uploadChanges();
+
+        int vertexCount = this.arena.getVertexCount();
+
+        if (vertexCount <= 0)
+        {
+            return;
+        }
+
+        if (this.hasTexture)
+        {
+            GlStateManager.enableTexture2D();
+
+            OpenGlHelper.setClientActiveTexture(OpenGlHelper.defaultTexUnit);
+            GlStateManager.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        }
+        else
+        {
+            GlStateManager.disableTexture2D();
+        }
+
+        OpenGlHelper.glBindBuffer(OpenGlHelper.GL_ARRAY_BUFFER, this.glBufferId);
+        this.arrayPointerSetter.onEvent();
+        GlStateManager.glDrawArrays(this.getGlMode(), 0, vertexCount);
+
+        if (this.hasTexture)
+        {
+            OpenGlHelper.setClientActiveTexture(OpenGlHelper.defaultTexUnit);
+            GlStateManager.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        }
+    }
+
+    @Override
+    public void deleteGlResources()
+    {
+        if (this.glBufferId >= 0)
+        {
+            OpenGlHelper.glDeleteBuffers(this.glBufferId);
+            this.glBufferId = -1;
+            this.glBufferCapacity = 0;
+        }
+    }
+
+    protected static ByteBuffer getVertexData(BufferBuilder buffer)
+    {
+        ByteBuffer data = buffer.getByteBuffer().duplicate();
+        data.position(0);
+        data.limit(buffer.getVertexCount() * buffer.getVertexFormat().getSize());
+        return data;
+    }
+}
@@ -0,0 +1,110 @@
+package fi.dy.masa.malilib.render.overlay;
+
+import javax.annotation.Nullable;
+import net.minecraft.client.renderer.culling.Frustum;
+import fi.dy.masa.malilib.util.position.IntBoundingBox;
+
+/**
+ * Checks the bounding boxes of render objects against the camera frustum
+ * and a maximum distance, and keeps count of the drawn and culled objects.
+ * The frustum and the camera position are updated once per frame by the
+ * {@link OverlayRendererContainer} before drawing the overlays.
+ */
+public class RenderObjectCuller
+{
+    @Nullable protected Frustum frustum;
+    protected boolean enabled;
+    protected double cameraX;
+    protected double cameraY;
+    protected double cameraZ;
+    protected double maxDistanceSq;
+    protected int drawnCount;
+    protected int culledCount;
+    protected int lastDrawnCount;
+    protected int lastCulledCount;
+
+    /**
+     * Sets up the culler for a new frame. This must be called
+     * while the world camera matrices are set up, as the frustum is extracted from them.
+     * @param maxDistance the maximum distance in blocks, or 0 for no limit
+     */
+    public void setupFrame(boolean enabled, double cameraX, double cameraY, double cameraZ, int maxDistance)
+    {
+        this.lastDrawnCount = this.drawnCount;
+        this.lastCulledCount = this.culledCount;
+        this.drawnCount = 0;
+        this.culledCount = 0;
+        this.enabled = enabled;
+
+        if (enabled)
+        {
+            this.cameraX = cameraX;
+            this.cameraY = cameraY;
+            this.cameraZ = cameraZ;
+            this.maxDistanceSq = maxDistance > 0 ? (double) maxDistance * (double) maxDistance : -1;
+
+            // The Frustum constructor extracts the clipping planes from the current GL matrices
+            this.frustum = new Frustum();
+            this.frustum.setPosition(cameraX, cameraY, cameraZ);
+        }
+        else
+        {
+            this.frustum = null;
+        }
+    }
+
+    /**
+     * Checks if the given bounding box is visible, and updates the drawn/culled counters.
+     * @param box the box in world coordinates, or null if the object should always be drawn
+     * @return true if the object with the given bounding box should be drawn
+     */
+    public boolean isVisible(@Nullable IntBoundingBox box)
+    {
+        if (this.enabled == false || box == null || this.frustum == null)
+        {
+            ++this.drawnCount;
+            return true;
+        }
+
+        if (this.isWithinDistance(box) &&
+            this.frustum.isBoxInFrustum(box.minX, box.minY, box.minZ, box.maxX + 1, box.maxY + 1, box.maxZ + 1))
+        {
+            ++this.drawnCount;
+            return true;
+        }
+
+        ++this.culledCount;
+        return false;
+    }
+
+    protected boolean isWithinDistance(IntBoundingBox box)
+    {
+        if (this.maxDistanceSq < 0)
+        {
+            return true;
+        }
+
+        // Distance from the camera to the closest point of the box
+        double dx = Math.max(0, Math.max(box.minX - this.cameraX, this.cameraX - (box.maxX + 1)));
+        double dy = Math.max(0, Math.max(box.minY - this.cameraY, this.cameraY - (box.maxY + 1)));
+        double dz = Math.max(0, Math.max(box.minZ - this.cameraZ, this.cameraZ - (box.maxZ + 1)));
+
+        return dx * dx + dy * dy + dz * dz <= this.maxDistanceSq;
+    }
+
+    /**
+     * @return the number of objects drawn during the previous frame
+     */
+    public int getDrawnCount()
+    {
+        return this.lastDrawnCount;
+    }
+
+    /**
+     * @return the number of objects culled during the previous frame
+     */
+    public int getCulledCount()
+    {
+        return this.lastCulledCount;
+    }
+}
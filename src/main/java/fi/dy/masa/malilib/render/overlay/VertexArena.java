@@ -0,0 +1,362 @@
+package fi.dy.masa.malilib.render.overlay;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A CPU-side copy of the vertex data of a vertex buffer, split into separately
+ * allocated regions. Regions can be added, replaced and removed, and the arena keeps track
+ * of the free byte ranges for reuse, and of the dirty byte ranges that need to be uploaded.
+ * Freed ranges are zeroed, so that any vertices left in them are degenerate and invisible.
+ * <br><br>
+ * This class does not use OpenGL at all, see {@link PartialVboRenderObject} for the GL side.
+ * All the offsets and sizes are in bytes, and are multiples of the vertex size.
+ */
+public class VertexArena
+{
+    protected final Map<Integer, Region> regions = new HashMap<>();
+    protected final TreeMap<Integer, Integer> freeRanges = new TreeMap<>();
+    protected final TreeMap<Integer, Integer> dirtyRanges = new TreeMap<>();
+    protected final int vertexSize;
+    protected ByteBuffer buffer;
+    protected boolean capacityChanged;
+    protected int usedEnd;
+    protected int nextId = 1;
+
+    public VertexArena(int vertexSize, int initialCapacity)
+    {
+        this.vertexSize = vertexSize;
+        this.buffer = createBuffer(Math.max(initialCapacity - (initialCapacity % vertexSize), vertexSize));
+    }
+
+    public int getVertexSize()
+    {
+        return this.vertexSize;
+    }
+
+    public int getCapacity()
+    {
+        return this.buffer.capacity();
+    }
+
+    /**
+     * @return the end offset of the last allocated region, ie. the number of bytes that need to be drawn
+     */
+    public int getUsedEnd()
+    {
+        return this.usedEnd;
+    }
+
+    public int getVertexCount()
+    {
+        return this.usedEnd / this.vertexSize;
+    }
+
+    public int getRegionCount()
+    {
+        return this.regions.size();
+    }
+
+    /**
+     * @return the total size of the free ranges below the used end offset
+     */
+    public int getFreeBytes()
+    {
+        int total = 0;
+
+        for (int size : this.freeRanges.values())
+        {
+            total += size;
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the backing buffer. Note: this is the actual buffer and not a copy,
+     *         and it will be replaced with a new buffer if the arena needs to grow.
+     */
+    public ByteBuffer getBuffer()
+    {
+        return this.buffer;
+    }
+
+    /**
+     * @return true if the arena has grown since the last call to {@link #clearDirty()},
+     *         in which case the entire buffer needs to be uploaded again
+     */
+    public boolean hasCapacityChanged()
+    {
+        return this.capacityChanged;
+    }
+
+    public boolean isDirty()
+    {
+        return this.capacityChanged || this.dirtyRanges.isEmpty() == false;
+    }
+
+    /**
+     * @return the merged dirty byte ranges as {offset, length} pairs, in ascending offset order
+     */
+    public List<int[]> getDirtyRanges()
+    {
+        List<int[]> list = new ArrayList<>(this.dirtyRanges.size());
+
+        for (Map.Entry<Integer, Integer> entry : this.dirtyRanges.entrySet())
+        {
+            list.add(new int[] { entry.getKey(), entry.getValue() });
+        }
+
+        return list;
+    }
+
+    public void clearDirty()
+    {
+        this.dirtyRanges.clear();
+        this.capacityChanged = false;
+    }
+
+    /**
+     * Adds a new region with a copy of the given vertex data.
+     * The data is read from the buffer's position to its limit, without changing the position.
+     * @return the ID of the new region
+     */
+    public int add(ByteBuffer data)
+    {
+        int size = this.getAlignedSize(data.remaining());
+        int offset = this.allocate(size);
+        int id = this.nextId++;
+
+        this.regions.put(id, new Region(offset, size));
+        this.write(offset, data, size);
+
+        return id;
+    }
+
+    /**
+     * Replaces the vertex data of the given region.
+     * If the new data has the same size, it is written in place.
+     * @return the ID of the region, which changes if the region had to be moved,
+     *         or -1 if there was no region with the given ID
+     */
+    public int replace(int id, ByteBuffer data)
+    {
+        Region region = this.regions.get(id);
+
+        if (region == null)
+        {
+            return -1;
+        }
+
+        int size = this.getAlignedSize(data.remaining());
+
+        if (size == region.size)
+        {
+            this.write(region.offset, data, size);
+            return id;
+        }
+
+        this.remove(id);
+
+        return this.add(data);
+    }
+
+    /**
+     * Removes the given region, and zeroes its data
+     * @return true if the region existed
+     */
+    public boolean remove(int id)
+    {
+        Region region = this.regions.remove(id);
+
+        if (region == null)
+        {
+            return false;
+        }
+
+        this.free(region.offset, region.size);
+
+        return true;
+    }
+
+    /**
+     * Removes all the regions
+     */
+    public void clear()
+    {
+        if (this.usedEnd > 0)
+        {
+            this.zero(0, this.usedEnd);
+            this.markDirty(0, this.usedEnd);
+        }
+
+        this.regions.clear();
+        this.freeRanges.clear();
+        this.usedEnd = 0;
+    }
+
+    protected int getAlignedSize(int size)
+    {
+        if (size % this.vertexSize != 0)
+        {
+            throw new IllegalArgumentException("The data size " + size + " is not a multiple of the vertex size " + this.vertexSize);
+        }
+
+        return size;
+    }
+
+    /**
+     * Finds the first free range that fits the requested size, or allocates from the end
+     * @return the offset of the allocated range
+     */
+    protected int allocate(int size)
+    {
+        for (Map.Entry<Integer, Integer> entry : this.freeRanges.entrySet())
+        {
+            int freeSize = entry.getValue();
+
+            if (freeSize >= size)
+            {
+                int offset = entry.getKey();
+                this.freeRanges.remove(offset);
+
+                if (freeSize > size)
+                {
+                    this.freeRanges.put(offset + size, freeSize - size);
+                }
+
+                return offset;
+            }
+        }
+
+        int offset = this.usedEnd;
+        this.ensureCapacity(offset + size);
+        this.usedEnd = offset + size;
+
+        return offset;
+    }
+
+    protected void free(int offset, int size)
+    {
+        this.zero(offset, size);
+        this.markDirty(offset, size);
+
+        // Merge with the adjacent free ranges
+        Map.Entry<Integer, Integer> before = this.freeRanges.floorEntry(offset);
+
+        if (before != null && before.getKey() + before.getValue() == offset)
+        {
+            offset = before.getKey();
+            size += before.getValue();
+            this.freeRanges.remove(offset);
+        }
+
+        Integer afterSize = this.freeRanges.remove(offset + size);
+
+        if (afterSize != null)
+        {
+            size += afterSize;
+        }
+
+        // A free range at the end just shrinks the used area
+        if (offset + size == this.usedEnd)
+        {
+            this.usedEnd = offset;
+        }
+        else
+        {
+            this.freeRanges.put(offset, size);
+        }
+    }
+
+    protected void write(int offset, ByteBuffer data, int size)
+    {
+        ByteBuffer src = data.duplicate();
+        src.limit(src.position() + size);
+
+        ByteBuffer dst = this.buffer.duplicate();
+        dst.clear();
+        dst.position(offset);
+        dst.put(src);
+
+        this.markDirty(offset, size);
+    }
+
+    protected void zero(int offset, int size)
+    {
+        ByteBuffer buf = this.buffer;
+
+        for (int i = offset; i < offset + size; ++i)
+        {
+            buf.put(i, (byte) 0);
+        }
+    }
+
+    protected void markDirty(int offset, int size)
+    {
+        int end = offset + size;
+
+        // Merge with any overlapping or adjacent dirty ranges
+        Map.Entry<Integer, Integer> before = this.dirtyRanges.floorEntry(offset);
+
+        if (before != null && before.getKey() + before.getValue() >= offset)
+        {
+            offset = before.getKey();
+            end = Math.max(end, offset + before.getValue());
+            this.dirtyRanges.remove(offset);
+        }
+
+        Map.Entry<Integer, Integer> after = this.dirtyRanges.ceilingEntry(offset);
+
+        while (after != null && after.getKey() <= end)
+        {
+            end = Math.max(end, after.getKey() + after.getValue());
+            this.dirtyRanges.remove(after.getKey());
+            after = this.dirtyRanges.ceilingEntry(offset);
+        }
+
+        this.dirtyRanges.put(offset, end - offset);
+    }
+
+    protected void ensureCapacity(int requiredCapacity)
+    {
+        int capacity = this.buffer.capacity();
+
+        if (requiredCapacity > capacity)
+        {
+            int newCapacity = Math.max(requiredCapacity, capacity * 2);
+            newCapacity += (this.vertexSize - (newCapacity % this.vertexSize)) % this.vertexSize;
+
+            ByteBuffer newBuffer = createBuffer(newCapacity);
+            ByteBuffer oldBuffer = this.buffer.duplicate();
+            oldBuffer.clear();
+            newBuffer.put(oldBuffer);
+            newBuffer.clear();
+
+            this.buffer = newBuffer;
+            this.capacityChanged = true;
+        }
+    }
+
+    protected static ByteBuffer createBuffer(int capacity)
+    {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+
+    protected static class Region
+    {
+        protected final int offset;
+        protected final int size;
+
+        protected Region(int offset, int size)
+        {
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+}
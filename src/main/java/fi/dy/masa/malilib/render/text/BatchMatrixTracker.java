@@ -0,0 +1,348 @@
+package fi.dy.masa.malilib.render.text;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Tracks the changes made to the model view matrix via GlStateManager while a text batch
+ * is active, relative to the matrix that was active when the batch started.
+ * This allows the batched vertices to be transformed on the CPU without reading
+ * the matrix back from OpenGL. Matrix changes made directly via GL11 are not seen.
+ * <br><br>
+ * If the matrix gets changed in a way that can't be tracked relative to the batch start
+ * (loadIdentity(), or popping past the matrix stack level where the batch started),
+ * then the rebase callback is called before the change, so that the already batched
+ * text can be drawn, and the tracking continues relative to the new matrix.
+ */
+public class BatchMatrixTracker
+{
+    public static final BatchMatrixTracker INSTANCE = new BatchMatrixTracker();
+
+    protected final float[] matrix = new float[16];
+    protected final float[] tmp = new float[16];
+    protected final List<float[]> stack = new ArrayList<>();
+    @Nullable protected Runnable rebaseCallback;
+    protected int stackSize;
+    protected boolean active;
+    protected boolean modelView = true;
+    protected boolean identity = true;
+
+    public BatchMatrixTracker()
+    {
+        setIdentity(this.matrix);
+    }
+
+    /**
+     * Starts tracking the matrix changes relative to the current model view matrix.
+     * Assumes that the current matrix mode is GL_MODELVIEW.
+     */
+    public void start(Runnable rebaseCallback)
+    {
+        this.rebaseCallback = rebaseCallback;
+        this.modelView = true;
+        this.active = true;
+        this.reset();
+    }
+
+    public void stop()
+    {
+        this.active = false;
+        this.rebaseCallback = null;
+        this.reset();
+    }
+
+    public boolean isActive()
+    {
+        return this.active;
+    }
+
+    /**
+     * @return true if the model view matrix is currently the same as it was when the tracking (re)started
+     */
+    public boolean isIdentity()
+    {
+        return this.identity;
+    }
+
+    /**
+     * @return the current model view matrix relative to the matrix at the start of the tracking,
+     *         in column-major order. <b>Note:</b> The array must not be modified.
+     */
+    public float[] getMatrix()
+    {
+        return this.matrix;
+    }
+
+    /**
+     * Writes the inverse of the current relative matrix into the given array
+     * @return false if the matrix is not invertible
+     */
+    public boolean getInverse(float[] out)
+    {
+        return invert(this.matrix, out);
+    }
+
+    protected void reset()
+    {
+        setIdentity(this.matrix);
+        this.identity = true;
+        this.stackSize = 0;
+    }
+
+    protected void rebase()
+    {
+        if (this.rebaseCallback != null)
+        {
+            this.rebaseCallback.run();
+        }
+
+        this.reset();
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onMatrixMode(int mode)
+    {
+        if (this.active)
+        {
+            this.modelView = mode == GL11.GL_MODELVIEW;
+        }
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onPushMatrix()
+    {
+        if (this.active && this.modelView)
+        {
+            if (this.stackSize >= this.stack.size())
+            {
+                this.stack.add(new float[16]);
+            }
+
+            System.arraycopy(this.matrix, 0, this.stack.get(this.stackSize++), 0, 16);
+        }
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onPopMatrix()
+    {
+        if (this.active && this.modelView)
+        {
+            if (this.stackSize > 0)
+            {
+                System.arraycopy(this.stack.get(--this.stackSize), 0, this.matrix, 0, 16);
+                this.identity = isIdentity(this.matrix);
+            }
+            else
+            {
+                this.rebase();
+            }
+        }
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onLoadIdentity()
+    {
+        if (this.active && this.modelView)
+        {
+            this.rebase();
+        }
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onTranslate(float x, float y, float z)
+    {
+        if (this.active && this.modelView)
+        {
+            float[] m = this.matrix;
+            m[12] += m[0] * x + m[4] * y + m[ 8] * z;
+            m[13] += m[1] * x + m[5] * y + m[ 9] * z;
+            m[14] += m[2] * x + m[6] * y + m[10] * z;
+            m[15] += m[3] * x + m[7] * y + m[11] * z;
+            this.identity = isIdentity(m);
+        }
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onScale(float x, float y, float z)
+    {
+        if (this.active && this.modelView)
+        {
+            float[] m = this.matrix;
+
+            for (int i = 0; i < 4; ++i)
+            {
+                m[i    ] *= x;
+                m[i + 4] *= y;
+                m[i + 8] *= z;
+            }
+
+            this.identity = isIdentity(m);
+        }
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onRotate(float angle, float x, float y, float z)
+    {
+        if (this.active && this.modelView)
+        {
+            float len = (float) Math.sqrt(x * x + y * y + z * z);
+
+            if (len == 0f)
+            {
+                return;
+            }
+
+            x /= len;
+            y /= len;
+            z /= len;
+
+            double rad = Math.toRadians(angle);
+            float c = (float) Math.cos(rad);
+            float s = (float) Math.sin(rad);
+            float ic = 1f - c;
+            float[] r = this.tmp;
+
+            r[0] = x * x * ic + c;
+            r[1] = y * x * ic + z * s;
+            r[2] = x * z * ic - y * s;
+            r[3] = 0f;
+            r[4] = x * y * ic - z * s;
+            r[5] = y * y * ic + c;
+            r[6] = y * z * ic + x * s;
+            r[7] = 0f;
+            r[8] = x * z * ic + y * s;
+            r[9] = y * z * ic - x * s;
+            r[10] = z * z * ic + c;
+            r[11] = 0f;
+            r[12] = 0f;
+            r[13] = 0f;
+            r[14] = 0f;
+            r[15] = 1f;
+
+            this.multiply(r);
+        }
+    }
+
+    /**
+     * NOT PUBLIC API - DO NOT CALL
+     */
+    public void onMultMatrix(FloatBuffer buf)
+    {
+        if (this.active && this.modelView)
+        {
+            float[] r = this.tmp;
+            int pos = buf.position();
+
+            for (int i = 0; i < 16; ++i)
+            {
+                r[i] = buf.get(pos + i);
+            }
+
+            this.multiply(r);
+        }
+    }
+
+    /**
+     * Post-multiplies the current matrix by the given matrix, like glMultMatrix does.
+     * <b>Note:</b> The argument array can't be the matrix array itself.
+     */
+    protected void multiply(float[] r)
+    {
+        float[] m = this.matrix;
+
+        for (int row = 0; row < 4; ++row)
+        {
+            float m0 = m[row];
+            float m1 = m[row + 4];
+            float m2 = m[row + 8];
+            float m3 = m[row + 12];
+
+            m[row     ] = m0 * r[ 0] + m1 * r[ 1] + m2 * r[ 2] + m3 * r[ 3];
+            m[row +  4] = m0 * r[ 4] + m1 * r[ 5] + m2 * r[ 6] + m3 * r[ 7];
+            m[row +  8] = m0 * r[ 8] + m1 * r[ 9] + m2 * r[10] + m3 * r[11];
+            m[row + 12] = m0 * r[12] + m1 * r[13] + m2 * r[14] + m3 * r[15];
+        }
+
+        this.identity = isIdentity(m);
+    }
+
+    protected static void setIdentity(float[] m)
+    {
+        for (int i = 0; i < 16; ++i)
+        {
+            m[i] = (i % 5) == 0 ? 1f : 0f;
+        }
+    }
+
+    protected static boolean isIdentity(float[] m)
+    {
+        for (int i = 0; i < 16; ++i)
+        {
+            if (m[i] != ((i % 5) == 0 ? 1f : 0f))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Inverts a column-major 4x4 matrix
+     * @return false if the matrix is not invertible
+     */
+    protected static boolean invert(float[] m, float[] out)
+    {
+        float[] inv = new float[16];
+
+        inv[0] = m[5] * m[10] * m[15] - m[5] * m[11] * m[14] - m[9] * m[6] * m[15] + m[9] * m[7] * m[14] + m[13] * m[6] * m[11] - m[13] * m[7] * m[10];
+        inv[4] = -m[4] * m[10] * m[15] + m[4] * m[11] * m[14] + m[8] * m[6] * m[15] - m[8] * m[7] * m[14] - m[12] * m[6] * m[11] + m[12] * m[7] * m[10];
+        inv[8] = m[4] * m[9] * m[15] - m[4] * m[11] * m[13] - m[8] * m[5] * m[15] + m[8] * m[7] * m[13] + m[12] * m[5] * m[11] - m[12] * m[7] * m[9];
+        inv[12] = -m[4] * m[9] * m[14] + m[4] * m[10] * m[13] + m[8] * m[5] * m[14] - m[8] * m[6] * m[13] - m[12] * m[5] * m[10] + m[12] * m[6] * m[9];
+        inv[1] = -m[1] * m[10] * m[15] + m[1] * m[11] * m[14] + m[9] * m[2] * m[15] - m[9] * m[3] * m[14] - m[13] * m[2] * m[11] + m[13] * m[3] * m[10];
+        inv[5] = m[0] * m[10] * m[15] - m[0] * m[11] * m[14] - m[8] * m[2] * m[15] + m[8] * m[3] * m[14] + m[12] * m[2] * m[11] - m[12] * m[3] * m[10];
+        inv[9] = -m[0] * m[9] * m[15] + m[0] * m[11] * m[13] + m[8] * m[1] * m[15] - m[8] * m[3] * m[13] - m[12] * m[1] * m[11] + m[12] * m[3] * m[9];
+        inv[13] = m[0] * m[9] * m[14] - m[0] * m[10] * m[13] - m[8] * m[1] * m[14] + m[8] * m[2] * m[13] + m[12] * m[1] * m[10] - m[12] * m[2] * m[9];
+        inv[2] = m[1] * m[6] * m[15] - m[1] * m[7] * m[14] - m[5] * m[2] * m[15] + m[5] * m[3] * m[14] + m[13] * m[2] * m[7] - m[13] * m[3] * m[6];
+        inv[6] = -m[0] * m[6] * m[15] + m[0] * m[7] * m[14] + m[4] * m[2] * m[15] - m[4] * m[3] * m[14] - m[12] * m[2] * m[7] + m[12] * m[3] * m[6];
+        inv[10] = m[0] * m[5] * m[15] - m[0] * m[7] * m[13] - m[4] * m[1] * m[15] + m[4] * m[3] * m[13] + m[12] * m[1] * m[7] - m[12] * m[3] * m[5];
+        inv[14] = -m[0] * m[5] * m[14] + m[0] * m[6] * m[13] + m[4] * m[1] * m[14] - m[4] * m[2] * m[13] - m[12] * m[1] * m[6] + m[12] * m[2] * m[5];
+        inv[3] = -m[1] * m[6] * m[11] + m[1] * m[7] * m[10] + m[5] * m[2] * m[11] - m[5] * m[3] * m[10] - m[9] * m[2] * m[7] + m[9] * m[3] * m[6];
+        inv[7] = m[0] * m[6] * m[11] - m[0] * m[7] * m[10] - m[4] * m[2] * m[11] + m[4] * m[3] * m[10] + m[8] * m[2] * m[7] - m[8] * m[3] * m[6];
+        inv[11] = -m[0] * m[5] * m[11] + m[0] * m[7] * m[9] + m[4] * m[1] * m[11] - m[4] * m[3] * m[9] - m[8] * m[1] * m[7] + m[8] * m[3] * m[5];
+        inv[15] = m[0] * m[5] * m[10] - m[0] * m[6] * m[9] - m[4] * m[1] * m[10] + m[4] * m[2] * m[9] + m[8] * m[1] * m[6] - m[8] * m[2] * m[5];
+
+        float det = m[0] * inv[0] + m[1] * inv[4] + m[2] * inv[8] + m[3] * inv[12];
+
+        if (det == 0f)
+        {
+            return false;
+        }
+
+        det = 1f / det;
+
+        for (int i = 0; i < 16; ++i)
+        {
+            out[i] = inv[i] * det;
+        }
+
+        return true;
+    }
+}
@@ -283,6 +283,9 @@ public class StringListRenderer extends BaseWidget
 
         if (renderBackground)
         {
+            // The backgrounds are drawn directly, so the text can't be batched,
+            // and any already batched text must not end up on top of the backgrounds
+            TextRenderer.INSTANCE.suspendBatch();
             buffer = RenderUtils.startBuffer(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR, false);
         }
 
@@ -341,6 +344,11 @@ public class StringListRenderer extends BaseWidget
         }
 
         TextRenderer.INSTANCE.renderBuffers();
+
+        if (renderBackground)
+        {
+            TextRenderer.INSTANCE.resumeBatch();
+        }
     }
 
     public interface LineClamper
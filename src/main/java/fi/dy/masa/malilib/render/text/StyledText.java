@@ -2,20 +2,13 @@ package fi.dy.masa.malilib.render.text;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import javax.annotation.Nullable;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
-import fi.dy.masa.malilib.MaLiLib;
 import fi.dy.masa.malilib.util.StringUtils;
 
 public class StyledText
 {
-    protected static final Cache<CacheKey, StyledText> TEXT_CACHE = CacheBuilder.newBuilder().initialCapacity(1000).maximumSize(1000).expireAfterAccess(15 * 60, TimeUnit.SECONDS).build();
+    public static final StyledTextCache TEXT_CACHE = new StyledTextCache(4096 * 1024L);
 
     public final ImmutableList<StyledTextLine> lines;
     private int renderWidth = -1;
@@ -72,7 +65,7 @@ public class StyledText
 
     public static void clearCache()
     {
-        TEXT_CACHE.invalidateAll();
+        TEXT_CACHE.clear();
     }
 
     public static StyledText ofLines(ImmutableList<StyledTextLine> lines)
@@ -97,30 +90,12 @@ public class StyledText
 
     public static StyledText of(String str)
     {
-        try
-        {
-            CacheKey key = new CacheKey(str, null);
-            return TEXT_CACHE.get(key, () -> StyledTextParser.parseString(str));
-        }
-        catch (ExecutionException e)
-        {
-            MaLiLib.LOGGER.warn("Exception while retrieving StyledText from cache", e);
-            return StyledTextParser.parseString(str);
-        }
+        return TEXT_CACHE.get(str, null);
     }
 
     public static StyledText of(String str, TextStyle startingStyle)
     {
-        try
-        {
-            CacheKey key = new CacheKey(str, startingStyle);
-            return TEXT_CACHE.get(key, () -> StyledTextParser.parseStringWithStartingStyle(str, startingStyle));
-        }
-        catch (ExecutionException e)
-        {
-            MaLiLib.LOGGER.warn("Exception while retrieving StyledText from cache", e);
-            return StyledTextParser.parseStringWithStartingStyle(str, startingStyle);
-        }
+        return TEXT_CACHE.get(str, startingStyle);
     }
 
     public static Builder builder()
@@ -160,6 +135,22 @@ public class StyledText
             this.originalTextStringForCurrentSegment.append(str);
         }
 
+        /**
+         * Appends the characters from start (inclusive) to end (exclusive) of the given string
+         */
+        public void appendDisplayString(String str, int start, int end)
+        {
+            this.displayStringForCurrentSegment.append(str, start, end);
+        }
+
+        /**
+         * Appends the characters from start (inclusive) to end (exclusive) of the given string
+         */
+        public void appendOriginalTextString(String str, int start, int end)
+        {
+            this.originalTextStringForCurrentSegment.append(str, start, end);
+        }
+
         public void applyStyleChange(Consumer<TextStyle.Builder> styleModifier)
         {
             TextStyle styleBefore = this.styleBuilder.build();
@@ -210,36 +201,4 @@ public class StyledText
             return new StyledText(ImmutableList.copyOf(this.lines));
         }
     }
-
-    private static class CacheKey
-    {
-        public final String text;
-        @Nullable public final TextStyle startingStyle;
-
-        public CacheKey(String text, @Nullable TextStyle startingStyle)
-        {
-            this.text = text;
-            this.startingStyle = startingStyle;
-        }
-
-        @Override
-        public boolean equals(Object o)
-        {
-            if (this == o) { return true; }
-            if (o == null || this.getClass() != o.getClass()) { return false; }
-
-            CacheKey cacheKey = (CacheKey) o;
-
-            if (!this.text.equals(cacheKey.text)) { return false; }
-            return Objects.equals(this.startingStyle, cacheKey.startingStyle);
-        }
-
-        @Override
-        public int hashCode()
-        {
-            int result = this.text.hashCode();
-            result = 31 * result + (this.startingStyle != null ? this.startingStyle.hashCode() : 0);
-            return result;
-        }
-    }
 }
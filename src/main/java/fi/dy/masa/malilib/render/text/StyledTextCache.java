@@ -0,0 +1,297 @@
+package fi.dy.masa.malilib.render.text;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * A least-recently-used cache of the parsed StyledText objects, keyed by the source string
+ * and the optional starting style. The cache is bounded by the approximate memory size
+ * ("weight") of the cached objects, instead of the entry count, so that a large number
+ * of short strings doesn't evict the few expensive long ones, and vice versa.
+ * The weight also includes the vertex caches that get built later for the lines
+ * of the cached texts when they are rendered, see {@link StyledTextLine#getVertexCacheWeight()}.
+ * <br><br>
+ * The lookups reuse a single mutable key object, so a cache hit doesn't allocate anything.
+ * The cache is mostly used from the client thread, but the methods are synchronized
+ * so that it's safe to also parse text from other threads.
+ */
+public class StyledTextCache
+{
+    // Rough estimates of the object sizes, used for the weight calculation
+    protected static final int ENTRY_OVERHEAD = 96;
+    protected static final int LINE_OVERHEAD = 64;
+    protected static final int SEGMENT_OVERHEAD = 96;
+    protected static final int GLYPH_REFERENCE_SIZE = 8;
+
+    protected final LinkedHashMap<CacheKey, CacheEntry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    protected final CacheKey lookupKey = new CacheKey(null, null);
+    protected long maxWeight;
+    protected long totalWeight;
+    protected long hitCount;
+    protected long missCount;
+    protected long evictionCount;
+
+    public StyledTextCache(long maxWeight)
+    {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the cached StyledText for the given string and starting style,
+     * or parses, caches and returns it if it wasn't cached yet.
+     */
+    public StyledText get(String str, @Nullable TextStyle startingStyle)
+    {
+        StyledText text = this.getIfPresent(str, startingStyle);
+
+        if (text == null)
+        {
+            // The parsing is done outside of the lock
+            if (startingStyle != null)
+            {
+                text = StyledTextParser.parseStringWithStartingStyle(str, startingStyle);
+            }
+            else
+            {
+                text = StyledTextParser.parseString(str);
+            }
+
+            this.put(str, startingStyle, text);
+        }
+
+        return text;
+    }
+
+    @Nullable
+    public synchronized StyledText getIfPresent(String str, @Nullable TextStyle startingStyle)
+    {
+        CacheKey key = this.lookupKey;
+        key.set(str, startingStyle);
+        CacheEntry entry = this.entries.get(key);
+        key.set(null, null);
+
+        if (entry != null)
+        {
+            ++this.hitCount;
+            return entry.text;
+        }
+
+        ++this.missCount;
+
+        return null;
+    }
+
+    public synchronized void put(String str, @Nullable TextStyle startingStyle, StyledText text)
+    {
+        int weight = getWeight(str, text);
+
+        // Don't let a single huge text flush the entire cache
+        if (weight > this.maxWeight)
+        {
+            return;
+        }
+
+        CacheEntry entry = new CacheEntry(this, text, weight);
+        CacheEntry old = this.entries.put(new CacheKey(str, startingStyle), entry);
+
+        if (old != null)
+        {
+            old.removed = true;
+            this.totalWeight -= old.weight;
+        }
+
+        // The lines will update the entry's weight when their vertex caches get built
+        for (StyledTextLine line : text.lines)
+        {
+            line.textCacheEntry = entry;
+        }
+
+        this.totalWeight += weight;
+        this.evictToMaxWeight();
+    }
+
+    public synchronized void clear()
+    {
+        for (CacheEntry entry : this.entries.values())
+        {
+            entry.removed = true;
+        }
+
+        this.entries.clear();
+        this.totalWeight = 0;
+    }
+
+    /**
+     * Sets the maximum total weight (the approximate size in bytes) of the cached objects,
+     * and evicts the least recently used entries if the cache is now over the limit.
+     * A value of 0 effectively disables the cache.
+     */
+    public synchronized void setMaxWeight(long maxWeight)
+    {
+        this.maxWeight = maxWeight;
+        this.evictToMaxWeight();
+    }
+
+    public synchronized void resetStatistics()
+    {
+        this.hitCount = 0;
+        this.missCount = 0;
+        this.evictionCount = 0;
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return this.entries.size();
+    }
+
+    public synchronized long getMaxWeight()
+    {
+        return this.maxWeight;
+    }
+
+    public synchronized long getTotalWeight()
+    {
+        return this.totalWeight;
+    }
+
+    public synchronized long getHitCount()
+    {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount()
+    {
+        return this.missCount;
+    }
+
+    public synchronized long getEvictionCount()
+    {
+        return this.evictionCount;
+    }
+
+    /**
+     * @return the hit rate as a value between 0 and 1, or 0 if there haven't been any lookups yet
+     */
+    public synchronized double getHitRate()
+    {
+        long total = this.hitCount + this.missCount;
+        return total > 0 ? (double) this.hitCount / (double) total : 0.0;
+    }
+
+    protected void evictToMaxWeight()
+    {
+        Iterator<CacheEntry> iter = this.entries.values().iterator();
+
+        // The iteration order is the least recently accessed entry first
+        while (this.totalWeight > this.maxWeight && iter.hasNext())
+        {
+            CacheEntry entry = iter.next();
+            iter.remove();
+            entry.removed = true;
+            this.totalWeight -= entry.weight;
+            ++this.evictionCount;
+        }
+    }
+
+    /**
+     * Changes the weight of the given entry, when the vertex caches of the lines of its text change.
+     * The entry is not evicted by itself even if it grows over the maximum weight,
+     * but the least recently used entries are evicted until the cache is under the limit again.
+     */
+    protected synchronized void addWeight(CacheEntry entry, int weightChange)
+    {
+        // The entry was already evicted or replaced
+        if (entry.removed)
+        {
+            return;
+        }
+
+        entry.weight += weightChange;
+        this.totalWeight += weightChange;
+        this.evictToMaxWeight();
+    }
+
+    /**
+     * @return the approximate memory size of the given parsed text and its key string,
+     *         including the vertex caches of its lines, in bytes
+     */
+    public static int getWeight(String str, StyledText text)
+    {
+        int weight = ENTRY_OVERHEAD + str.length() * 2;
+
+        for (StyledTextLine line : text.lines)
+        {
+            weight += LINE_OVERHEAD + (line.displayText.length() + line.originalString.length()) * 2;
+            weight += line.getVertexCacheWeight();
+
+            for (StyledTextSegment segment : line.segments)
+            {
+                weight += SEGMENT_OVERHEAD + segment.glyphCount * GLYPH_REFERENCE_SIZE;
+                weight += (segment.displayText.length() + segment.originalString.length()) * 2;
+            }
+        }
+
+        return weight;
+    }
+
+    protected static class CacheEntry
+    {
+        protected final StyledTextCache cache;
+        protected final StyledText text;
+        protected int weight;
+        protected boolean removed;
+
+        protected CacheEntry(StyledTextCache cache, StyledText text, int weight)
+        {
+            this.cache = cache;
+            this.text = text;
+            this.weight = weight;
+        }
+
+        protected void addWeight(int weightChange)
+        {
+            this.cache.addWeight(this, weightChange);
+        }
+    }
+
+    protected static class CacheKey
+    {
+        protected String text;
+        @Nullable protected TextStyle startingStyle;
+
+        protected CacheKey(String text, @Nullable TextStyle startingStyle)
+        {
+            this.text = text;
+            this.startingStyle = startingStyle;
+        }
+
+        protected void set(String text, @Nullable TextStyle startingStyle)
+        {
+            this.text = text;
+            this.startingStyle = startingStyle;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) { return true; }
+            if (o == null || this.getClass() != o.getClass()) { return false; }
+
+            CacheKey cacheKey = (CacheKey) o;
+
+            if (this.text.equals(cacheKey.text) == false) { return false; }
+            return Objects.equals(this.startingStyle, cacheKey.startingStyle);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = this.text.hashCode();
+            result = 31 * result + (this.startingStyle != null ? this.startingStyle.hashCode() : 0);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fi.dy.masa.malilib.render.text;
+
+import java.util.function.Supplier;
+import com.google.common.collect.ImmutableList;
+import fi.dy.masa.malilib.MaLiLibConfigs;
+import fi.dy.masa.malilib.event.PostGameOverlayRenderer;
+import fi.dy.masa.malilib.render.ShapeRenderUtils;
+
+/**
+ * Renders the {@link StyledTextCache} statistics in the top left corner of the screen,
+ * when the Debug -> Styled Text Cache Stats option is enabled.
+ * The lines are parsed directly, bypassing the cache, so that the constantly changing
+ * numbers don't affect the statistics themselves.
+ */
+public class StyledTextCacheStatsRenderer implements PostGameOverlayRenderer
+{
+    public static final StyledTextCacheStatsRenderer INSTANCE = new StyledTextCacheStatsRenderer();
+
+    protected static final long UPDATE_INTERVAL_MS = 500L;
+
+    protected StyledText text = StyledText.ofLines(ImmutableList.of());
+    protected long lastUpdateTime;
+    protected long lastHitCount;
+    protected long lastMissCount;
+
+    @Override
+    public Supplier<String> getProfilerSectionSupplier()
+    {
+        return () -> "malilib_text_cache_stats";
+    }
+
+    @Override
+    public void onPostGameOverlayRender()
+    {
+        if (MaLiLibConfigs.Debug.STYLED_TEXT_CACHE_STATS.getBooleanValue() == false)
+        {
+            return;
+        }
+
+        long currentTime = System.currentTimeMillis();
+
+        if (currentTime - this.lastUpdateTime >= UPDATE_INTERVAL_MS)
+        {
+            this.updateLines(StyledText.TEXT_CACHE, currentTime - this.lastUpdateTime);
+            this.lastUpdateTime = currentTime;
+        }
+
+        int x = 2;
+        int y = 2;
+        float z = 0f;
+        int lineHeight = TextRenderer.INSTANCE.getLineHeight();
+
+        int width = this.text.getRenderWidth() + 4;
+        int height = this.text.lines.size() * lineHeight + 3;
+
+        ShapeRenderUtils.renderRectangle(x, y, z, width, height, 0xA0000000);
+        TextRenderer.INSTANCE.renderText(x + 2, y + 2, z, 0xFFFFFFFF, false, this.text, lineHeight);
+    }
+
+    protected void updateLines(StyledTextCache cache, long elapsedMs)
+    {
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        long hitDelta = hits - this.lastHitCount;
+        long missDelta = misses - this.lastMissCount;
+        double seconds = Math.max(elapsedMs, 1L) / 1000.0;
+        double recentHitRate = hitDelta + missDelta > 0 ? hitDelta * 100.0 / (hitDelta + missDelta) : 0.0;
+
+        this.lastHitCount = hits;
+        this.lastMissCount = misses;
+
+        ImmutableList.Builder<StyledTextLine> builder = ImmutableList.builder();
+
+        addLine(builder, "§6Styled Text Cache");
+        addLine(builder, String.format("Entries: §e%d", cache.getEntryCount()));
+        addLine(builder, String.format("Weight: §e%d§r / §e%d§r KiB", cache.getTotalWeight() / 1024, cache.getMaxWeight() / 1024));
+        addLine(builder, String.format("Hits: §a%d§r, misses: §c%d§r, evictions: §c%d", hits, misses, cache.getEvictionCount()));
+        addLine(builder, String.format("Hit rate: §e%.1f%%§r (recent: §e%.1f%%§r)", cache.getHitRate() * 100.0, recentHitRate));
+        addLine(builder, String.format("Lookups/s: §e%.0f§r, misses/s: §c%.0f", (hitDelta + missDelta) / seconds, missDelta / seconds));
+
+        this.text = StyledText.ofLines(builder.build());
+    }
+
+    protected static void addLine(ImmutableList.Builder<StyledTextLine> builder, String str)
+    {
+        builder.addAll(StyledTextParser.parseString(str).lines);
+    }
+}
@@ -10,12 +10,22 @@ import fi.dy.masa.malilib.util.StringUtils;
 public class StyledTextLine
 {
     public static final StyledTextLine EMPTY = new StyledTextLine(ImmutableList.of());
+    /** The number of differently colored vertex caches kept per line, for things like button hover colors */
+    protected static final int MAX_VERTEX_CACHES = 4;
+    /** After this many caches have been evicted, the line is considered to change colors too often to be worth caching */
+    protected static final int MAX_VERTEX_CACHE_EVICTIONS = 16;
 
     public final ImmutableList<StyledTextSegment> segments;
     public final String displayText;
     public final String originalString;
     public final int glyphCount;
     public final int renderWidth;
+    protected final boolean hasRandomStyle;
+    @Nullable protected TextLineVertexCache[] vertexCaches;
+    protected int uncachedRenderCount;
+    protected int vertexCacheEvictions;
+    protected int vertexCacheWeight;
+    @Nullable protected StyledTextCache.CacheEntry textCacheEntry;
 
     public StyledTextLine(ImmutableList<StyledTextSegment> segments)
     {
@@ -25,6 +35,7 @@ public class StyledTextLine
         StringBuilder sbOriginal = new StringBuilder();
         int width = 0;
         int glyphCount = 0;
+        boolean hasRandomStyle = false;
 
         for (StyledTextSegment segment : segments)
         {
@@ -32,12 +43,140 @@ public class StyledTextLine
             sbOriginal.append(segment.originalString);
             width += segment.renderWidth;
             glyphCount += segment.glyphCount;
+            hasRandomStyle |= segment.style.random;
         }
 
         this.displayText = sbDisplay.toString();
         this.originalString = sbOriginal.toString();
         this.glyphCount = glyphCount;
         this.renderWidth = width;
+        this.hasRandomStyle = hasRandomStyle;
+    }
+
+    /**
+     * @return true if the vertex data of this line can be cached,
+     *         ie. the line has no randomized/obfuscated segments
+     */
+    public boolean isVertexCacheable()
+    {
+        return this.hasRandomStyle == false;
+    }
+
+    /**
+     * @return the cached vertex data that was built with the given settings, if any
+     */
+    @Nullable
+    protected TextLineVertexCache getVertexCache(int defaultColor, boolean shadow, int generation)
+    {
+        TextLineVertexCache[] caches = this.vertexCaches;
+
+        if (caches == null)
+        {
+            return null;
+        }
+
+        for (int i = 0; i < caches.length; ++i)
+        {
+            TextLineVertexCache cache = caches[i];
+
+            if (cache == null)
+            {
+                break;
+            }
+
+            if (cache.matches(defaultColor, shadow, generation))
+            {
+                // Keep the caches in the most recently used order
+                if (i > 0)
+                {
+                    System.arraycopy(caches, 0, caches, 1, i);
+                    caches[0] = cache;
+                }
+
+                return cache;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the approximate memory size of the vertex caches of this line, in bytes
+     */
+    public int getVertexCacheWeight()
+    {
+        return this.vertexCacheWeight;
+    }
+
+    /**
+     * Counts a render that didn't have cached vertex data for its settings.
+     * @return true if a vertex cache should now be built for the line.
+     *         The cache is only built when the line gets rendered uncached a second time,
+     *         so that lines that are only rendered once don't need to pay the cost of building it.
+     */
+    protected boolean onUncachedRender()
+    {
+        return this.isVertexCacheable() &&
+               this.vertexCacheEvictions < MAX_VERTEX_CACHE_EVICTIONS &&
+               ++this.uncachedRenderCount >= 2;
+    }
+
+    /**
+     * Adds the given vertex cache as the most recently used one, replacing the
+     * caches from an older generation and then the least recently used one, if needed.
+     * If this line is part of a text in the {@link StyledTextCache},
+     * then the weight of that cache entry is updated accordingly.
+     */
+    protected void addVertexCache(TextLineVertexCache cache)
+    {
+        if (this.vertexCaches == null)
+        {
+            this.vertexCaches = new TextLineVertexCache[MAX_VERTEX_CACHES];
+        }
+
+        TextLineVertexCache[] caches = this.vertexCaches;
+        int count = 0;
+
+        // Drop the caches from an older generation, as they can't be used anymore anyway
+        for (int i = 0; i < caches.length; ++i)
+        {
+            if (caches[i] != null && caches[i].generation == cache.generation)
+            {
+                caches[count++] = caches[i];
+            }
+        }
+
+        if (count == caches.length)
+        {
+            ++this.vertexCacheEvictions;
+            --count;
+        }
+
+        System.arraycopy(caches, 0, caches, 1, count);
+        caches[0] = cache;
+
+        int weight = cache.getWeight();
+
+        for (int i = 1; i <= count; ++i)
+        {
+            weight += caches[i].getWeight();
+        }
+
+        for (int i = count + 1; i < caches.length; ++i)
+        {
+            caches[i] = null;
+        }
+
+        this.uncachedRenderCount = 0;
+
+        int weightChange = weight - this.vertexCacheWeight;
+        StyledTextCache.CacheEntry entry = this.textCacheEntry;
+        this.vertexCacheWeight = weight;
+
+        if (entry != null && weightChange != 0)
+        {
+            entry.addWeight(weightChange);
+        }
     }
 
     /**
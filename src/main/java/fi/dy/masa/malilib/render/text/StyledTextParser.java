@@ -1,10 +1,9 @@
 package fi.dy.masa.malilib.render.text;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.function.BiConsumer;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import fi.dy.masa.malilib.util.StringReader;
 import fi.dy.masa.malilib.util.data.Color4f;
@@ -12,10 +11,23 @@ import fi.dy.masa.malilib.util.data.Color4f;
 public class StyledTextParser
 {
     public static final String VANILLA_FORMAT_CODES = "0123456789abcdefklmnorABCDEFKLMNOR";
-    protected static final Pattern PATTERN_COLOR_3 = Pattern.compile("[0-9a-fA-F]{3}>");
-    protected static final Pattern PATTERN_COLOR_4 = Pattern.compile("[0-9a-fA-F]{4}>");
-    protected static final Pattern PATTERN_COLOR_6 = Pattern.compile("[0-9a-fA-F]{6}>");
-    protected static final Pattern PATTERN_COLOR_8 = Pattern.compile("[0-9a-fA-F]{8}>");
+
+    protected static final Consumer<TextStyle.Builder> BOLD_ON                  = (b) -> b.withBold(true);
+    protected static final Consumer<TextStyle.Builder> BOLD_OFF                 = (b) -> b.withBold(false);
+    protected static final Consumer<TextStyle.Builder> ITALIC_ON                = (b) -> b.withItalic(true);
+    protected static final Consumer<TextStyle.Builder> ITALIC_OFF               = (b) -> b.withItalic(false);
+    protected static final Consumer<TextStyle.Builder> UNDERLINE_ON             = (b) -> b.withUnderline(true);
+    protected static final Consumer<TextStyle.Builder> UNDERLINE_OFF            = (b) -> b.withUnderline(false);
+    protected static final Consumer<TextStyle.Builder> STRIKETHROUGH_ON         = (b) -> b.withStrikeThrough(true);
+    protected static final Consumer<TextStyle.Builder> STRIKETHROUGH_OFF        = (b) -> b.withStrikeThrough(false);
+    protected static final Consumer<TextStyle.Builder> SHADOW_ON                = (b) -> b.withShadow(true);
+    protected static final Consumer<TextStyle.Builder> SHADOW_OFF               = (b) -> b.withShadow(false);
+    protected static final Consumer<TextStyle.Builder> RANDOM_ON                = (b) -> b.withRandom(true);
+    protected static final Consumer<TextStyle.Builder> RANDOM_OFF               = (b) -> b.withRandom(false);
+    protected static final Consumer<TextStyle.Builder> RESET_ALL                = TextStyle.Builder::resetAll;
+    protected static final Consumer<TextStyle.Builder> RESET_VANILLA_STYLES     = TextStyle.Builder::resetVanillaStyles;
+    protected static final Consumer<TextStyle.Builder> RESET_COLOR              = (b) -> b.withColor((Color4f) null);
+    protected static final Consumer<TextStyle.Builder> RESET_SHADOW_COLOR       = (b) -> b.withShadowColor(null);
 
     public static StyledText parseStringWithStartingStyle(String str, TextStyle style)
     {
@@ -29,24 +41,282 @@ public class StyledTextParser
         return parseString(str, builder);
     }
 
+    /**
+     * Parses the string in one pass, and passes the plain text ranges and the style changes
+     * directly to the builder, without creating any intermediate token objects or substrings.
+     * The result is identical to parsing the string via {@link #readTokens(StringReader, List)}
+     * and {@link #parseTokensToStyledText(List, StyledText.Builder)}.
+     */
     public static StyledText parseString(String str, StyledText.Builder builder)
     {
-        StringReader reader = new StringReader(str);
-        List<Token> tokens = new ArrayList<>();
+        final int length = str.length();
+        int literalStart = 0;
+        int pos = 0;
+
+        while (pos < length)
+        {
+            char c = str.charAt(pos);
+
+            // Only these characters can start a token, everything else is plain text
+            if (c != '<' && c != '§' && c != '\\' && c != '\n')
+            {
+                ++pos;
+                continue;
+            }
+
+            // Appending the pending plain text already here does not change the result even if
+            // this turns out to not be a token, as consecutive plain text just gets concatenated
+            if (pos > literalStart)
+            {
+                builder.appendDisplayString(str, literalStart, pos);
+                builder.appendOriginalTextString(str, literalStart, pos);
+                literalStart = pos;
+            }
+
+            char previous = pos > 0 ? str.charAt(pos - 1) : 0;
+            char next = pos + 1 < length ? str.charAt(pos + 1) : 0;
+            int tokenLength = 0;
+
+            if (c == '<')
+            {
+                if (previous != '\\')
+                {
+                    tokenLength = readStyleTag(str, pos, builder);
+                }
+            }
+            else if (c == '§')
+            {
+                if (previous != '\\' && VANILLA_FORMAT_CODES.indexOf(next) != -1)
+                {
+                    applyVanillaFormatCode(next, builder);
+                    builder.appendOriginalTextString(str, pos, pos + 2);
+                    tokenLength = 2;
+                }
+            }
+            else if (c == '\\')
+            {
+                if (next == 'n' && previous != '\\')
+                {
+                    builder.appendOriginalTextString(str, pos, pos + 2);
+                    builder.addLineBeak();
+                    tokenLength = 2;
+                }
+            }
+            else // '\n'
+            {
+                builder.appendOriginalTextString(str, pos, pos + 1);
+                builder.addLineBeak();
+                tokenLength = 1;
+            }
+
+            if (tokenLength > 0)
+            {
+                pos += tokenLength;
+                literalStart = pos;
+            }
+            else
+            {
+                ++pos;
+            }
+        }
 
-        readTokens(reader, tokens);
+        if (length > literalStart)
+        {
+            builder.appendDisplayString(str, literalStart, length);
+            builder.appendOriginalTextString(str, literalStart, length);
+        }
 
-        return parseTokensToStyledText(tokens, builder);
+        return builder.build();
     }
 
-    public static StyledText parseTokensToStyledText(List<Token> tokens, StyledText.Builder builder)
+    /**
+     * Reads and applies a style tag starting at the given position, which must have the '<' character.
+     * @return the length of the tag, or 0 if there was no valid tag at the position
+     */
+    protected static int readStyleTag(String str, int start, StyledText.Builder builder)
     {
-        for (Token token : tokens)
+        int pos = start + 1;
+        char c = pos < str.length() ? str.charAt(pos) : 0;
+        boolean state = true;
+
+        if (c == '/' || c == '!' || c == '^')
         {
-            token.applyTo(builder);
+            state = false;
+            ++pos;
         }
 
-        return builder.build();
+        Consumer<TextStyle.Builder> styleChange;
+        int end;
+
+        if (str.startsWith("b>", pos))
+        {
+            styleChange = state ? BOLD_ON : BOLD_OFF;
+            end = pos + 2;
+        }
+        else if (str.startsWith("i>", pos))
+        {
+            styleChange = state ? ITALIC_ON : ITALIC_OFF;
+            end = pos + 2;
+        }
+        else if (str.startsWith("u>", pos))
+        {
+            styleChange = state ? UNDERLINE_ON : UNDERLINE_OFF;
+            end = pos + 2;
+        }
+        else if (str.startsWith("st>", pos))
+        {
+            styleChange = state ? STRIKETHROUGH_ON : STRIKETHROUGH_OFF;
+            end = pos + 3;
+        }
+        else if (str.startsWith("sh>", pos))
+        {
+            styleChange = state ? SHADOW_ON : SHADOW_OFF;
+            end = pos + 3;
+        }
+        else if (str.startsWith("rnd>", pos))
+        {
+            styleChange = state ? RANDOM_ON : RANDOM_OFF;
+            end = pos + 4;
+        }
+        else if (str.startsWith("rst>", pos) && state) // negated reset state is not valid
+        {
+            styleChange = RESET_ALL;
+            end = pos + 4;
+        }
+        // color reset
+        else if (state == false && (str.startsWith("c>", pos) || str.startsWith("csh>", pos)))
+        {
+            boolean shadow = str.charAt(pos + 1) == 's';
+            styleChange = shadow ? RESET_SHADOW_COLOR : RESET_COLOR;
+            end = pos + (shadow ? 4 : 2);
+        }
+        // color start
+        else if (state && (str.startsWith("c=", pos) || str.startsWith("csh=", pos)))
+        {
+            boolean shadow = str.charAt(pos + 1) == 's';
+            int valueStart = pos + (shadow ? 4 : 2);
+            int valueLength = getColorValueLength(str, valueStart);
+
+            if (valueLength == 0)
+            {
+                return 0;
+            }
+
+            Color4f color = parseColorValue(str, valueStart, valueLength);
+            styleChange = shadow ? (b) -> b.withShadowColor(color) : (b) -> b.withColor(color);
+            end = valueStart + valueLength + 1;
+        }
+        else
+        {
+            return 0;
+        }
+
+        builder.applyStyleChange(styleChange);
+        builder.appendOriginalTextString(str, start, end);
+
+        return end - start;
+    }
+
+    protected static void applyVanillaFormatCode(char code, StyledText.Builder builder)
+    {
+        switch (Character.toLowerCase(code))
+        {
+            case 'k': builder.applyStyleChange(RANDOM_ON); break;
+            case 'l': builder.applyStyleChange(BOLD_ON); break;
+            case 'm': builder.applyStyleChange(STRIKETHROUGH_ON); break;
+            case 'n': builder.applyStyleChange(UNDERLINE_ON); break;
+            case 'o': builder.applyStyleChange(ITALIC_ON); break;
+            case 'r': builder.applyStyleChange(RESET_VANILLA_STYLES); break;
+            default:
+                Color4f color = Color4f.fromColor(TextRenderer.INSTANCE.getColorCode(Character.toLowerCase(code)), 1f);
+                builder.applyStyleChange(RESET_VANILLA_STYLES);
+                builder.applyStyleChange((b) -> b.withColor(color));
+        }
+    }
+
+    /**
+     * Checks for a color tag value (3, 4, 6 or 8 hex digits followed by the '>' character)
+     * starting at the given position.
+     * @return the number of hex digits in the color value, or 0 if there is no valid color value
+     */
+    protected static int getColorValueLength(String str, int start)
+    {
+        final int length = str.length();
+        int pos = start;
+
+        // Nothing longer than 8 hex digits is valid, so there is no need to look any further than that
+        while (pos < length && pos - start <= 8 && getHexDigitValue(str.charAt(pos)) != -1)
+        {
+            ++pos;
+        }
+
+        int digits = pos - start;
+
+        if (pos < length && str.charAt(pos) == '>' &&
+            (digits == 8 || digits == 6 || digits == 4 || digits == 3))
+        {
+            return digits;
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the value of the given ASCII hex digit, or -1 if the character is not one.
+     *         Unlike Character.digit(), this does not accept the non-ASCII digits and letters.
+     */
+    protected static int getHexDigitValue(char c)
+    {
+        if (c >= '0' && c <= '9')
+        {
+            return c - '0';
+        }
+
+        char lower = (char) (c | 0x20);
+
+        if (lower >= 'a' && lower <= 'f')
+        {
+            return lower - 'a' + 10;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parses a color value of the given number of hex digits.
+     * The valid formats are RGB, ARGB, RRGGBB and AARRGGBB.
+     */
+    protected static Color4f parseColorValue(String str, int start, int digits)
+    {
+        int value = 0;
+
+        for (int i = start; i < start + digits; ++i)
+        {
+            value = (value << 4) | getHexDigitValue(str.charAt(i));
+        }
+
+        switch (digits)
+        {
+            case 3:
+            {
+                int r = ((value >>> 8) & 0xF) * 17;
+                int g = ((value >>> 4) & 0xF) * 17;
+                int b = ( value        & 0xF) * 17;
+                return Color4f.fromColor(r << 16 | g << 8 | b, 1f);
+            }
+            case 4:
+            {
+                int a = ((value >>> 12) & 0xF) * 17;
+                int r = ((value >>>  8) & 0xF) * 17;
+                int g = ((value >>>  4) & 0xF) * 17;
+                int b = ( value         & 0xF) * 17;
+                return Color4f.fromColor(a << 24 | r << 16 | g << 8 | b);
+            }
+            case 6:
+                return Color4f.fromColor(value, 1f);
+            default:
+                return Color4f.fromColor(value);
+        }
     }
 
     public static void readTokens(StringReader reader, List<Token> tokens)
@@ -106,6 +376,16 @@ public class StyledTextParser
         }
     }
 
+    public static StyledText parseTokensToStyledText(List<Token> tokens, StyledText.Builder builder)
+    {
+        for (Token token : tokens)
+        {
+            token.applyTo(builder);
+        }
+
+        return builder.build();
+    }
+
     @Nullable
     public static Token tryReadStyleTokenAt(StringReader reader)
     {
@@ -191,37 +471,12 @@ public class StyledTextParser
             int tokenValueLen = shadow ? 4 : 2;
 
             reader.skip(tokenValueLen);
-            String str = reader.subString();
-            int len = str.length();
+            int valueLength = getColorValueLength(reader.getString(), reader.getPos());
 
-            if (len >= 9 && PATTERN_COLOR_8.matcher(str.substring(0, 9)).matches())
-            {
-                int colorInt = (int) Long.parseLong(str.substring(0, 8), 16);
-                color = Color4f.fromColor(colorInt);
-                tokenValueLen += 8;
-            }
-            else if (len >= 7 && PATTERN_COLOR_6.matcher(str.substring(0, 7)).matches())
-            {
-                int colorInt = Integer.parseInt(str.substring(0, 6), 16);
-                color = Color4f.fromColor(colorInt, 1f);
-                tokenValueLen += 6;
-            }
-            else if (len >= 5 && PATTERN_COLOR_4.matcher(str.substring(0, 5)).matches())
-            {
-                int a = Integer.parseInt(str.substring(0, 1), 16) * 17;
-                int r = Integer.parseInt(str.substring(1, 2), 16) * 17;
-                int g = Integer.parseInt(str.substring(2, 3), 16) * 17;
-                int b = Integer.parseInt(str.substring(3, 4), 16) * 17;
-                color = Color4f.fromColor(a << 24 | r << 16 | g << 8 | b);
-                tokenValueLen += 4;
-            }
-            else if (len >= 4 && PATTERN_COLOR_3.matcher(str.substring(0, 4)).matches())
+            if (valueLength > 0)
             {
-                int r = Integer.parseInt(str.substring(0, 1), 16) * 17;
-                int g = Integer.parseInt(str.substring(1, 2), 16) * 17;
-                int b = Integer.parseInt(str.substring(2, 3), 16) * 17;
-                color = Color4f.fromColor(r << 16 | g << 8 | b, 1f);
-                tokenValueLen += 3;
+                color = parseColorValue(reader.getString(), reader.getPos(), valueLength);
+                tokenValueLen += valueLength;
             }
 
             if (color != null)
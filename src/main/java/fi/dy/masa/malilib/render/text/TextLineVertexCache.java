@@ -0,0 +1,157 @@
+package fi.dy.masa.malilib.render.text;
+
+import net.minecraft.client.renderer.BufferBuilder;
+import fi.dy.masa.malilib.util.data.Identifier;
+
+/**
+ * The pre-built vertex data of one {@link StyledTextLine}, rendered with some
+ * specific default color and shadow setting. The data is split into runs per font texture,
+ * and the vertex positions are relative to the line's start position.
+ * <br><br>
+ * Each run also keeps a copy of the data translated to the position where it was
+ * last rendered, so rendering the line at the same position again (which is the common case
+ * for HUD text) is just a bulk copy into the buffer.
+ */
+public class TextLineVertexCache
+{
+    // POSITION_TEX_COLOR: x, y, z, u, v, color
+    protected static final int TEXT_VERTEX_INTS = 6;
+    // POSITION_COLOR: x, y, z, color
+    protected static final int STYLE_VERTEX_INTS = 4;
+    // Rough estimates of the object sizes, used for the weight calculation
+    protected static final int CACHE_OVERHEAD = 64;
+    protected static final int RUN_OVERHEAD = 80;
+
+    protected final int defaultColor;
+    protected final boolean shadow;
+    protected final int generation;
+    protected final Identifier[] textures;
+    protected final VertexRun[] textRuns;
+    protected final VertexRun styleRun;
+    protected final int weight;
+
+    public TextLineVertexCache(int defaultColor, boolean shadow, int generation,
+                               Identifier[] textures, int[][] textData, int[] styleData)
+    {
+        this.defaultColor = defaultColor;
+        this.shadow = shadow;
+        this.generation = generation;
+        this.textures = textures;
+        this.textRuns = new VertexRun[textData.length];
+        this.styleRun = new VertexRun(styleData, STYLE_VERTEX_INTS);
+
+        for (int i = 0; i < textData.length; ++i)
+        {
+            this.textRuns[i] = new VertexRun(textData[i], TEXT_VERTEX_INTS);
+        }
+
+        this.weight = this.calculateWeight();
+    }
+
+    /**
+     * @return the approximate memory size of this cache, in bytes
+     */
+    public int getWeight()
+    {
+        return this.weight;
+    }
+
+    protected int calculateWeight()
+    {
+        int weight = CACHE_OVERHEAD + this.textures.length * 8 + this.styleRun.getWeight();
+
+        for (VertexRun run : this.textRuns)
+        {
+            weight += run.getWeight();
+        }
+
+        return weight;
+    }
+
+    /**
+     * @return true if this cached data was built with the given settings
+     */
+    public boolean matches(int defaultColor, boolean shadow, int generation)
+    {
+        return this.defaultColor == defaultColor && this.shadow == shadow && this.generation == generation;
+    }
+
+    public int getRunCount()
+    {
+        return this.textRuns.length;
+    }
+
+    public Identifier getTexture(int runIndex)
+    {
+        return this.textures[runIndex];
+    }
+
+    public void addTextRunToBuffer(int runIndex, float x, float y, float z, BufferBuilder buffer)
+    {
+        this.textRuns[runIndex].addToBuffer(x, y, z, buffer);
+    }
+
+    public void addStylesToBuffer(float x, float y, float z, BufferBuilder buffer)
+    {
+        this.styleRun.addToBuffer(x, y, z, buffer);
+    }
+
+    protected static class VertexRun
+    {
+        protected final int[] relativeData;
+        protected final int[] translatedData;
+        protected final int vertexInts;
+        protected float lastX = Float.NaN;
+        protected float lastY;
+        protected float lastZ;
+
+        protected VertexRun(int[] relativeData, int vertexInts)
+        {
+            this.relativeData = relativeData;
+            this.translatedData = new int[relativeData.length];
+            this.vertexInts = vertexInts;
+        }
+
+        protected int getWeight()
+        {
+            // Both the relative and the translated data arrays
+            return RUN_OVERHEAD + this.relativeData.length * 8;
+        }
+
+        protected void addToBuffer(float x, float y, float z, BufferBuilder buffer)
+        {
+            if (this.relativeData.length == 0)
+            {
+                return;
+            }
+
+            if (x != this.lastX || y != this.lastY || z != this.lastZ)
+            {
+                this.translate(x, y, z);
+            }
+
+            buffer.addVertexData(this.translatedData);
+        }
+
+        protected void translate(float x, float y, float z)
+        {
+            int[] src = this.relativeData;
+            int[] dst = this.translatedData;
+            final int length = src.length;
+            final int stride = this.vertexInts;
+
+            System.arraycopy(src, 0, dst, 0, length);
+
+            for (int i = 0; i < length; i += stride)
+            {
+                dst[i    ] = Float.floatToRawIntBits(Float.intBitsToFloat(src[i    ]) + x);
+                dst[i + 1] = Float.floatToRawIntBits(Float.intBitsToFloat(src[i + 1]) + y);
+                dst[i + 2] = Float.floatToRawIntBits(Float.intBitsToFloat(src[i + 2]) + z);
+            }
+
+            this.lastX = x;
+            this.lastY = y;
+            this.lastZ = z;
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package fi.dy.masa.malilib.render.text;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap;
@@ -13,6 +18,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.lwjgl.opengl.GL11;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.BufferBuilder;
+import net.minecraft.client.renderer.GLAllocation;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.WorldVertexBufferUploader;
 import net.minecraft.client.renderer.texture.TextureManager;
@@ -45,6 +51,14 @@ public class TextRenderer implements IResourceManagerReloadListener
     protected final WorldVertexBufferUploader vboUploader = new WorldVertexBufferUploader();
     protected final BufferBuilder textBuffer = new BufferBuilder(1048576);
     protected final BufferBuilder styleBuffer = new BufferBuilder(8192);
+    protected final BufferBuilder cacheTextBuffer = new BufferBuilder(16384);
+    protected final BufferBuilder cacheStyleBuffer = new BufferBuilder(2048);
+    protected final Map<Identifier, BufferBuilder> batchTextBuffers = new HashMap<>();
+    protected final Set<Identifier> activeBatchTextures = new LinkedHashSet<>();
+    protected final BufferBuilder batchStyleBuffer = new BufferBuilder(8192);
+    protected final FloatBuffer batchMatrixBuffer = GLAllocation.createDirectFloatBuffer(16);
+    protected final float[] batchInverseMatrix = new float[16];
+    protected final Runnable batchRebaseCallback = this::flushBatch;
     protected final TextureManager textureManager;
     protected final Identifier asciiTexture;
 
@@ -63,6 +77,13 @@ public class TextRenderer implements IResourceManagerReloadListener
     protected int lineHeight = 10;
     protected int asciiGlyphWidth = 8;
     protected int asciiGlyphHeight = 8;
+    protected int vertexCacheGeneration;
+    protected int batchDepth;
+    protected int batchSuspendCount;
+    protected int batchSubmissionCount;
+    protected int lastBatchSubmissionCount;
+    protected int lastBatchDrawCallCount;
+    protected boolean batchStyleBufferActive;
 
     public TextRenderer(TextureManager textureManager, Identifier asciiTexture, boolean unicode, boolean anaglyph)
     {
@@ -135,6 +156,8 @@ public class TextRenderer implements IResourceManagerReloadListener
         }
 
         StyledText.clearCache();
+        // Invalidates all the cached line vertex data, as the glyph UVs may change
+        ++this.vertexCacheGeneration;
         this.glyphs.clear();
         this.glyphsBySize.clear();
         Arrays.fill(this.charWidth, 0);
@@ -161,9 +184,132 @@ public class TextRenderer implements IResourceManagerReloadListener
         return index >= 0 && index < 16 ? this.colorCode[index] : 0;
     }
 
+    /**
+     * Returns the render width of the given string, with any formatting codes and style tags removed.
+     * If the string has multiple lines, then the width of the widest line is returned.
+     * <br><br>
+     * Strings without any style tags are measured directly from the glyph width tables,
+     * without parsing and caching a StyledText object for them. The result is the same
+     * as {@code StyledText.of(str).getRenderWidth()}.
+     */
     public int getRenderWidth(String str)
     {
-        return StyledText.of(str).getRenderWidth();
+        // The style tags and their effects on the width are left for the full parser
+        if (str.indexOf('<') != -1)
+        {
+            return StyledText.of(str).getRenderWidth();
+        }
+
+        final int length = str.length();
+        int maxWidth = 0;
+        int lineWidth = 0;
+        boolean bold = false;
+
+        for (int i = 0; i < length; ++i)
+        {
+            char c = str.charAt(i);
+
+            if (c == '§' || c == '\\' || c == '\n')
+            {
+                char previous = i > 0 ? str.charAt(i - 1) : 0;
+                char next = i + 1 < length ? str.charAt(i + 1) : 0;
+
+                if (c == '§' && previous != '\\' && StyledTextParser.VANILLA_FORMAT_CODES.indexOf(next) != -1)
+                {
+                    char code = Character.toLowerCase(next);
+
+                    // The color codes and the reset code reset the bold style, the other styles don't affect the width
+                    if (code == 'l')
+                    {
+                        bold = true;
+                    }
+                    else if (code == 'r' || VANILLA_COLOR_CODES.indexOf(code) != -1)
+                    {
+                        bold = false;
+                    }
+
+                    ++i;
+                    continue;
+                }
+                else if (c == '\n' || (c == '\\' && next == 'n' && previous != '\\'))
+                {
+                    maxWidth = Math.max(maxWidth, lineWidth);
+                    lineWidth = 0;
+                    i += c == '\n' ? 0 : 1;
+                    continue;
+                }
+            }
+
+            lineWidth += this.getCharRenderWidth(c);
+
+            // Bold style glyphs are 1 pixel wider per glyph
+            if (bold)
+            {
+                ++lineWidth;
+            }
+        }
+
+        return Math.max(maxWidth, lineWidth);
+    }
+
+    /**
+     * Measures the render widths of all the given strings.
+     * @return the render widths, in the same order as the strings in the list
+     */
+    public int[] measure(List<String> strings)
+    {
+        final int size = strings.size();
+        int[] widths = new int[size];
+
+        for (int i = 0; i < size; ++i)
+        {
+            widths[i] = this.getRenderWidth(strings.get(i));
+        }
+
+        return widths;
+    }
+
+    /**
+     * @return the render width of the widest string in the list
+     */
+    public int getMaxRenderWidth(List<String> strings)
+    {
+        int maxWidth = 0;
+
+        for (String str : strings)
+        {
+            maxWidth = Math.max(maxWidth, this.getRenderWidth(str));
+        }
+
+        return maxWidth;
+    }
+
+    /**
+     * Returns the render width of the given character, without the extra width of the bold style.
+     * This is the same as the render width of the Glyph returned by {@link #getGlyphFor(char)},
+     * but it's read directly from the width tables without a Glyph lookup.
+     */
+    public int getCharRenderWidth(char c)
+    {
+        if (c == ' ')
+        {
+            return EMPTY_GLYPH.renderWidth;
+        }
+        else if (c > 0 && this.unicode == false && this.asciiCharacterWidths[c] != 0)
+        {
+            return this.asciiCharacterWidths[c];
+        }
+
+        int data = this.glyphWidth[c] & 0xFF;
+
+        if (data != 0)
+        {
+            // See generateUnicodeCharacterGlyph()
+            int width = (data & 0xF) - (data >>> 4) + 1;
+            return width / 2 + 1;
+        }
+
+        return EMPTY_GLYPH.renderWidth;
     }
 
     public Glyph getGlyphFor(char c)
@@ -307,11 +453,20 @@ public class TextRenderer implements IResourceManagerReloadListener
 
         if (this.buildingStyleBuffer)
         {
-            GlStateManager.disableTexture2D();
             this.styleBuffer.finishDrawing();
-            this.vboUploader.draw(this.styleBuffer);
+
+            if (this.isBatching())
+            {
+                this.moveToBatch(this.styleBuffer, this.getBatchStyleBuffer());
+            }
+            else
+            {
+                GlStateManager.disableTexture2D();
+                this.vboUploader.draw(this.styleBuffer);
+                GlStateManager.enableTexture2D();
+            }
+
             this.buildingStyleBuffer = false;
-            GlStateManager.enableTexture2D();
         }
     }
 
@@ -321,19 +476,257 @@ public class TextRenderer implements IResourceManagerReloadListener
         {
             this.textBuffer.finishDrawing();
 
-            if (this.currentFontTexture != null)
+            if (this.currentFontTexture != null && this.isBatching())
+            {
+                this.moveToBatch(this.textBuffer, this.getBatchTextBuffer(this.currentFontTexture));
+            }
+            else if (this.currentFontTexture != null)
             {
                 GlStateManager.enableTexture2D();
                 this.textureManager.bindTexture(this.currentFontTexture);
                 this.vboUploader.draw(this.textBuffer);
                 GlStateManager.disableTexture2D();
             }
+            else
+            {
+                this.textBuffer.reset();
+            }
 
             this.currentFontTexture = null;
             this.buildingTextBuffer = false;
         }
     }
 
+    /**
+     * Starts the deferred batch mode. While the batch mode is active, all the text
+     * rendered via this renderer is collected into per-texture buffers, and it is only
+     * drawn when the outermost {@link #endBatch()} call is made, or when the batch is flushed.
+     * The vertices are transformed by the model view matrix changes made since the batch started,
+     * as tracked by {@link BatchMatrixTracker}, so any matrix changes during the batch are fine,
+     * as long as they are made via GlStateManager.
+     * The text keeps its z values, so the depth ordering against other things is preserved
+     * as long as the depth test is enabled. Anything that is drawn on top of the text without
+     * the depth test, like hover texts or popups, must call {@link #flushBatch()} or
+     * {@link #suspendBatch()} first.
+     * <br><br>
+     * The begin and end calls can be nested, and they must always be paired.
+     */
+    public void beginBatch()
+    {
+        if (this.batchDepth++ == 0)
+        {
+            BatchMatrixTracker.INSTANCE.start(this.batchRebaseCallback);
+        }
+    }
+
+    /**
+     * Ends the batch mode, and draws all the batched text if this was the outermost batch
+     */
+    public void endBatch()
+    {
+        if (this.batchDepth <= 0)
+        {
+            return;
+        }
+
+        if (--this.batchDepth == 0)
+        {
+            this.renderBuffers();
+            this.drawBatch();
+            this.batchSuspendCount = 0;
+            BatchMatrixTracker.INSTANCE.stop();
+        }
+    }
+
+    /**
+     * Draws all the text batched so far, without ending the batch.
+     * This should be called at layer boundaries, ie. before anything is drawn
+     * that needs to be on top of the already rendered text regardless of the depth test.
+     * Any text buffers that are still being built are not affected.
+     */
+    public void flushBatch()
+    {
+        if (this.batchDepth > 0)
+        {
+            this.drawBatch();
+        }
+    }
+
+    /**
+     * Flushes the batch, and then draws all text directly until {@link #resumeBatch()} is called.
+     * This is meant for things like hover texts that are rendered with the depth test disabled,
+     * and thus need to be drawn in order with the other things around them.
+     */
+    public void suspendBatch()
+    {
+        if (this.batchDepth > 0)
+        {
+            this.flushBatch();
+            ++this.batchSuspendCount;
+        }
+    }
+
+    public void resumeBatch()
+    {
+        if (this.batchSuspendCount > 0)
+        {
+            --this.batchSuspendCount;
+        }
+    }
+
+    public boolean isBatching()
+    {
+        return this.batchDepth > 0 && this.batchSuspendCount == 0;
+    }
+
+    /**
+     * @return the number of draw calls made by the previous batch flush
+     */
+    public int getLastBatchDrawCallCount()
+    {
+        return this.lastBatchDrawCallCount;
+    }
+
+    /**
+     * @return the number of separate text buffer submissions collected into the previous batch flush
+     */
+    public int getLastBatchSubmissionCount()
+    {
+        return this.lastBatchSubmissionCount;
+    }
+
+    protected BufferBuilder getBatchTextBuffer(Identifier texture)
+    {
+        BufferBuilder buffer = this.batchTextBuffers.get(texture);
+
+        if (buffer == null)
+        {
+            buffer = new BufferBuilder(65536);
+            this.batchTextBuffers.put(texture, buffer);
+        }
+
+        if (this.activeBatchTextures.add(texture))
+        {
+            buffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
+        }
+
+        return buffer;
+    }
+
+    protected BufferBuilder getBatchStyleBuffer()
+    {
+        if (this.batchStyleBufferActive == false)
+        {
+            this.batchStyleBuffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
+            this.batchStyleBufferActive = true;
+        }
+
+        return this.batchStyleBuffer;
+    }
+
+    /**
+     * Moves the finished vertex data from the source buffer to the batch buffer,
+     * transformed by the tracked model view matrix changes since the start of the batch.
+     * The positions are transformed in-place in the source buffer, which is then reset.
+     */
+    protected void moveToBatch(BufferBuilder source, BufferBuilder batchBuffer)
+    {
+        int vertexCount = source.getVertexCount();
+
+        if (vertexCount > 0)
+        {
+            ByteBuffer data = source.getByteBuffer();
+            BatchMatrixTracker tracker = BatchMatrixTracker.INSTANCE;
+
+            if (tracker.isIdentity() == false)
+            {
+                // The position is always the first element in the text vertex formats
+                int vertexSize = source.getVertexFormat().getSize();
+                int end = vertexCount * vertexSize;
+                float[] m = tracker.getMatrix();
+
+                for (int i = 0; i < end; i += vertexSize)
+                {
+                    float x = data.getFloat(i);
+                    float y = data.getFloat(i + 4);
+                    float z = data.getFloat(i + 8);
+
+                    // The matrix is in column-major order
+                    data.putFloat(i    , m[0] * x + m[4] * y + m[ 8] * z + m[12]);
+                    data.putFloat(i + 4, m[1] * x + m[5] * y + m[ 9] * z + m[13]);
+                    data.putFloat(i + 8, m[2] * x + m[6] * y + m[10] * z + m[14]);
+                }
+            }
+
+            batchBuffer.putBulkData(data);
+            ++this.batchSubmissionCount;
+        }
+
+        source.reset();
+    }
+
+    /**
+     * Draws all the batched text, one draw call per font texture.
+     * The vertices have already been transformed relative to the model view matrix
+     * at the start of the batch, so if the matrix has been changed since, then
+     * the inverse of that change is applied for the draw.
+     */
+    protected void drawBatch()
+    {
+        if (this.activeBatchTextures.isEmpty() && this.batchStyleBufferActive == false)
+        {
+            this.lastBatchDrawCallCount = 0;
+            this.lastBatchSubmissionCount = 0;
+            return;
+        }
+
+        BatchMatrixTracker tracker = BatchMatrixTracker.INSTANCE;
+        boolean restoreMatrix = tracker.isIdentity() == false && tracker.getInverse(this.batchInverseMatrix);
+        int drawCalls = 0;
+
+        if (restoreMatrix)
+        {
+            this.batchMatrixBuffer.clear();
+            this.batchMatrixBuffer.put(this.batchInverseMatrix);
+            this.batchMatrixBuffer.flip();
+            GlStateManager.pushMatrix();
+            GlStateManager.multMatrix(this.batchMatrixBuffer);
+        }
+
+        RenderUtils.color(1f, 1f, 1f, 1f);
+        RenderUtils.setupBlend();
+        GlStateManager.enableTexture2D();
+
+        for (Identifier texture : this.activeBatchTextures)
+        {
+            BufferBuilder buffer = this.batchTextBuffers.get(texture);
+            buffer.finishDrawing();
+            this.textureManager.bindTexture(texture);
+            this.vboUploader.draw(buffer);
+            ++drawCalls;
+        }
+
+        if (this.batchStyleBufferActive)
+        {
+            GlStateManager.disableTexture2D();
+            this.batchStyleBuffer.finishDrawing();
+            this.vboUploader.draw(this.batchStyleBuffer);
+            GlStateManager.enableTexture2D();
+            this.batchStyleBufferActive = false;
+            ++drawCalls;
+        }
+
+        if (restoreMatrix)
+        {
+            GlStateManager.popMatrix();
+        }
+
+        this.activeBatchTextures.clear();
+        this.lastBatchDrawCallCount = drawCalls;
+        this.lastBatchSubmissionCount = this.batchSubmissionCount;
+        this.batchSubmissionCount = 0;
+    }
+
     public void renderText(int x, int y, float z, int defaultColor, boolean shadow, StyledText text)
     {
         this.renderText(x, y, z, defaultColor, shadow, text, this.lineHeight);
@@ -384,11 +777,17 @@ public class TextRenderer implements IResourceManagerReloadListener
     {
         if (this.textBuffer != null)
         {
-            int segmentX = x;
-            Color4f defaultColor4f = Color4f.fromColor(defaultColor);
             RenderUtils.color(1f, 1f, 1f, 1f);
             RenderUtils.setupBlend();
 
+            if (alphaModifier == null && this.renderCachedLineToBuffer(x, y, z, defaultColor, shadow, line))
+            {
+                return;
+            }
+
+            int segmentX = x;
+            Color4f defaultColor4f = Color4f.fromColor(defaultColor);
+
             for (StyledTextSegment segment : line.segments)
             {
                 segmentX += this.renderTextSegment(segmentX, y, z, defaultColor4f, shadow, segment, alphaModifier);
@@ -396,20 +795,108 @@ public class TextRenderer implements IResourceManagerReloadListener
         }
     }
 
-    protected int renderTextSegment(int x, int y, float z, Color4f defaultColor,
-                                    boolean shadow, StyledTextSegment segment,
-                                    @Nullable FloatUnaryOperator alphaModifier)
+    /**
+     * Adds the cached vertex data of the line to the buffers, building the cache if needed.
+     * Each line keeps a few caches for different color and shadow settings,
+     * see {@link StyledTextLine#onUncachedRender()} for when they get built.
+     * @return true if the line was rendered from the cache
+     */
+    protected boolean renderCachedLineToBuffer(int x, int y, float z, int defaultColor, boolean shadow, StyledTextLine line)
     {
-        TextStyle style = segment.style;
-        Color4f color = style.color != null ? style.color : defaultColor;
+        TextLineVertexCache cache = line.getVertexCache(defaultColor, shadow, this.vertexCacheGeneration);
 
-        if (alphaModifier != null)
+        if (cache == null)
         {
-            color = color.withAlpha(alphaModifier.apply(color.a));
+            if (line.onUncachedRender() == false)
+            {
+                return false;
+            }
+
+            cache = this.buildLineVertexCache(defaultColor, shadow, line);
+            line.addVertexCache(cache);
+        }
+
+        final int runCount = cache.getRunCount();
+
+        for (int i = 0; i < runCount; ++i)
+        {
+            this.setFontTexture(cache.getTexture(i));
+            cache.addTextRunToBuffer(i, x, y, z, this.textBuffer);
+        }
+
+        cache.addStylesToBuffer(x, y, z, this.styleBuffer);
+
+        return true;
+    }
+
+    /**
+     * Builds the vertex data of the line at the position 0, 0, 0
+     */
+    protected TextLineVertexCache buildLineVertexCache(int defaultColor, boolean shadow, StyledTextLine line)
+    {
+        BufferBuilder textBuffer = this.cacheTextBuffer;
+        BufferBuilder styleBuffer = this.cacheStyleBuffer;
+        List<Identifier> textures = new ArrayList<>();
+        List<int[]> textRuns = new ArrayList<>();
+        Color4f defaultColor4f = Color4f.fromColor(defaultColor);
+        Identifier currentTexture = null;
+        int segmentX = 0;
+
+        textBuffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
+        styleBuffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
+
+        for (StyledTextSegment segment : line.segments)
+        {
+            if (currentTexture != segment.texture)
+            {
+                if (currentTexture != null)
+                {
+                    textRuns.add(getVertexDataAndReset(textBuffer));
+                    textures.add(currentTexture);
+                    textBuffer.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_TEX_COLOR);
+                }
+
+                currentTexture = segment.texture;
+            }
+
+            segmentX += this.renderTextSegmentToBuffers(segmentX, 0, 0f, defaultColor4f, shadow, segment,
+                                                        null, textBuffer, styleBuffer);
         }
 
+        int[] textData = getVertexDataAndReset(textBuffer);
+
+        if (currentTexture != null)
+        {
+            textRuns.add(textData);
+            textures.add(currentTexture);
+        }
+
+        int[] styleData = getVertexDataAndReset(styleBuffer);
+
+        return new TextLineVertexCache(defaultColor, shadow, this.vertexCacheGeneration,
+                                       textures.toArray(new Identifier[0]),
+                                       textRuns.toArray(new int[0][]), styleData);
+    }
+
+    protected static int[] getVertexDataAndReset(BufferBuilder buffer)
+    {
+        buffer.finishDrawing();
+
+        int[] data = new int[buffer.getVertexCount() * buffer.getVertexFormat().getIntegerSize()];
+        buffer.getByteBuffer().asIntBuffer().get(data);
+        buffer.reset();
+
+        return data;
+    }
+
+    /**
+     * Sets the font texture for the following glyphs, and draws the
+     * already buffered glyphs first if the texture changes
+     */
+    protected void setFontTexture(Identifier texture)
+    {
         // Reference equality is fine here, as the sheets are fixed/pre-determined
-        if (this.currentFontTexture != segment.texture)
+        if (this.currentFontTexture != texture)
         {
             if (this.currentFontTexture != null)
             {
@@ -417,7 +904,31 @@ public class TextRenderer implements IResourceManagerReloadListener
                 this.startBuffers();
             }
 
-            this.currentFontTexture = segment.texture;
+            this.currentFontTexture = texture;
+        }
+    }
+
+    protected int renderTextSegment(int x, int y, float z, Color4f defaultColor,
+                                    boolean shadow, StyledTextSegment segment,
+                                    @Nullable FloatUnaryOperator alphaModifier)
+    {
+        this.setFontTexture(segment.texture);
+
+        return this.renderTextSegmentToBuffers(x, y, z, defaultColor, shadow, segment, alphaModifier,
+                                               this.textBuffer, this.styleBuffer);
+    }
+
+    protected int renderTextSegmentToBuffers(int x, int y, float z, Color4f defaultColor,
+                                             boolean shadow, StyledTextSegment segment,
+                                             @Nullable FloatUnaryOperator alphaModifier,
+                                             BufferBuilder textBuffer, BufferBuilder styleBuffer)
+    {
+        TextStyle style = segment.style;
+        Color4f color = style.color != null ? style.color : defaultColor;
+
+        if (alphaModifier != null)
+        {
+            color = color.withAlpha(alphaModifier.apply(color.a));
         }
 
         if (style.shadow != null)
@@ -435,14 +946,21 @@ public class TextRenderer implements IResourceManagerReloadListener
             }
 
             float offset = this.unicode ? 0.5F : 1.0F;
-            this.renderTextSegmentAndStylesWithColor(x + offset, y + offset, z, shadowColor, segment);
+            this.renderTextSegmentAndStylesWithColor(x + offset, y + offset, z, shadowColor, segment, textBuffer, styleBuffer);
         }
 
-        return this.renderTextSegmentAndStylesWithColor(x, y, z, color, segment);
+        return this.renderTextSegmentAndStylesWithColor(x, y, z, color, segment, textBuffer, styleBuffer);
     }
 
     protected int renderTextSegmentAndStylesWithColor(float x, float y, float z,
                                                       Color4f color, StyledTextSegment segment)
+    {
+        return this.renderTextSegmentAndStylesWithColor(x, y, z, color, segment, this.textBuffer, this.styleBuffer);
+    }
+
+    protected int renderTextSegmentAndStylesWithColor(float x, float y, float z,
+                                                      Color4f color, StyledTextSegment segment,
+                                                      BufferBuilder textBuffer, BufferBuilder styleBuffer)
     {
         TextStyle style = segment.style;
 
@@ -450,17 +968,17 @@ public class TextRenderer implements IResourceManagerReloadListener
         {
             float lineHeight = this.unicode ? 0.5F : 1.0F;
             ShapeRenderUtils.renderRectangle(x - 1F, y + this.fontHeight, z,
-                                             segment.renderWidth, lineHeight, color, this.styleBuffer);
+                                             segment.renderWidth, lineHeight, color, styleBuffer);
         }
 
         if (style.strikeThrough)
         {
             float lineHeight = this.unicode ? 0.5F : 1.0F;
             ShapeRenderUtils.renderRectangle(x - 1F, y + this.fontHeight / 2.0F - 1F, z,
-                                             segment.renderWidth + 1, lineHeight, color, this.styleBuffer);
+                                             segment.renderWidth + 1, lineHeight, color, styleBuffer);
         }
 
-        return this.renderTextSegmentWithColor(x, y, z, segment, color, this.textBuffer);
+        return this.renderTextSegmentWithColor(x, y, z, segment, color, textBuffer);
     }
 
     protected int renderTextSegmentWithColor(float x, float y, float z, StyledTextSegment segment,
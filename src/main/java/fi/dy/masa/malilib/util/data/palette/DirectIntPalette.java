@@ -0,0 +1,106 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+/**
+ * An identity palette, where the stored IDs are the values themselves.
+ * This palette never needs to resize, and thus has no stored mapping either.
+ * All the values must fit into the given number of bits (as unsigned values).
+ */
+public class DirectIntPalette implements IntPalette
+{
+    protected final int bits;
+    protected final int maxSize;
+    protected final long maxValue;
+
+    public DirectIntPalette(int bits)
+    {
+        if (bits < 1 || bits > 32)
+        {
+            throw new IllegalArgumentException("Invalid bits value: " + bits + " (must be 1 - 32)");
+        }
+
+        this.bits = bits;
+        this.maxValue = (1L << bits) - 1L;
+        this.maxSize = (int) Math.min(this.maxValue + 1L, Integer.MAX_VALUE);
+    }
+
+    public int getBits()
+    {
+        return this.bits;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.maxSize;
+    }
+
+    @Override
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    @Override
+    public int idFor(int value)
+    {
+        if (((long) value & 0xFFFFFFFFL) > this.maxValue)
+        {
+            throw new IllegalArgumentException("Value " + value + " doesn't fit in " + this.bits + " bits");
+        }
+
+        return value;
+    }
+
+    @Override
+    public int idsFor(int[] values, int valuesOffset, int[] out, int outOffset, int count)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            out[outOffset + i] = this.idFor(values[valuesOffset + i]);
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getValue(int id)
+    {
+        return id;
+    }
+
+    @Override
+    public void getValues(int[] ids, int idsOffset, int[] out, int outOffset, int count)
+    {
+        System.arraycopy(ids, idsOffset, out, outOffset, count);
+    }
+
+    /**
+     * @return an empty array, as there is no stored mapping
+     */
+    @Override
+    public int[] getMapping()
+    {
+        return new int[0];
+    }
+
+    @Override
+    public boolean setMapping(int[] mapping)
+    {
+        return mapping.length == 0;
+    }
+
+    @Override
+    public boolean overrideMapping(int id, int value)
+    {
+        return false;
+    }
+
+    /**
+     * The direct palette is immutable, so this returns the same instance
+     */
+    @Override
+    public DirectIntPalette copy(IntPaletteResizeHandler resizeHandler)
+    {
+        return this;
+    }
+}
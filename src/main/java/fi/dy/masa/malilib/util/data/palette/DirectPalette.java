@@ -0,0 +1,93 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+import javax.annotation.Nullable;
+
+/**
+ * A palette that maps the values directly to and from some external
+ * global ID mapping (for example the block state registry IDs).
+ * This palette never needs to resize, and thus has no stored mapping either.
+ */
+public class DirectPalette<T> implements Palette<T>
+{
+    protected final ToIntFunction<T> valueToIdFunction;
+    protected final IntFunction<T> idToValueFunction;
+    protected final int bits;
+    protected final int maxSize;
+
+    /**
+     * @param bits the number of bits required to hold all the global IDs
+     * @param valueToIdFunction the function that returns the global ID for a value
+     * @param idToValueFunction the function that returns the value for a global ID, or null if the ID is invalid
+     */
+    public DirectPalette(int bits, ToIntFunction<T> valueToIdFunction, IntFunction<T> idToValueFunction)
+    {
+        this.bits = bits;
+        this.maxSize = 1 << bits;
+        this.valueToIdFunction = valueToIdFunction;
+        this.idToValueFunction = idToValueFunction;
+    }
+
+    public int getBits()
+    {
+        return this.bits;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.maxSize;
+    }
+
+    @Override
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    @Override
+    public int idFor(T value)
+    {
+        return this.valueToIdFunction.applyAsInt(value);
+    }
+
+    @Override
+    @Nullable
+    public T getValue(int id)
+    {
+        return id >= 0 && id < this.maxSize ? this.idToValueFunction.apply(id) : null;
+    }
+
+    /**
+     * @return an empty list, as the mapping is external and not stored in the palette
+     */
+    @Override
+    public List<T> getMapping()
+    {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean setMapping(List<T> list)
+    {
+        return list.isEmpty();
+    }
+
+    @Override
+    public boolean overrideMapping(int id, T value)
+    {
+        return false;
+    }
+
+    /**
+     * The direct palette is immutable, so this returns the same instance
+     */
+    @Override
+    public DirectPalette<T> copy(PaletteResizeHandler<T> resizeHandler)
+    {
+        return this;
+    }
+}
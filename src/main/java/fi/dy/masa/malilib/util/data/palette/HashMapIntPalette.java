@@ -0,0 +1,172 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import java.util.Arrays;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+public class HashMapIntPalette implements IntPalette
+{
+    protected final IntPaletteResizeHandler paletteResizer;
+    protected final Int2IntOpenHashMap valueToIdMap;
+    protected final int[] values;
+    protected final int bits;
+    protected final int maxSize;
+    protected int currentSize;
+
+    public HashMapIntPalette(int bitsIn, IntPaletteResizeHandler paletteResizer)
+    {
+        this.bits = bitsIn;
+        this.maxSize = 1 << bitsIn;
+        this.valueToIdMap = new Int2IntOpenHashMap();
+        this.valueToIdMap.defaultReturnValue(-1);
+        this.values = new int[this.maxSize];
+        this.paletteResizer = paletteResizer;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.currentSize;
+    }
+
+    @Override
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    @Override
+    public int getValue(int id)
+    {
+        return id >= 0 && id < this.currentSize ? this.values[id] : 0;
+    }
+
+    @Override
+    public int idFor(int value)
+    {
+        int id = this.valueToIdMap.get(value);
+
+        if (id == -1)
+        {
+            if (this.currentSize >= this.maxSize)
+            {
+                id = this.paletteResizer.onResize(this.bits + 1, value, this);
+            }
+            else
+            {
+                id = this.addValue(value);
+            }
+        }
+
+        return id;
+    }
+
+    @Override
+    public int idsFor(int[] values, int valuesOffset, int[] out, int outOffset, int count)
+    {
+        Int2IntOpenHashMap map = this.valueToIdMap;
+        int lastValue = 0;
+        int lastId = -1;
+
+        for (int i = 0; i < count; ++i)
+        {
+            int value = values[valuesOffset + i];
+
+            // Fast path for runs of the same value
+            if (value == lastValue && lastId != -1)
+            {
+                out[outOffset + i] = lastId;
+                continue;
+            }
+
+            int id = map.get(value);
+
+            if (id == -1)
+            {
+                if (this.currentSize >= this.maxSize)
+                {
+                    out[outOffset + i] = this.paletteResizer.onResize(this.bits + 1, value, this);
+                    return i + 1;
+                }
+
+                id = this.addValue(value);
+            }
+
+            out[outOffset + i] = id;
+            lastValue = value;
+            lastId = id;
+        }
+
+        return count;
+    }
+
+    protected int addValue(int value)
+    {
+        int id = this.currentSize;
+        this.valueToIdMap.put(value, id);
+        this.values[id] = value;
+        ++this.currentSize;
+        return id;
+    }
+
+    @Override
+    public int[] getMapping()
+    {
+        return Arrays.copyOf(this.values, this.currentSize);
+    }
+
+    @Override
+    public boolean setMapping(int[] mapping)
+    {
+        if (mapping.length > this.maxSize)
+        {
+            throw new IllegalArgumentException("Tried to set a mapping that exceeds the maximum size " +
+                                               "of the palette (mapping size:" + mapping.length +
+                                               ", max size: " + this.maxSize + ")");
+        }
+
+        this.valueToIdMap.clear();
+        Arrays.fill(this.values, 0);
+        final int size = mapping.length;
+
+        for (int id = 0; id < size; ++id)
+        {
+            int val = mapping[id];
+            this.valueToIdMap.put(val, id);
+            this.values[id] = val;
+        }
+
+        this.currentSize = size;
+
+        return true;
+    }
+
+    @Override
+    public boolean overrideMapping(int id, int value)
+    {
+        if (id >= 0 && id < this.currentSize)
+        {
+            this.values[id] = value;
+            this.valueToIdMap.put(value, id);
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public HashMapIntPalette copy(IntPaletteResizeHandler resizeHandler)
+    {
+        HashMapIntPalette copy = new HashMapIntPalette(this.bits, resizeHandler);
+
+        for (int id = 0; id < this.currentSize; ++id)
+        {
+            int value = this.values[id];
+            copy.values[id] = value;
+            copy.valueToIdMap.put(value, id);
+        }
+
+        copy.currentSize = this.currentSize;
+
+        return copy;
+    }
+}
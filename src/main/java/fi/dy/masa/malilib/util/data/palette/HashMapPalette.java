@@ -58,7 +58,9 @@ public class HashMapPalette<T> implements Palette<T>
             }
             else
             {
-                id = this.valueToIdMap.put(value, this.currentSize);
+                id = this.currentSize;
+                this.valueToIdMap.put(value, id);
+                this.values[id] = value;
                 ++this.currentSize;
             }
         }
@@ -100,6 +102,8 @@ public class HashMapPalette<T> implements Palette<T>
             this.values[id++] = val;
         }
 
+        this.currentSize = id;
+
         return true;
     }
 
@@ -128,6 +132,8 @@ public class HashMapPalette<T> implements Palette<T>
             copy.valueToIdMap.put(value, id);
         }
 
+        copy.currentSize = this.currentSize;
+
         return copy;
     }
 }
@@ -0,0 +1,83 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+/**
+ * A primitive int version of {@link Palette}, which avoids boxing the values.
+ */
+public interface IntPalette
+{
+    /**
+     * @return the current number of entries in this palette
+     */
+    int getSize();
+
+    /**
+     * @return the maximum size of the palette
+     */
+    int getMaxSize();
+
+    /**
+     * @return the palette ID for the given value (and add
+     *         the value to the palette if it doesn't exist there yet)
+     */
+    int idFor(int value);
+
+    /**
+     * Gets or adds the palette IDs for count values from the values array,
+     * starting from valuesOffset, and writes them to the out array starting from outOffset.
+     * <b>Note:</b> If the palette gets resized while adding a value, then this palette
+     * is no longer in use, and the remaining values need to be handled by the new palette.
+     * @return the number of values that were handled. This is less than count
+     *         if the palette got resized while adding the last handled value.
+     */
+    int idsFor(int[] values, int valuesOffset, int[] out, int outOffset, int count);
+
+    /**
+     * Gets or adds the palette IDs for all the values in the values array.
+     * See {@link #idsFor(int[], int, int[], int, int)} for the resize behavior.
+     * @return the number of values that were handled
+     */
+    default int idsFor(int[] values, int[] out)
+    {
+        return this.idsFor(values, 0, out, 0, values.length);
+    }
+
+    /**
+     * @return the value corresponding to the given palette ID, or 0 if the ID doesn't exist in the palette
+     */
+    int getValue(int id);
+
+    /**
+     * Writes the values for count IDs from the ids array to the out array
+     */
+    default void getValues(int[] ids, int idsOffset, int[] out, int outOffset, int count)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            out[outOffset + i] = this.getValue(ids[idsOffset + i]);
+        }
+    }
+
+    /**
+     * @return the current full mappings of IDs to values.
+     *         The ID is the position in the returned array.
+     */
+    int[] getMapping();
+
+    /**
+     * Sets the current ID to value mapping of the palette.
+     * This is meant for reading the palette from file.
+     * @return true if the mapping was set successfully, false if it failed
+     */
+    boolean setMapping(int[] mapping);
+
+    /**
+     * Overrides the mapping for the given ID.
+     * @return true if the ID was found in the palette and thus was possible to override
+     */
+    boolean overrideMapping(int id, int value);
+
+    /**
+     * Creates a copy of this palette, using the provided resize handler
+     */
+    IntPalette copy(IntPaletteResizeHandler resizeHandler);
+}
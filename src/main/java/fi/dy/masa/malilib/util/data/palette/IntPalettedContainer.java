@@ -0,0 +1,469 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+
+/**
+ * A primitive int version of {@link PalettedContainer}, for storing things like
+ * packed state IDs or colors without boxing them. The palette type changes from
+ * a {@link LinearIntPalette} to a {@link HashMapIntPalette}, and then to a
+ * {@link DirectIntPalette}, if one was provided.
+ */
+public class IntPalettedContainer implements IntPaletteResizeHandler
+{
+    protected static final int BULK_BUFFER_SIZE = 4096;
+
+    protected final long size;
+    protected final int defaultValue;
+    @Nullable protected final DirectIntPalette directPalette;
+    protected IntPalette palette;
+    protected PackedIntArray storage;
+    protected int bits;
+    @Nullable protected int[] bulkIdBuffer;
+
+    public IntPalettedContainer(long size, int defaultValue)
+    {
+        this(size, defaultValue, null);
+    }
+
+    /**
+     * @param size the number of entries in this container
+     * @param defaultValue the value all the entries initially have
+     * @param directPalette the optional identity palette to switch to once the
+     *                      number of distinct values exceeds the hash palette range
+     */
+    public IntPalettedContainer(long size, int defaultValue, @Nullable DirectIntPalette directPalette)
+    {
+        this(size, defaultValue, directPalette, true);
+    }
+
+    protected IntPalettedContainer(long size, int defaultValue, @Nullable DirectIntPalette directPalette, boolean initStorage)
+    {
+        this.size = size;
+        this.defaultValue = defaultValue;
+        this.directPalette = directPalette;
+
+        if (initStorage)
+        {
+            this.reset(defaultValue);
+        }
+    }
+
+    /**
+     * Creates a container directly from the given palette mapping and packed data,
+     * without first allocating an empty storage for it. This is meant for reading the container from file.
+     * @return the new container, or null if the data was invalid
+     * @see #setData(int, int[], long[])
+     */
+    @Nullable
+    public static IntPalettedContainer fromData(long size, int defaultValue, @Nullable DirectIntPalette directPalette,
+                                                int bits, int[] mapping, long[] data)
+    {
+        IntPalettedContainer container = new IntPalettedContainer(size, defaultValue, directPalette, false);
+        return container.setData(bits, mapping, data) ? container : null;
+    }
+
+    /**
+     * @return the number of entries in this container
+     */
+    public long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the current number of bits used per entry
+     */
+    public int getBits()
+    {
+        return this.bits;
+    }
+
+    public int getDefaultValue()
+    {
+        return this.defaultValue;
+    }
+
+    public IntPalette getPalette()
+    {
+        return this.palette;
+    }
+
+    public PackedIntArray getStorage()
+    {
+        return this.storage;
+    }
+
+    public int get(long index)
+    {
+        return this.palette.getValue(this.storage.getAt(index));
+    }
+
+    public void set(long index, int value)
+    {
+        // Note: the idFor() call may resize the container, so the storage must be fetched after it
+        int id = this.palette.idFor(value);
+        this.storage.setAt(index, id);
+    }
+
+    /**
+     * Sets the value at the given index, and returns the old value
+     */
+    public int getAndSet(long index, int value)
+    {
+        int id = this.palette.idFor(value);
+        PackedIntArray storage = this.storage;
+        int oldValue = this.palette.getValue(storage.getAt(index));
+        storage.setAt(index, id);
+        return oldValue;
+    }
+
+    /**
+     * Reads count consecutive values starting from startIndex into the given array
+     */
+    public void getAll(long startIndex, int[] out, int outOffset, int count)
+    {
+        // Read the IDs first, and then map them to the values in-place
+        this.storage.getAll(startIndex, out, outOffset, count);
+        this.palette.getValues(out, outOffset, out, outOffset, count);
+    }
+
+    /**
+     * Writes count consecutive values starting from startIndex from the given array
+     */
+    public void setAll(long startIndex, int[] values, int valuesOffset, int count)
+    {
+        int[] ids = this.getBulkIdBuffer();
+        int done = 0;
+
+        while (done < count)
+        {
+            int batchSize = Math.min(count - done, ids.length);
+            int handled = 0;
+
+            while (handled < batchSize)
+            {
+                IntPalette oldPalette = this.palette;
+                handled += oldPalette.idsFor(values, valuesOffset + done + handled, ids, handled, batchSize - handled);
+
+                // The palette got resized in the middle of the batch. The last handled ID is already
+                // from the new palette, but the earlier IDs in the batch need to be remapped to it.
+                if (this.palette != oldPalette)
+                {
+                    IntPalette newPalette = this.palette;
+
+                    for (int i = 0; i < handled - 1; ++i)
+                    {
+                        ids[i] = newPalette.idFor(oldPalette.getValue(ids[i]));
+                    }
+                }
+            }
+
+            this.storage.setAll(startIndex + done, ids, 0, batchSize);
+            done += batchSize;
+        }
+    }
+
+    /**
+     * @return the reused scratch buffer for the palette IDs of the bulk writes.
+     * The buffer is allocated on the first use, and then kept for the lifetime of the container.
+     */
+    protected int[] getBulkIdBuffer()
+    {
+        if (this.bulkIdBuffer == null)
+        {
+            this.bulkIdBuffer = new int[BULK_BUFFER_SIZE];
+        }
+
+        return this.bulkIdBuffer;
+    }
+
+    /**
+     * Sets all the entries in the container to the given value.
+     * This also resets the palette and the storage to the smallest size.
+     */
+    public void fill(int value)
+    {
+        this.reset(value);
+    }
+
+    /**
+     * Sets all the entries in the range startIndex (inclusive) to endIndex (exclusive) to the given value
+     */
+    public void fill(long startIndex, long endIndex, int value)
+    {
+        if (startIndex <= 0 && endIndex >= this.size)
+        {
+            this.reset(value);
+            return;
+        }
+
+        int id = this.palette.idFor(value);
+        this.storage.fill(startIndex, endIndex, id);
+    }
+
+    /**
+     * @return the number of entries that have the given value
+     */
+    public long count(int value)
+    {
+        IntPalette palette = this.palette;
+
+        if (palette instanceof DirectIntPalette)
+        {
+            return this.getValueCounts().get(value);
+        }
+
+        final int paletteSize = palette.getSize();
+        long[] idCounts = this.storage.getValueCounts(paletteSize);
+        long count = 0;
+
+        for (int id = 0; id < paletteSize; ++id)
+        {
+            if (idCounts[id] > 0 && palette.getValue(id) == value)
+            {
+                count += idCounts[id];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return a map of all the values currently present in the container, and their counts
+     */
+    public Int2LongOpenHashMap getValueCounts()
+    {
+        IntPalette palette = this.palette;
+        PackedIntArray storage = this.storage;
+        Int2LongOpenHashMap map = new Int2LongOpenHashMap();
+
+        if (palette instanceof DirectIntPalette)
+        {
+            final long size = this.size;
+
+            for (long i = 0; i < size; ++i)
+            {
+                map.addTo(storage.getAt(i), 1L);
+            }
+
+            return map;
+        }
+
+        final int paletteSize = palette.getSize();
+        long[] idCounts = storage.getValueCounts(paletteSize);
+
+        for (int id = 0; id < paletteSize; ++id)
+        {
+            long count = idCounts[id];
+
+            if (count > 0)
+            {
+                map.addTo(palette.getValue(id), count);
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Removes all the unused values from the palette, and rewrites the storage
+     * using the smallest entry width that can hold the remaining values.
+     * The palette never shrinks on its own when values get overwritten,
+     * so this should be called periodically for long-lived containers.
+     * @return true if the container was compacted, false if there was nothing to compact
+     */
+    public boolean compact()
+    {
+        IntPalette oldPalette = this.palette;
+        PackedIntArray oldStorage = this.storage;
+        final long size = this.size;
+
+        if (oldPalette instanceof DirectIntPalette)
+        {
+            // The IDs are the values themselves, so there is no palette to remap through
+            int newBits = PalettedContainer.getRequiredBits(this.getValueCounts().size());
+
+            if (newBits > PalettedContainer.MAX_HASH_BITS)
+            {
+                return false;
+            }
+
+            IntPalette newPalette = this.setBits(newBits);
+            PackedIntArray newStorage = this.storage;
+
+            for (long i = 0; i < size; ++i)
+            {
+                newStorage.setAt(i, newPalette.idFor(oldStorage.getAt(i)));
+            }
+
+            return true;
+        }
+
+        final int oldPaletteSize = oldPalette.getSize();
+        long[] idCounts = oldStorage.getValueCounts(oldPaletteSize);
+        int usedCount = 0;
+
+        for (int id = 0; id < oldPaletteSize; ++id)
+        {
+            if (idCounts[id] > 0)
+            {
+                ++usedCount;
+            }
+        }
+
+        int newBits = PalettedContainer.getRequiredBits(usedCount);
+
+        if (usedCount == oldPaletteSize && newBits >= this.bits)
+        {
+            return false;
+        }
+
+        IntPalette newPalette = this.setBits(newBits);
+        PackedIntArray newStorage = this.storage;
+        int[] remap = new int[oldPaletteSize];
+
+        for (int id = 0; id < oldPaletteSize; ++id)
+        {
+            if (idCounts[id] > 0)
+            {
+                remap[id] = newPalette.idFor(oldPalette.getValue(id));
+            }
+        }
+
+        for (long i = 0; i < size; ++i)
+        {
+            newStorage.setAt(i, remap[oldStorage.getAt(i)]);
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the contents of this container with the given palette mapping and packed data.
+     * This is meant for reading the container from file.
+     * @param bits the number of bits per entry in the packed data
+     * @param mapping the palette ID to value mapping, or an empty array for the direct palette
+     * @param data the packed data array, which will be used directly (and not copied)
+     * @return true if the data was set successfully, false if it failed
+     */
+    public boolean setData(int bits, int[] mapping, long[] data)
+    {
+        IntPalette palette;
+
+        if (mapping.length == 0)
+        {
+            if (this.directPalette == null || this.directPalette.getBits() != bits)
+            {
+                return false;
+            }
+
+            palette = this.directPalette;
+        }
+        else
+        {
+            if (bits <= PalettedContainer.MAX_LINEAR_BITS)
+            {
+                palette = new LinearIntPalette(bits, this);
+            }
+            else
+            {
+                palette = new HashMapIntPalette(bits, this);
+            }
+
+            if (mapping.length > palette.getMaxSize() || palette.setMapping(mapping) == false)
+            {
+                return false;
+            }
+        }
+
+        if (data.length < PackedIntArray.getRequiredArrayLength(bits, this.size))
+        {
+            return false;
+        }
+
+        this.bits = bits;
+        this.palette = palette;
+        this.storage = new PackedIntArray(bits, this.size, data);
+
+        return true;
+    }
+
+    public IntPalettedContainer copy()
+    {
+        IntPalettedContainer copy = new IntPalettedContainer(this.size, this.defaultValue, this.directPalette);
+
+        copy.bits = this.bits;
+        copy.palette = this.palette.copy(copy);
+        copy.storage = this.storage.copy();
+
+        return copy;
+    }
+
+    @Override
+    public int onResize(int newSizeBits, int valueBeingAdded, IntPalette oldPalette)
+    {
+        PackedIntArray oldStorage = this.storage;
+        IntPalette newPalette = this.setBits(newSizeBits);
+        PackedIntArray newStorage = this.storage;
+
+        // Build an old ID => new ID remap table, so that each distinct value only needs to be looked up once
+        int[] remap = oldPalette.getMapping();
+        newPalette.idsFor(remap, remap);
+
+        final long size = this.size;
+
+        for (long i = 0; i < size; ++i)
+        {
+            newStorage.setAt(i, remap[oldStorage.getAt(i)]);
+        }
+
+        return newPalette.idFor(valueBeingAdded);
+    }
+
+    /**
+     * Resets the container to the minimum size, with all entries set to the given value
+     */
+    protected void reset(int value)
+    {
+        this.setBits(PalettedContainer.MIN_BITS);
+        // The fresh storage is all zeroes, so this makes the value the ID 0
+        this.palette.idFor(value);
+    }
+
+    /**
+     * Creates a new palette and a new empty storage for the given entry width
+     * @return the new palette
+     */
+    protected IntPalette setBits(int bits)
+    {
+        IntPalette palette = this.createPalette(bits);
+
+        if (palette instanceof DirectIntPalette)
+        {
+            bits = ((DirectIntPalette) palette).getBits();
+        }
+
+        this.bits = bits;
+        this.palette = palette;
+        this.storage = new PackedIntArray(bits, this.size);
+
+        return palette;
+    }
+
+    protected IntPalette createPalette(int bits)
+    {
+        if (bits <= PalettedContainer.MAX_LINEAR_BITS)
+        {
+            return new LinearIntPalette(bits, this);
+        }
+        else if (bits <= PalettedContainer.MAX_HASH_BITS || this.directPalette == null)
+        {
+            return new HashMapIntPalette(bits, this);
+        }
+        else
+        {
+            return this.directPalette;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import java.util.Arrays;
+
+public class LinearIntPalette implements IntPalette
+{
+    protected final IntPaletteResizeHandler paletteResizer;
+    protected final int[] values;
+    protected final int bits;
+    protected final int maxSize;
+    protected int currentSize;
+
+    public LinearIntPalette(int bitsIn, IntPaletteResizeHandler paletteResizer)
+    {
+        this.bits = bitsIn;
+        this.maxSize = 1 << bitsIn;
+        this.values = new int[this.maxSize];
+        this.paletteResizer = paletteResizer;
+    }
+
+    @Override
+    public int getSize()
+    {
+        return this.currentSize;
+    }
+
+    @Override
+    public int getMaxSize()
+    {
+        return this.maxSize;
+    }
+
+    @Override
+    public int getValue(int id)
+    {
+        return id >= 0 && id < this.currentSize ? this.values[id] : 0;
+    }
+
+    @Override
+    public int idFor(int value)
+    {
+        int id = this.getExistingId(value);
+
+        if (id != -1)
+        {
+            return id;
+        }
+
+        return this.addValue(value);
+    }
+
+    @Override
+    public int idsFor(int[] values, int valuesOffset, int[] out, int outOffset, int count)
+    {
+        int lastValue = 0;
+        int lastId = -1;
+
+        for (int i = 0; i < count; ++i)
+        {
+            int value = values[valuesOffset + i];
+
+            // Fast path for runs of the same value
+            if (value == lastValue && lastId != -1)
+            {
+                out[outOffset + i] = lastId;
+                continue;
+            }
+
+            int id = this.getExistingId(value);
+
+            if (id == -1)
+            {
+                if (this.currentSize >= this.maxSize)
+                {
+                    out[outOffset + i] = this.paletteResizer.onResize(this.bits + 1, value, this);
+                    return i + 1;
+                }
+
+                id = this.addValue(value);
+            }
+
+            out[outOffset + i] = id;
+            lastValue = value;
+            lastId = id;
+        }
+
+        return count;
+    }
+
+    protected int getExistingId(int value)
+    {
+        final int currentSize = this.currentSize;
+        int[] values = this.values;
+
+        for (int i = 0; i < currentSize; ++i)
+        {
+            if (values[i] == value)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    protected int addValue(int value)
+    {
+        final int currentSize = this.currentSize;
+
+        if (currentSize < this.maxSize)
+        {
+            this.values[currentSize] = value;
+            ++this.currentSize;
+            return currentSize;
+        }
+        else
+        {
+            return this.paletteResizer.onResize(this.bits + 1, value, this);
+        }
+    }
+
+    @Override
+    public int[] getMapping()
+    {
+        return Arrays.copyOf(this.values, this.currentSize);
+    }
+
+    @Override
+    public boolean setMapping(int[] mapping)
+    {
+        final int size = mapping.length;
+
+        if (size <= this.values.length)
+        {
+            System.arraycopy(mapping, 0, this.values, 0, size);
+            this.currentSize = size;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean overrideMapping(int id, int value)
+    {
+        if (id >= 0 && id < this.values.length)
+        {
+            this.values[id] = value;
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public LinearIntPalette copy(IntPaletteResizeHandler resizeHandler)
+    {
+        LinearIntPalette copy = new LinearIntPalette(this.bits, resizeHandler);
+
+        System.arraycopy(this.values, 0, copy.values, 0, this.values.length);
+        copy.currentSize = this.currentSize;
+
+        return copy;
+    }
+}
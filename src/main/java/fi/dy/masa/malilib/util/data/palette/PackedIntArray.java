@@ -0,0 +1,178 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import java.util.Arrays;
+import javax.annotation.Nullable;
+import fi.dy.masa.malilib.util.MathUtils;
+
+/**
+ * A fixed size array of unsigned integer values, where each entry uses
+ * the given number of bits, packed into a long array.
+ * Entries are allowed to span two adjacent longs, so no bits are wasted
+ * (apart from the unused tail bits of the last long).
+ */
+public class PackedIntArray
+{
+    protected final long[] longArray;
+    protected final int bitsPerEntry;
+    protected final long maxEntryValue;
+    protected final long size;
+
+    public PackedIntArray(int bitsPerEntry, long size)
+    {
+        this(bitsPerEntry, size, null);
+    }
+
+    public PackedIntArray(int bitsPerEntry, long size, @Nullable long[] longArray)
+    {
+        if (bitsPerEntry < 1 || bitsPerEntry > 32)
+        {
+            throw new IllegalArgumentException("Invalid bits per entry value: " + bitsPerEntry + " (must be 1 - 32)");
+        }
+
+        this.size = size;
+        this.bitsPerEntry = bitsPerEntry;
+        this.maxEntryValue = (1L << bitsPerEntry) - 1L;
+
+        int requiredLength = getRequiredArrayLength(bitsPerEntry, size);
+
+        if (longArray != null)
+        {
+            if (longArray.length < requiredLength)
+            {
+                throw new IllegalArgumentException("Invalid backing array length " + longArray.length +
+                                                   ", expected at least " + requiredLength);
+            }
+
+            this.longArray = longArray;
+        }
+        else
+        {
+            this.longArray = new long[requiredLength];
+        }
+    }
+
+    /**
+     * @return the number of entries in this array
+     */
+    public long size()
+    {
+        return this.size;
+    }
+
+    public int getBitsPerEntry()
+    {
+        return this.bitsPerEntry;
+    }
+
+    /**
+     * @return the backing long array. Note: this is the actual array and not a copy!
+     */
+    public long[] getBackingLongArray()
+    {
+        return this.longArray;
+    }
+
+    public int getAt(long index)
+    {
+        long startOffset = index * (long) this.bitsPerEntry;
+        int startArrIndex = (int) (startOffset >> 6);
+        int endArrIndex = (int) (((index + 1L) * (long) this.bitsPerEntry - 1L) >> 6);
+        int startBitOffset = (int) (startOffset & 0x3F);
+
+        if (startArrIndex == endArrIndex)
+        {
+            return (int) (this.longArray[startArrIndex] >>> startBitOffset & this.maxEntryValue);
+        }
+        else
+        {
+            int endOffset = 64 - startBitOffset;
+            return (int) ((this.longArray[startArrIndex] >>> startBitOffset | this.longArray[endArrIndex] << endOffset) & this.maxEntryValue);
+        }
+    }
+
+    public void setAt(long index, int value)
+    {
+        long startOffset = index * (long) this.bitsPerEntry;
+        int startArrIndex = (int) (startOffset >> 6);
+        int endArrIndex = (int) (((index + 1L) * (long) this.bitsPerEntry - 1L) >> 6);
+        int startBitOffset = (int) (startOffset & 0x3F);
+        long val = (long) value & this.maxEntryValue;
+
+        this.longArray[startArrIndex] = this.longArray[startArrIndex] & ~(this.maxEntryValue << startBitOffset) | val << startBitOffset;
+
+        if (startArrIndex != endArrIndex)
+        {
+            int endOffset = 64 - startBitOffset;
+            int j1 = this.bitsPerEntry - endOffset;
+            this.longArray[endArrIndex] = this.longArray[endArrIndex] >>> j1 << j1 | val >> endOffset;
+        }
+    }
+
+    /**
+     * Sets all entries in the range startIndex (inclusive) to endIndex (exclusive) to the given value
+     */
+    public void fill(long startIndex, long endIndex, int value)
+    {
+        if (value == 0 && startIndex == 0 && endIndex == this.size)
+        {
+            Arrays.fill(this.longArray, 0L);
+            return;
+        }
+
+        for (long i = startIndex; i < endIndex; ++i)
+        {
+            this.setAt(i, value);
+        }
+    }
+
+    /**
+     * Reads count consecutive entries starting from startIndex into the given array
+     */
+    public void getAll(long startIndex, int[] out, int outOffset, int count)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            out[outOffset + i] = this.getAt(startIndex + i);
+        }
+    }
+
+    /**
+     * Writes count consecutive entries starting from startIndex from the given array
+     */
+    public void setAll(long startIndex, int[] values, int valuesOffset, int count)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            this.setAt(startIndex + i, values[valuesOffset + i]);
+        }
+    }
+
+    /**
+     * @param valueRange the number of distinct values that may appear in this array,
+     *                   ie. all stored values must be less than this
+     * @return the number of occurrences of each value in this array,
+     *         where the value is the index in the returned array
+     */
+    public long[] getValueCounts(int valueRange)
+    {
+        long[] counts = new long[valueRange];
+        final long size = this.size;
+
+        for (long i = 0; i < size; ++i)
+        {
+            ++counts[this.getAt(i)];
+        }
+
+        return counts;
+    }
+
+    public PackedIntArray copy()
+    {
+        return new PackedIntArray(this.bitsPerEntry, this.size, this.longArray.clone());
+    }
+
+    public static int getRequiredArrayLength(int bitsPerEntry, long size)
+    {
+        return (int) (MathUtils.roundUp(size * (long) bitsPerEntry, 64L) / 64L);
+    }
+}
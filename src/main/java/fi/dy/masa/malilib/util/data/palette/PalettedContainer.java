@@ -0,0 +1,421 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+
+/**
+ * A container that stores values in a bit-packed long array, using a palette
+ * to map the values to small integer IDs. The palette type and the number of bits
+ * per entry get changed automatically as more distinct values are added.
+ * Small palettes use a {@link LinearPalette}, larger ones a {@link HashMapPalette},
+ * and if a {@link DirectPalette} was provided, it will be used once the palette
+ * would grow past {@link #MAX_HASH_BITS} bits per entry.
+ */
+public class PalettedContainer<T> implements PaletteResizeHandler<T>
+{
+    public static final int MIN_BITS = 2;
+    public static final int MAX_LINEAR_BITS = 4;
+    public static final int MAX_HASH_BITS = 8;
+
+    protected final long size;
+    protected final T defaultValue;
+    @Nullable protected final DirectPalette<T> directPalette;
+    protected Palette<T> palette;
+    protected PackedIntArray storage;
+    protected int bits;
+
+    public PalettedContainer(long size, T defaultValue)
+    {
+        this(size, defaultValue, null);
+    }
+
+    /**
+     * @param size the number of entries in this container
+     * @param defaultValue the value all the entries initially have
+     * @param directPalette the optional global ID palette to switch to once the
+     *                      number of distinct values exceeds the hash palette range
+     */
+    public PalettedContainer(long size, T defaultValue, @Nullable DirectPalette<T> directPalette)
+    {
+        this(size, defaultValue, directPalette, true);
+    }
+
+    protected PalettedContainer(long size, T defaultValue, @Nullable DirectPalette<T> directPalette, boolean initStorage)
+    {
+        this.size = size;
+        this.defaultValue = defaultValue;
+        this.directPalette = directPalette;
+
+        if (initStorage)
+        {
+            this.reset(defaultValue);
+        }
+    }
+
+    /**
+     * Creates a container directly from the given palette mapping and packed data,
+     * without first allocating an empty storage for it. This is meant for reading the container from file.
+     * @return the new container, or null if the data was invalid
+     * @see #setData(int, List, long[])
+     */
+    @Nullable
+    public static <T> PalettedContainer<T> fromData(long size, T defaultValue, @Nullable DirectPalette<T> directPalette,
+                                                    int bits, List<T> mapping, long[] data)
+    {
+        PalettedContainer<T> container = new PalettedContainer<>(size, defaultValue, directPalette, false);
+        return container.setData(bits, mapping, data) ? container : null;
+    }
+
+    /**
+     * @return the number of entries in this container
+     */
+    public long getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * @return the current number of bits used per entry
+     */
+    public int getBits()
+    {
+        return this.bits;
+    }
+
+    public T getDefaultValue()
+    {
+        return this.defaultValue;
+    }
+
+    public Palette<T> getPalette()
+    {
+        return this.palette;
+    }
+
+    public PackedIntArray getStorage()
+    {
+        return this.storage;
+    }
+
+    /**
+     * @return the approximate amount of memory used by the packed storage, in bytes
+     */
+    public long getStorageSizeBytes()
+    {
+        return (long) this.storage.getBackingLongArray().length * 8L;
+    }
+
+    @Nullable
+    public T get(long index)
+    {
+        return this.palette.getValue(this.storage.getAt(index));
+    }
+
+    public void set(long index, T value)
+    {
+        // Note: the idFor() call may resize the container, so the storage must be fetched after it
+        int id = this.palette.idFor(value);
+        this.storage.setAt(index, id);
+    }
+
+    /**
+     * Sets the value at the given index, and returns the old value
+     */
+    @Nullable
+    public T getAndSet(long index, T value)
+    {
+        int id = this.palette.idFor(value);
+        PackedIntArray storage = this.storage;
+        T oldValue = this.palette.getValue(storage.getAt(index));
+        storage.setAt(index, id);
+        return oldValue;
+    }
+
+    /**
+     * Reads count consecutive values starting from startIndex into the given array
+     */
+    public void getAll(long startIndex, T[] out, int outOffset, int count)
+    {
+        Palette<T> palette = this.palette;
+        PackedIntArray storage = this.storage;
+
+        for (int i = 0; i < count; ++i)
+        {
+            out[outOffset + i] = palette.getValue(storage.getAt(startIndex + i));
+        }
+    }
+
+    /**
+     * Writes count consecutive values starting from startIndex from the given array
+     */
+    public void setAll(long startIndex, T[] values, int valuesOffset, int count)
+    {
+        for (int i = 0; i < count; ++i)
+        {
+            this.set(startIndex + i, values[valuesOffset + i]);
+        }
+    }
+
+    /**
+     * Sets all the entries in the container to the given value.
+     * This also resets the palette and the storage to the smallest size.
+     */
+    public void fill(T value)
+    {
+        this.reset(value);
+    }
+
+    /**
+     * Sets all the entries in the range startIndex (inclusive) to endIndex (exclusive) to the given value
+     */
+    public void fill(long startIndex, long endIndex, T value)
+    {
+        if (startIndex <= 0 && endIndex >= this.size)
+        {
+            this.reset(value);
+            return;
+        }
+
+        int id = this.palette.idFor(value);
+        this.storage.fill(startIndex, endIndex, id);
+    }
+
+    /**
+     * @return the number of entries that have the given value
+     */
+    public long count(T value)
+    {
+        Palette<T> palette = this.palette;
+        long[] idCounts = this.storage.getValueCounts(palette.getSize());
+        final int paletteSize = palette.getSize();
+        long count = 0;
+
+        for (int id = 0; id < paletteSize; ++id)
+        {
+            if (idCounts[id] > 0 && palette.getValue(id) == value)
+            {
+                count += idCounts[id];
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return a map of all the values currently present in the container, and their counts
+     */
+    public Object2LongOpenHashMap<T> getValueCounts()
+    {
+        Palette<T> palette = this.palette;
+        final int paletteSize = palette.getSize();
+        long[] idCounts = this.storage.getValueCounts(paletteSize);
+        Object2LongOpenHashMap<T> map = new Object2LongOpenHashMap<>();
+
+        for (int id = 0; id < paletteSize; ++id)
+        {
+            long count = idCounts[id];
+
+            if (count > 0)
+            {
+                T value = palette.getValue(id);
+
+                if (value != null)
+                {
+                    map.addTo(value, count);
+                }
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Removes all the unused values from the palette, and rewrites the storage
+     * using the smallest entry width that can hold the remaining values.
+     * The palette never shrinks on its own when values get overwritten,
+     * so this should be called periodically for long-lived containers.
+     * @return true if the container was compacted, false if there was nothing to compact
+     */
+    public boolean compact()
+    {
+        Palette<T> oldPalette = this.palette;
+        PackedIntArray oldStorage = this.storage;
+        final int oldPaletteSize = oldPalette.getSize();
+        long[] idCounts = oldStorage.getValueCounts(oldPaletteSize);
+        int usedCount = 0;
+
+        for (int id = 0; id < oldPaletteSize; ++id)
+        {
+            if (idCounts[id] > 0)
+            {
+                ++usedCount;
+            }
+        }
+
+        int newBits = getRequiredBits(usedCount);
+
+        if ((usedCount == oldPaletteSize && newBits >= this.bits) ||
+            (oldPalette == this.directPalette && newBits > MAX_HASH_BITS))
+        {
+            return false;
+        }
+
+        Palette<T> newPalette = this.setBits(newBits);
+        PackedIntArray newStorage = this.storage;
+        int[] remap = new int[oldPaletteSize];
+
+        for (int id = 0; id < oldPaletteSize; ++id)
+        {
+            if (idCounts[id] > 0)
+            {
+                T value = oldPalette.getValue(id);
+                remap[id] = value != null ? newPalette.idFor(value) : 0;
+            }
+        }
+
+        final long size = this.size;
+
+        for (long i = 0; i < size; ++i)
+        {
+            newStorage.setAt(i, remap[oldStorage.getAt(i)]);
+        }
+
+        return true;
+    }
+
+    /**
+     * Replaces the contents of this container with the given palette mapping and packed data.
+     * This is meant for reading the container from file.
+     * @param bits the number of bits per entry in the packed data
+     * @param mapping the palette ID to value mapping, or an empty list for the direct palette
+     * @param data the packed data array, which will be used directly (and not copied)
+     * @return true if the data was set successfully, false if it failed
+     */
+    public boolean setData(int bits, List<T> mapping, long[] data)
+    {
+        Palette<T> palette;
+
+        if (mapping.isEmpty())
+        {
+            if (this.directPalette == null || this.directPalette.getBits() != bits)
+            {
+                return false;
+            }
+
+            palette = this.directPalette;
+        }
+        else
+        {
+            palette = bits <= MAX_LINEAR_BITS ? new LinearPalette<>(bits, this) : new HashMapPalette<>(bits, this);
+
+            if (mapping.size() > palette.getMaxSize() || palette.setMapping(mapping) == false)
+            {
+                return false;
+            }
+        }
+
+        if (data.length < PackedIntArray.getRequiredArrayLength(bits, this.size))
+        {
+            return false;
+        }
+
+        this.bits = bits;
+        this.palette = palette;
+        this.storage = new PackedIntArray(bits, this.size, data);
+
+        return true;
+    }
+
+    public PalettedContainer<T> copy()
+    {
+        PalettedContainer<T> copy = new PalettedContainer<>(this.size, this.defaultValue, this.directPalette);
+
+        copy.bits = this.bits;
+        copy.palette = this.palette.copy(copy);
+        copy.storage = this.storage.copy();
+
+        return copy;
+    }
+
+    @Override
+    public int onResize(int newSizeBits, T valueBeingAdded, Palette<T> oldPalette)
+    {
+        PackedIntArray oldStorage = this.storage;
+        Palette<T> newPalette = this.setBits(newSizeBits);
+        PackedIntArray newStorage = this.storage;
+
+        // Build an old ID => new ID remap table, so that each distinct value only needs to be looked up once
+        final int oldPaletteSize = oldPalette.getSize();
+        int[] remap = new int[oldPaletteSize];
+
+        for (int id = 0; id < oldPaletteSize; ++id)
+        {
+            T value = oldPalette.getValue(id);
+            remap[id] = value != null ? newPalette.idFor(value) : 0;
+        }
+
+        final long size = this.size;
+
+        for (long i = 0; i < size; ++i)
+        {
+            newStorage.setAt(i, remap[oldStorage.getAt(i)]);
+        }
+
+        return newPalette.idFor(valueBeingAdded);
+    }
+
+    /**
+     * @return the number of bits per entry required to hold the given number of distinct values
+     */
+    public static int getRequiredBits(int valueCount)
+    {
+        return Math.max(MIN_BITS, 32 - Integer.numberOfLeadingZeros(Math.max(valueCount - 1, 0)));
+    }
+
+    /**
+     * Resets the container to the minimum size, with all entries set to the given value
+     */
+    protected void reset(T value)
+    {
+        this.setBits(MIN_BITS);
+        // The fresh storage is all zeroes, so this makes the value the ID 0
+        this.palette.idFor(value);
+    }
+
+    /**
+     * Creates a new palette and a new empty storage for the given entry width
+     * @return the new palette
+     */
+    protected Palette<T> setBits(int bits)
+    {
+        Palette<T> palette = this.createPalette(bits);
+
+        if (palette instanceof DirectPalette)
+        {
+            bits = ((DirectPalette<T>) palette).getBits();
+        }
+
+        this.bits = bits;
+        this.palette = palette;
+        this.storage = new PackedIntArray(bits, this.size);
+
+        return palette;
+    }
+
+    protected Palette<T> createPalette(int bits)
+    {
+        if (bits <= MAX_LINEAR_BITS)
+        {
+            return new LinearPalette<>(bits, this);
+        }
+        else if (bits <= MAX_HASH_BITS || this.directPalette == null)
+        {
+            return new HashMapPalette<>(bits, this);
+        }
+        else
+        {
+            return this.directPalette;
+        }
+    }
+}
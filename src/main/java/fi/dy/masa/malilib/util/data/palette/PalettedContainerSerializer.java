@@ -0,0 +1,355 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import fi.dy.masa.malilib.MaLiLib;
+
+/**
+ * A compact binary format for paletted containers.
+ * The format is:
+ * <ul>
+ * <li>VarInt: format version</li>
+ * <li>byte: bits per entry</li>
+ * <li>VarLong: number of entries in the container</li>
+ * <li>VarInt: palette mapping size, 0 for the direct palette</li>
+ * <li>the palette values (VarInts for the int palettes, or written by the value writer)</li>
+ * <li>VarInt: packed data long array length</li>
+ * <li>the packed data longs (big endian)</li>
+ * </ul>
+ * The file reading methods memory-map the file, and the packed data
+ * gets bulk-copied from the mapped buffer, instead of being read one entry at a time.
+ */
+public class PalettedContainerSerializer
+{
+    public static final int FORMAT_VERSION = 1;
+
+    public static <T> void write(PalettedContainer<T> container,
+                                 BiConsumer<T, PacketBuffer> valueWriter,
+                                 PacketBuffer buf)
+    {
+        List<T> mapping = container.getPalette().getMapping();
+
+        writeHeader(container.getBits(), container.getSize(), mapping.size(), buf);
+
+        for (T value : mapping)
+        {
+            valueWriter.accept(value, buf);
+        }
+
+        writeLongArray(container.getStorage().getBackingLongArray(), buf);
+    }
+
+    public static void write(IntPalettedContainer container, PacketBuffer buf)
+    {
+        int[] mapping = container.getPalette().getMapping();
+
+        writeHeader(container.getBits(), container.getSize(), mapping.length, buf);
+
+        for (int value : mapping)
+        {
+            buf.writeVarInt(value);
+        }
+
+        writeLongArray(container.getStorage().getBackingLongArray(), buf);
+    }
+
+    /**
+     * Reads a container from the buffer.
+     * @param valueReader the function to read one palette value from the buffer
+     * @param defaultValue the default value for the new container
+     * @param directPalette the direct palette for the new container, if any.
+     *                      This is required if the container was saved with a direct palette.
+     * @return the read container, or null if the data was invalid
+     */
+    @Nullable
+    public static <T> PalettedContainer<T> read(PacketBuffer buf,
+                                                Function<PacketBuffer, T> valueReader,
+                                                T defaultValue,
+                                                @Nullable DirectPalette<T> directPalette)
+    {
+        try
+        {
+            int version = buf.readVarInt();
+
+            if (version != FORMAT_VERSION)
+            {
+                MaLiLib.LOGGER.warn("Unsupported paletted container format version {}", version);
+                return null;
+            }
+
+            int bits = buf.readByte();
+            long size = buf.readVarLong();
+            int mappingSize = buf.readVarInt();
+
+            if (isValidHeader(bits, size, mappingSize, buf) == false)
+            {
+                return null;
+            }
+
+            List<T> mapping = new ArrayList<>(mappingSize);
+
+            for (int i = 0; i < mappingSize; ++i)
+            {
+                mapping.add(valueReader.apply(buf));
+            }
+
+            return PalettedContainer.fromData(size, defaultValue, directPalette, bits, mapping, readLongArray(buf));
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("Failed to read a paletted container", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads an int container from the buffer.
+     * @param defaultValue the default value for the new container
+     * @param directPalette the direct palette for the new container, if any.
+     *                      This is required if the container was saved with a direct palette.
+     * @return the read container, or null if the data was invalid
+     */
+    @Nullable
+    public static IntPalettedContainer read(PacketBuffer buf,
+                                            int defaultValue,
+                                            @Nullable DirectIntPalette directPalette)
+    {
+        try
+        {
+            int version = buf.readVarInt();
+
+            if (version != FORMAT_VERSION)
+            {
+                MaLiLib.LOGGER.warn("Unsupported paletted container format version {}", version);
+                return null;
+            }
+
+            int bits = buf.readByte();
+            long size = buf.readVarLong();
+            int mappingSize = buf.readVarInt();
+
+            if (isValidHeader(bits, size, mappingSize, buf) == false)
+            {
+                return null;
+            }
+
+            int[] mapping = new int[mappingSize];
+
+            for (int i = 0; i < mappingSize; ++i)
+            {
+                mapping[i] = buf.readVarInt();
+            }
+
+            return IntPalettedContainer.fromData(size, defaultValue, directPalette, bits, mapping, readLongArray(buf));
+        }
+        catch (Exception e)
+        {
+            MaLiLib.LOGGER.warn("Failed to read an int paletted container", e);
+        }
+
+        return null;
+    }
+
+    public static <T> boolean writeToFile(PalettedContainer<T> container,
+                                          BiConsumer<T, PacketBuffer> valueWriter,
+                                          Path file)
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer(getEstimatedSize(container.getStorage())));
+        write(container, valueWriter, buf);
+        return writeBufferToFile(buf, file);
+    }
+
+    public static boolean writeToFile(IntPalettedContainer container, Path file)
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer(getEstimatedSize(container.getStorage())));
+        write(container, buf);
+        return writeBufferToFile(buf, file);
+    }
+
+    @Nullable
+    public static <T> PalettedContainer<T> readFromFile(Path file,
+                                                        Function<PacketBuffer, T> valueReader,
+                                                        T defaultValue,
+                                                        @Nullable DirectPalette<T> directPalette)
+    {
+        PacketBuffer buf = mapFile(file);
+        return buf != null ? read(buf, valueReader, defaultValue, directPalette) : null;
+    }
+
+    @Nullable
+    public static IntPalettedContainer readFromFile(Path file,
+                                                    int defaultValue,
+                                                    @Nullable DirectIntPalette directPalette)
+    {
+        PacketBuffer buf = mapFile(file);
+        return buf != null ? read(buf, defaultValue, directPalette) : null;
+    }
+
+    protected static void writeHeader(int bits, long size, int mappingSize, PacketBuffer buf)
+    {
+        buf.writeVarInt(FORMAT_VERSION);
+        buf.writeByte(bits);
+        buf.writeVarLong(size);
+        buf.writeVarInt(mappingSize);
+    }
+
+    /**
+     * Validates the header values before anything gets allocated based on them,
+     * so that corrupt data can't cause huge allocations or negative array sizes.
+     * Each palette value takes at least one byte, so the mapping size is also limited
+     * by the number of remaining bytes, and the packed data for the given size
+     * must also fit in the remaining bytes.
+     */
+    protected static boolean isValidHeader(int bits, long size, int mappingSize, PacketBuffer buf)
+    {
+        if (bits < 1 || bits > 32)
+        {
+            MaLiLib.LOGGER.warn("Invalid paletted container entry width: {} bits", bits);
+            return false;
+        }
+
+        // Check the upper bound first, so that the required length calculation can't overflow
+        if (size < 0 || size > (long) buf.readableBytes() * 64L / bits ||
+            PackedIntArray.getRequiredArrayLength(bits, size) * 8L > buf.readableBytes())
+        {
+            MaLiLib.LOGGER.warn("Invalid paletted container size: {}", size);
+            return false;
+        }
+
+        if (mappingSize < 0 || mappingSize > (1L << bits) || mappingSize > buf.readableBytes())
+        {
+            MaLiLib.LOGGER.warn("Invalid paletted container palette size {} for {} bits", mappingSize, bits);
+            return false;
+        }
+
+        return true;
+    }
+
+    protected static void writeLongArray(long[] arr, PacketBuffer buf)
+    {
+        final int length = arr.length;
+
+        buf.writeVarInt(length);
+        buf.ensureWritable(length * 8);
+
+        // Write directly via a LongBuffer view if possible, instead of one long at a time
+        if (buf.nioBufferCount() == 1)
+        {
+            int writerIndex = buf.writerIndex();
+            ByteBuffer nioBuf = buf.nioBuffer(writerIndex, length * 8);
+            nioBuf.asLongBuffer().put(arr);
+            buf.writerIndex(writerIndex + length * 8);
+        }
+        else
+        {
+            for (long val : arr)
+            {
+                buf.writeLong(val);
+            }
+        }
+    }
+
+    protected static long[] readLongArray(PacketBuffer buf)
+    {
+        int length = buf.readVarInt();
+
+        if (length < 0 || length * 8L > buf.readableBytes())
+        {
+            throw new IllegalArgumentException("Invalid packed data array length: " + length);
+        }
+
+        long[] arr = new long[length];
+        int readerIndex = buf.readerIndex();
+
+        // Bulk copy via a LongBuffer view, which for a memory mapped file is a plain memory copy
+        if (buf.nioBufferCount() == 1)
+        {
+            LongBuffer longBuf = buf.nioBuffer(readerIndex, length * 8).asLongBuffer();
+            longBuf.get(arr);
+            buf.readerIndex(readerIndex + length * 8);
+        }
+        else
+        {
+            for (int i = 0; i < length; ++i)
+            {
+                arr[i] = buf.readLong();
+            }
+        }
+
+        return arr;
+    }
+
+    protected static int getEstimatedSize(PackedIntArray storage)
+    {
+        return 64 + storage.getBackingLongArray().length * 8;
+    }
+
+    protected static boolean writeBufferToFile(ByteBuf buf, Path file)
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            ByteBuffer nioBuf = buf.nioBuffer();
+
+            while (nioBuf.hasRemaining())
+            {
+                channel.write(nioBuf);
+            }
+
+            return true;
+        }
+        catch (IOException e)
+        {
+            MaLiLib.LOGGER.warn("Failed to write paletted container to file '{}'", file.toAbsolutePath(), e);
+        }
+        finally
+        {
+            buf.release();
+        }
+
+        return false;
+    }
+
+    /**
+     * Memory-maps the given file for reading.
+     * Note: The mapping stays valid until the returned buffer is garbage collected,
+     * even though the channel is closed here.
+     */
+    @Nullable
+    protected static PacketBuffer mapFile(Path file)
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            // A single mapping (and a ByteBuf) can only be up to 2 GB
+            if (channel.size() > Integer.MAX_VALUE)
+            {
+                MaLiLib.LOGGER.warn("Paletted container file '{}' is too large ({} bytes)", file.toAbsolutePath(), channel.size());
+                return null;
+            }
+
+            MappedByteBuffer mappedBuf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PacketBuffer(Unpooled.wrappedBuffer(mappedBuf));
+        }
+        catch (IOException e)
+        {
+            MaLiLib.LOGGER.warn("Failed to read paletted container from file '{}'", file.toAbsolutePath(), e);
+        }
+
+        return null;
+    }
+}
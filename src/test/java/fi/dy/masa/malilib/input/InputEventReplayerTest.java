@@ -0,0 +1,129 @@
+package fi.dy.masa.malilib.input;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InputEventReplayerTest
+{
+    private HotkeyManagerImpl manager;
+    private InputReplayBenchmark.SyntheticHotkeys hotkeys;
+
+    @Before
+    public void setUp()
+    {
+        this.manager = new HotkeyManagerImpl();
+        this.hotkeys = new InputReplayBenchmark.SyntheticHotkeys();
+    }
+
+    @Test
+    public void testRoundsAreIndependent()
+    {
+        KeyBindImpl keyBind = this.hotkeys.add("toggle", IntArrayList.wrap(new int[] { Keys.KEY_LEFT_CONTROL }),
+                                               KeyBindSettings.builder().context(Context.ANY).toggle().showToast(false).build());
+        this.manager.registerHotkeyProvider(this.hotkeys);
+
+        // The key is left held down at the end, so without resetting the keybind states
+        // the first press of the next round would not trigger the keybind
+        List<RecordedInputEvent> events = new ArrayList<>();
+        events.add(RecordedInputEvent.keyboardEvent(0, Keys.KEY_LEFT_CONTROL, true, (char) 0, false));
+        events.add(RecordedInputEvent.keyboardEvent(1, Keys.KEY_LEFT_CONTROL, false, (char) 0, false));
+        events.add(RecordedInputEvent.keyboardEvent(2, Keys.KEY_LEFT_CONTROL, true, (char) 0, false));
+
+        InputEventReplayer.Result result = InputEventReplayer.replay(this.manager, events, 2, 5);
+
+        assertEquals(15, result.getEventCount());
+        assertEquals(7 * 2, this.hotkeys.getCallbackCount());
+        assertEquals(5 * 2, result.getCancelCount());
+
+        // The states are cleared after the replay
+        assertFalse(keyBind.isPhysicallyHeld());
+        assertFalse(keyBind.isKeyBindHeld());
+        assertEquals(0, KeyBindImpl.getCurrentlyPressedKeysCount());
+    }
+
+    @Test
+    public void testContextComesFromTheRecordedEvents()
+    {
+        int[] keys = new int[] { Keys.KEY_LEFT_SHIFT, Keys.KEY_G };
+        this.hotkeys.add("gui", IntArrayList.wrap(keys), KeyBindSettings.builder().context(Context.GUI).showToast(false).build());
+        this.manager.registerHotkeyProvider(this.hotkeys);
+
+        List<RecordedInputEvent> inGame = createKeyPresses(keys, false);
+        List<RecordedInputEvent> inGui = createKeyPresses(keys, true);
+
+        InputSource contextSource = KeyBindImpl.getContextSource();
+
+        assertEquals(0, InputEventReplayer.replay(this.manager, inGame, 0, 1).getCancelCount());
+        assertEquals(0, this.hotkeys.getCallbackCount());
+
+        assertEquals(1, InputEventReplayer.replay(this.manager, inGui, 0, 1).getCancelCount());
+        assertEquals(1, this.hotkeys.getCallbackCount());
+
+        // The normal context source is restored after the replay
+        assertSame(contextSource, KeyBindImpl.getContextSource());
+    }
+
+    @Test
+    public void testKeysChangedAfterUpdatingTheUsedKeys()
+    {
+        KeyBindImpl keyBind = this.hotkeys.add("edited", IntArrayList.wrap(new int[] { Keys.KEY_LEFT_SHIFT, Keys.KEY_G }),
+                                               KeyBindSettings.builder().context(Context.ANY).showToast(false).build());
+        this.manager.registerHotkeyProvider(this.hotkeys);
+
+        // The config screens only update the used keys when the screen is closed,
+        // so the keybind has to work with its current keys before that
+        keyBind.setKeys(IntArrayList.wrap(new int[] { Keys.KEY_G }));
+
+        assertEquals(1, InputEventReplayer.replay(this.manager, createKeyPresses(new int[] { Keys.KEY_G }, false), 0, 1).getCancelCount());
+        assertEquals(1, this.hotkeys.getCallbackCount());
+
+        assertEquals(0, InputEventReplayer.replay(this.manager, createKeyPresses(new int[] { Keys.KEY_LEFT_SHIFT, Keys.KEY_G }, false), 0, 1).getCancelCount());
+        assertEquals(1, this.hotkeys.getCallbackCount());
+    }
+
+    @Test
+    public void testSyntheticLargeHotkeySet()
+    {
+        InputReplayBenchmark.SyntheticHotkeys hotkeys = InputReplayBenchmark.createHotkeys(2000, 1L);
+        this.manager.registerHotkeyProvider(hotkeys);
+
+        List<RecordedInputEvent> events = InputReplayBenchmark.createEvents(500, 2L);
+
+        InputEventReplayer.Result single = InputEventReplayer.replay(this.manager, events, 0, 1);
+        int callbacksPerRound = hotkeys.getCallbackCount();
+        hotkeys.resetCallbackCount();
+
+        InputEventReplayer.Result multiple = InputEventReplayer.replay(this.manager, events, 1, 3);
+
+        assertTrue(callbacksPerRound > 0);
+        assertEquals(events.size() * 3, multiple.getEventCount());
+        assertEquals(single.getCancelCount() * 3, multiple.getCancelCount());
+        assertEquals(callbacksPerRound * 4, hotkeys.getCallbackCount());
+    }
+
+    private static List<RecordedInputEvent> createKeyPresses(int[] keys, boolean screenOpen)
+    {
+        List<RecordedInputEvent> events = new ArrayList<>();
+        long time = 0;
+
+        for (int key : keys)
+        {
+            events.add(RecordedInputEvent.keyboardEvent(time++, key, true, (char) 0, screenOpen));
+        }
+
+        for (int i = keys.length - 1; i >= 0; --i)
+        {
+            events.add(RecordedInputEvent.keyboardEvent(time++, keys[i], false, (char) 0, screenOpen));
+        }
+
+        return events;
+    }
+}
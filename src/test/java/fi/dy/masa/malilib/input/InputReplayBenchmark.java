@@ -0,0 +1,250 @@
+package fi.dy.masa.malilib.input;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+/**
+ * A JMH benchmark of the keybind handling input path, using a synthetic large hotkey set
+ * and a synthetic event stream, replayed one event at a time via
+ * {@link InputEventReplayer#replayEvent(HotkeyManagerImpl, ReplayInputSource, RecordedInputEvent)}.
+ * Run it via the <code>jmh</code> Gradle task, with the GC profiler for the allocation rate:
+ * <code>gradlew jmh -PjmhArgs="InputReplayBenchmark -prof gc"</code>
+ * <br><br>
+ * The keybind state is global, so the benchmark must only be run with one thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputReplayBenchmark
+{
+    /** The keys used for the synthetic hotkeys, excluding F3 which has special handling */
+    private static final int[] MODIFIERS = new int[] { Keys.KEY_LEFT_CONTROL, Keys.KEY_LEFT_SHIFT, Keys.KEY_LEFT_ALT };
+    private static final int[] KEYS = new int[] {
+            Keys.KEY_A, Keys.KEY_B, Keys.KEY_C, Keys.KEY_D, Keys.KEY_E, Keys.KEY_F, Keys.KEY_G, Keys.KEY_H,
+            Keys.KEY_I, Keys.KEY_J, Keys.KEY_K, Keys.KEY_L, Keys.KEY_M, Keys.KEY_N, Keys.KEY_O, Keys.KEY_P,
+            Keys.KEY_Q, Keys.KEY_R, Keys.KEY_S, Keys.KEY_T, Keys.KEY_U, Keys.KEY_V, Keys.KEY_W, Keys.KEY_X,
+            Keys.KEY_Y, Keys.KEY_Z, Keys.KEY_1, Keys.KEY_2, Keys.KEY_3, Keys.KEY_4, Keys.KEY_5, Keys.KEY_6
+    };
+
+    @Param({ "100", "1000", "5000" })
+    public int hotkeyCount;
+
+    @Param({ "5000" })
+    public int eventSequenceCount;
+
+    private HotkeyManagerImpl manager;
+    private ReplayInputSource source;
+    private InputSource previousContextSource;
+    private List<RecordedInputEvent> events;
+    private int eventIndex;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        this.manager = new HotkeyManagerImpl();
+        this.manager.registerHotkeyProvider(createHotkeys(this.hotkeyCount, 0x1234L));
+        this.events = createEvents(this.eventSequenceCount, 0x5678L);
+        this.source = new ReplayInputSource();
+        this.previousContextSource = KeyBindImpl.getContextSource();
+        this.eventIndex = 0;
+
+        KeyBindImpl.setContextSource(this.source);
+        InputEventReplayer.resetState(this.manager);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        InputEventReplayer.resetState(this.manager);
+        this.source.setEvent(null);
+        KeyBindImpl.setContextSource(this.previousContextSource);
+    }
+
+    /**
+     * Replays the next event of the event stream. After the last event the stream
+     * starts over from a clean state, so that each pass triggers the same keybinds.
+     */
+    @Benchmark
+    public boolean replayEvent()
+    {
+        if (this.eventIndex >= this.events.size())
+        {
+            InputEventReplayer.resetState(this.manager);
+            this.eventIndex = 0;
+        }
+
+        return InputEventReplayer.replayEvent(this.manager, this.source, this.events.get(this.eventIndex++));
+    }
+
+    /**
+     * Creates hotkeys with one or two modifiers and one main key, in all the contexts,
+     * with some of them being toggles or exclusive.
+     * There are only a few hundred distinct key combinations, so with large counts there will be
+     * lots of overlapping keybinds, like in a real setup with lots of mods.
+     */
+    public static SyntheticHotkeys createHotkeys(int count, long seed)
+    {
+        Random rand = new Random(seed);
+        SyntheticHotkeys hotkeys = new SyntheticHotkeys();
+        List<Context> contexts = Context.VALUES;
+
+        for (int i = 0; i < count; ++i)
+        {
+            IntArrayList keys = new IntArrayList();
+            keys.add(MODIFIERS[rand.nextInt(MODIFIERS.length)]);
+
+            if (rand.nextInt(4) == 0)
+            {
+                int second = MODIFIERS[rand.nextInt(MODIFIERS.length)];
+
+                if (keys.contains(second) == false)
+                {
+                    keys.add(second);
+                }
+            }
+
+            keys.add(KEYS[rand.nextInt(KEYS.length)]);
+
+            KeyBindSettings settings = KeyBindSettings.builder()
+                    .context(contexts.get(rand.nextInt(contexts.size())))
+                    .toggle(rand.nextInt(8) == 0)
+                    .exclusive(rand.nextInt(8) == 0)
+                    .showToast(false)
+                    .build();
+
+            hotkeys.add("hotkey_" + i, keys, settings);
+        }
+
+        return hotkeys;
+    }
+
+    /**
+     * Creates sequences of pressing one or two modifiers and a main key, and then releasing them,
+     * mixed with mouse clicks and scrolls, alternating between the GUI and in-game contexts.
+     * The stream ends with a key still held down.
+     */
+    public static List<RecordedInputEvent> createEvents(int sequenceCount, long seed)
+    {
+        Random rand = new Random(seed);
+        List<RecordedInputEvent> events = new ArrayList<>();
+        long time = 0;
+
+        for (int i = 0; i < sequenceCount; ++i)
+        {
+            boolean screenOpen = (i % 4) == 0;
+
+            if (rand.nextInt(8) == 0)
+            {
+                int button = rand.nextInt(2);
+                events.add(RecordedInputEvent.mouseEvent(time++, button, true, 0, 100, 100, screenOpen));
+                events.add(RecordedInputEvent.mouseEvent(time++, button, false, 0, 100, 100, screenOpen));
+                events.add(RecordedInputEvent.mouseEvent(time++, -1, false, rand.nextBoolean() ? 120 : -120, 100, 100, screenOpen));
+                continue;
+            }
+
+            int modifier = MODIFIERS[rand.nextInt(MODIFIERS.length)];
+            int key = KEYS[rand.nextInt(KEYS.length)];
+
+            events.add(RecordedInputEvent.keyboardEvent(time++, modifier, true, (char) 0, screenOpen));
+            events.add(RecordedInputEvent.keyboardEvent(time++, key, true, (char) 0, screenOpen));
+            events.add(RecordedInputEvent.keyboardEvent(time++, key, false, (char) 0, screenOpen));
+            events.add(RecordedInputEvent.keyboardEvent(time++, modifier, false, (char) 0, screenOpen));
+        }
+
+        events.add(RecordedInputEvent.keyboardEvent(time, MODIFIERS[0], true, (char) 0, false));
+
+        return events;
+    }
+
+    public static class SyntheticHotkeys implements HotkeyProvider
+    {
+        private final List<Hotkey> hotkeys = new ArrayList<>();
+        private int callbackCount;
+
+        public KeyBindImpl add(String name, IntArrayList keys, KeyBindSettings settings)
+        {
+            KeyBindImpl keyBind = KeyBindImpl.fromStorageString("", settings);
+            keyBind.setKeys(keys);
+            keyBind.setCallback((action, key) -> {
+                ++this.callbackCount;
+                return ActionResult.SUCCESS;
+            });
+
+            this.hotkeys.add(new SimpleHotkey(name, keyBind));
+
+            return keyBind;
+        }
+
+        public int getCallbackCount()
+        {
+            return this.callbackCount;
+        }
+
+        public void resetCallbackCount()
+        {
+            this.callbackCount = 0;
+        }
+
+        @Override
+        public List<? extends Hotkey> getAllHotkeys()
+        {
+            return this.hotkeys;
+        }
+
+        @Override
+        public List<HotkeyCategory> getHotkeysByCategories()
+        {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class SimpleHotkey implements Hotkey
+    {
+        private final String name;
+        private final KeyBind keyBind;
+
+        private SimpleHotkey(String name, KeyBind keyBind)
+        {
+            this.name = name;
+            this.keyBind = keyBind;
+        }
+
+        @Override
+        public String getName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public String getDisplayName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public KeyBind getKeyBind()
+        {
+            return this.keyBind;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package fi.dy.masa.malilib.network;
+
+import java.util.Random;
+import org.junit.Test;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class PacketCompressionTest
+{
+    @Test
+    public void testRoundTripCompressed()
+    {
+        byte[] data = new byte[100000];
+
+        for (int i = 0; i < data.length; ++i)
+        {
+            data[i] = (byte) (i % 17);
+        }
+
+        PacketBuffer compressed = PacketCompression.compress(wrap(data), 256);
+        assertEquals(PacketCompression.FLAG_DEFLATE, compressed.getByte(0));
+
+        assertArrayEquals(data, readAll(PacketCompression.decompress(compressed, data.length)));
+    }
+
+    @Test
+    public void testRoundTripBelowThreshold()
+    {
+        byte[] data = new byte[] { 1, 2, 3, 4, 5 };
+
+        PacketBuffer compressed = PacketCompression.compress(wrap(data), 256);
+        assertEquals(PacketCompression.FLAG_UNCOMPRESSED, compressed.getByte(0));
+        assertEquals(data.length + 1, compressed.readableBytes());
+
+        assertArrayEquals(data, readAll(PacketCompression.decompress(compressed, data.length)));
+    }
+
+    @Test
+    public void testRoundTripIncompressible()
+    {
+        byte[] data = new byte[4096];
+        new Random(1234).nextBytes(data);
+
+        // Random data doesn't compress, so it should be stored as-is
+        PacketBuffer compressed = PacketCompression.compress(wrap(data), 256);
+        assertEquals(PacketCompression.FLAG_UNCOMPRESSED, compressed.getByte(0));
+
+        assertArrayEquals(data, readAll(PacketCompression.decompress(compressed, data.length)));
+    }
+
+    @Test
+    public void testDeclaredLengthAboveMaxIsRejected()
+    {
+        byte[] data = new byte[10000];
+        PacketBuffer compressed = PacketCompression.compress(wrap(data), 256);
+
+        assertRejected(compressed, data.length - 1);
+    }
+
+    @Test
+    public void testImpossibleDeclaredLengthIsRejectedBeforeInflating()
+    {
+        // A few bytes of "compressed" data claiming a 60 MiB payload. The size check should
+        // fail before the output array is allocated or the garbage data is inflated.
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        buf.writeByte(PacketCompression.FLAG_DEFLATE);
+        buf.writeVarInt(60 * 1024 * 1024);
+        buf.writeBytes(new byte[] { 1, 2, 3, 4 });
+
+        try
+        {
+            PacketCompression.decompress(buf, PacketSplitter.DEFAULT_MAX_RECEIVE_SIZE_S2C);
+            fail("The impossible uncompressed size should have been rejected");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // The data after the size must not have been read
+            assertEquals(4, buf.readableBytes());
+        }
+    }
+
+    @Test
+    public void testNegativeDeclaredLengthIsRejected()
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        buf.writeByte(PacketCompression.FLAG_DEFLATE);
+        buf.writeVarInt(-1);
+        buf.writeBytes(new byte[16]);
+
+        assertRejected(buf, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testTruncatedPayloadIsRejected()
+    {
+        byte[] data = new byte[10000];
+        PacketBuffer compressed = PacketCompression.compress(wrap(data), 256);
+        PacketBuffer truncated = new PacketBuffer(compressed.copy(0, compressed.readableBytes() / 2));
+
+        assertRejected(truncated, data.length);
+    }
+
+    @Test
+    public void testInvalidFlagIsRejected()
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        buf.writeByte(7);
+        buf.writeBytes(new byte[16]);
+
+        assertRejected(buf, 1024);
+    }
+
+    private static void assertRejected(PacketBuffer buf, int maxLength)
+    {
+        try
+        {
+            PacketCompression.decompress(buf, maxLength);
+            fail("The payload should have been rejected");
+        }
+        catch (IllegalArgumentException ignore)
+        {
+        }
+    }
+
+    private static PacketBuffer wrap(byte[] data)
+    {
+        return new PacketBuffer(Unpooled.copiedBuffer(data));
+    }
+
+    private static byte[] readAll(PacketBuffer buf)
+    {
+        byte[] arr = new byte[buf.readableBytes()];
+        buf.readBytes(arr);
+        return arr;
+    }
+}
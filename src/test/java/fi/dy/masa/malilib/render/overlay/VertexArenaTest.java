@@ -0,0 +1,321 @@
+package fi.dy.masa.malilib.render.overlay;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class VertexArenaTest
+{
+    private static final int VERTEX_SIZE = 16;
+
+    @Test
+    public void testAddAndRemove()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        int id1 = arena.add(data(4, 1));
+        int id2 = arena.add(data(2, 2));
+        int id3 = arena.add(data(3, 3));
+
+        assertEquals(3, arena.getRegionCount());
+        assertEquals(9 * VERTEX_SIZE, arena.getUsedEnd());
+        assertEquals(9, arena.getVertexCount());
+        assertEquals(0, getOffset(arena, id1));
+        assertEquals(4 * VERTEX_SIZE, getOffset(arena, id2));
+        assertEquals(6 * VERTEX_SIZE, getOffset(arena, id3));
+        assertFilled(arena, 0, 4, 1);
+        assertFilled(arena, 4, 2, 2);
+        assertFilled(arena, 6, 3, 3);
+
+        assertTrue(arena.remove(id2));
+        assertFalse(arena.remove(id2));
+        assertEquals(2, arena.getRegionCount());
+        assertEquals(9 * VERTEX_SIZE, arena.getUsedEnd());
+        assertEquals(2 * VERTEX_SIZE, arena.getFreeBytes());
+
+        // Removing the last region shrinks the used area instead of leaving a free range
+        assertTrue(arena.remove(id3));
+        assertEquals(4 * VERTEX_SIZE, arena.getUsedEnd());
+        assertEquals(0, arena.getFreeBytes());
+    }
+
+    @Test
+    public void testAddDoesNotChangeTheSourcePosition()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+        ByteBuffer data = data(2, 7);
+        data.position(VERTEX_SIZE);
+
+        arena.add(data);
+
+        assertEquals(VERTEX_SIZE, data.position());
+        assertEquals(VERTEX_SIZE, arena.getUsedEnd());
+        assertFilled(arena, 0, 1, 7);
+    }
+
+    @Test
+    public void testReplaceSameSizeInPlace()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        arena.add(data(2, 1));
+        int id = arena.add(data(2, 2));
+        arena.add(data(2, 3));
+        arena.clearDirty();
+
+        assertEquals(id, arena.replace(id, data(2, 9)));
+        assertEquals(2 * VERTEX_SIZE, getOffset(arena, id));
+        assertFilled(arena, 2, 2, 9);
+        assertDirtyRanges(arena, new int[] { 2 * VERTEX_SIZE, 2 * VERTEX_SIZE });
+    }
+
+    @Test
+    public void testReplaceDifferentSizeMovesTheRegion()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        arena.add(data(2, 1));
+        int id = arena.add(data(2, 2));
+        arena.add(data(2, 3));
+
+        int newId = arena.replace(id, data(3, 9));
+
+        assertNotEquals(id, newId);
+        assertEquals(-1, arena.replace(id, data(3, 9)));
+        assertFalse(arena.remove(id));
+        assertEquals(3, arena.getRegionCount());
+        assertEquals(6 * VERTEX_SIZE, getOffset(arena, newId));
+        assertFilled(arena, 2, 2, 0);
+        assertFilled(arena, 6, 3, 9);
+        assertEquals(2 * VERTEX_SIZE, arena.getFreeBytes());
+    }
+
+    @Test
+    public void testFreeRangeReuse()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        arena.add(data(2, 1));
+        int id = arena.add(data(4, 2));
+        arena.add(data(2, 3));
+        arena.remove(id);
+
+        // A smaller region goes to the start of the free range, and the rest stays free
+        int id2 = arena.add(data(1, 4));
+        assertEquals(2 * VERTEX_SIZE, getOffset(arena, id2));
+        assertEquals(3 * VERTEX_SIZE, arena.getFreeBytes());
+
+        // A region that doesn't fit in the free range goes to the end
+        int id3 = arena.add(data(4, 5));
+        assertEquals(8 * VERTEX_SIZE, getOffset(arena, id3));
+
+        // An exact fit uses up the rest of the free range
+        int id4 = arena.add(data(3, 6));
+        assertEquals(3 * VERTEX_SIZE, getOffset(arena, id4));
+        assertEquals(0, arena.getFreeBytes());
+        assertEquals(12 * VERTEX_SIZE, arena.getUsedEnd());
+    }
+
+    @Test
+    public void testFreeRangeMerging()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        int id1 = arena.add(data(2, 1));
+        int id2 = arena.add(data(2, 2));
+        int id3 = arena.add(data(2, 3));
+        arena.add(data(2, 4));
+
+        // Freed in an order that requires merging with the range both before and after
+        arena.remove(id1);
+        arena.remove(id3);
+        arena.remove(id2);
+
+        assertEquals(6 * VERTEX_SIZE, arena.getFreeBytes());
+
+        // The merged range fits a region of the combined size
+        int id = arena.add(data(6, 5));
+        assertEquals(0, getOffset(arena, id));
+        assertEquals(0, arena.getFreeBytes());
+        assertEquals(8 * VERTEX_SIZE, arena.getUsedEnd());
+    }
+
+    @Test
+    public void testFreeRangeMergingAtTheEnd()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        arena.add(data(2, 1));
+        int id2 = arena.add(data(2, 2));
+        int id3 = arena.add(data(2, 3));
+
+        // The free range before the last region merges into the shrinking used area
+        arena.remove(id2);
+        arena.remove(id3);
+
+        assertEquals(2 * VERTEX_SIZE, arena.getUsedEnd());
+        assertEquals(0, arena.getFreeBytes());
+    }
+
+    @Test
+    public void testDirtyRangeMerging()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+        int[] ids = new int[6];
+
+        for (int i = 0; i < ids.length; ++i)
+        {
+            ids[i] = arena.add(data(1, i + 1));
+        }
+
+        // All the adds are adjacent, so they merge into one range
+        assertDirtyRanges(arena, new int[] { 0, 6 * VERTEX_SIZE });
+        arena.clearDirty();
+        assertFalse(arena.isDirty());
+
+        // Separate ranges stay separate, and are sorted by offset
+        arena.replace(ids[4], data(1, 9));
+        arena.replace(ids[1], data(1, 9));
+        assertDirtyRanges(arena, new int[] { 1 * VERTEX_SIZE, VERTEX_SIZE }, new int[] { 4 * VERTEX_SIZE, VERTEX_SIZE });
+
+        // Filling the gap between them merges everything into one range
+        arena.replace(ids[2], data(1, 9));
+        arena.replace(ids[3], data(1, 9));
+        assertDirtyRanges(arena, new int[] { 1 * VERTEX_SIZE, 4 * VERTEX_SIZE });
+
+        // Overlapping ranges merge
+        arena.replace(ids[1], data(1, 8));
+        assertDirtyRanges(arena, new int[] { 1 * VERTEX_SIZE, 4 * VERTEX_SIZE });
+
+        arena.clearDirty();
+        assertEquals(0, arena.getDirtyRanges().size());
+    }
+
+    @Test
+    public void testGrowth()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 2 * VERTEX_SIZE + 5);
+
+        // The initial capacity is rounded down to whole vertices
+        assertEquals(2 * VERTEX_SIZE, arena.getCapacity());
+
+        arena.add(data(2, 1));
+        assertFalse(arena.hasCapacityChanged());
+
+        arena.add(data(3, 2));
+
+        assertTrue(arena.hasCapacityChanged());
+        assertTrue(arena.isDirty());
+        assertTrue(arena.getCapacity() >= 5 * VERTEX_SIZE);
+        assertEquals(0, arena.getCapacity() % VERTEX_SIZE);
+        assertFilled(arena, 0, 2, 1);
+        assertFilled(arena, 2, 3, 2);
+
+        arena.clearDirty();
+        assertFalse(arena.hasCapacityChanged());
+        assertFalse(arena.isDirty());
+
+        // A small overflow doubles the capacity
+        int capacity = arena.getCapacity();
+        arena.add(data(capacity / VERTEX_SIZE - 5, 3));
+        arena.add(data(1, 4));
+        assertEquals(capacity * 2, arena.getCapacity());
+        assertFilled(arena, 0, 2, 1);
+    }
+
+    @Test
+    public void testFreedRangesAreZeroed()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        arena.add(data(2, 1));
+        int id = arena.add(data(2, 2));
+        arena.add(data(2, 3));
+        arena.clearDirty();
+
+        arena.remove(id);
+
+        assertFilled(arena, 0, 2, 1);
+        assertFilled(arena, 2, 2, 0);
+        assertFilled(arena, 4, 2, 3);
+
+        // The zeroed range must also be uploaded
+        assertDirtyRanges(arena, new int[] { 2 * VERTEX_SIZE, 2 * VERTEX_SIZE });
+
+        arena.clearDirty();
+        arena.clear();
+
+        assertEquals(0, arena.getRegionCount());
+        assertEquals(0, arena.getUsedEnd());
+        assertEquals(0, arena.getFreeBytes());
+        assertFilled(arena, 0, 6, 0);
+        assertDirtyRanges(arena, new int[] { 0, 6 * VERTEX_SIZE });
+    }
+
+    @Test
+    public void testUnalignedDataIsRejected()
+    {
+        VertexArena arena = new VertexArena(VERTEX_SIZE, 1024);
+
+        try
+        {
+            arena.add(ByteBuffer.allocate(VERTEX_SIZE + 1));
+            fail("Expected an exception for a partial vertex");
+        }
+        catch (IllegalArgumentException ignore)
+        {
+        }
+
+        assertEquals(0, arena.getRegionCount());
+        assertEquals(0, arena.getUsedEnd());
+    }
+
+    private static ByteBuffer data(int vertexCount, int value)
+    {
+        ByteBuffer buf = ByteBuffer.allocate(vertexCount * VERTEX_SIZE);
+
+        while (buf.hasRemaining())
+        {
+            buf.put((byte) value);
+        }
+
+        buf.flip();
+
+        return buf;
+    }
+
+    private static int getOffset(VertexArena arena, int id)
+    {
+        return arena.regions.get(id).offset;
+    }
+
+    private static void assertFilled(VertexArena arena, int startVertex, int vertexCount, int value)
+    {
+        ByteBuffer buf = arena.getBuffer();
+        int end = (startVertex + vertexCount) * VERTEX_SIZE;
+
+        for (int i = startVertex * VERTEX_SIZE; i < end; ++i)
+        {
+            assertEquals("Wrong value at byte " + i, (byte) value, buf.get(i));
+        }
+    }
+
+    private static void assertDirtyRanges(VertexArena arena, int[]... expected)
+    {
+        List<int[]> ranges = arena.getDirtyRanges();
+
+        assertEquals(expected.length, ranges.size());
+
+        for (int i = 0; i < expected.length; ++i)
+        {
+            assertArrayEquals(expected[i], ranges.get(i));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package fi.dy.masa.malilib.render.text;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the single-pass {@link StyledTextParser} against the original regex based
+ * parser in {@link BaselineStyledTextParser}.
+ * Run with for example: gradlew jmh -PjmhArgs="StyledTextParserBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StyledTextParserBenchmark
+{
+    @Param({ "plain", "vanilla", "tags", "colors", "mixed" })
+    public String input;
+
+    private String str;
+
+    @Setup
+    public void setup()
+    {
+        this.str = createInput(this.input);
+    }
+
+    @Benchmark
+    public void baseline(Blackhole bh)
+    {
+        CountingBuilder builder = new CountingBuilder();
+        BaselineStyledTextParser.parseString(this.str, builder);
+        builder.consume(bh);
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole bh)
+    {
+        CountingBuilder builder = new CountingBuilder();
+        StyledTextParser.parseString(this.str, builder);
+        builder.consume(bh);
+    }
+
+    /**
+     * The vanilla color codes would need the game's text renderer for the color values,
+     * so only the vanilla formatting codes are used here.
+     */
+    private static String createInput(String type)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; i < 8; ++i)
+        {
+            switch (type)
+            {
+                case "plain":
+                    sb.append("The quick brown fox jumps over the lazy dog, entry ").append(i).append(". ");
+                    break;
+                case "vanilla":
+                    sb.append("§lEntry §o").append(i).append("§r: §nvalue §m(").append(i * 31).append(")§r ");
+                    break;
+                case "tags":
+                    sb.append("<b>Entry</b> <i>").append(i).append("</i>: <u>value</u> <s>old</s> <o>x</o> ");
+                    break;
+                case "colors":
+                    sb.append("<c=FF").append(i).append("0A0>Entry</c> <c=#40C0FFFF>").append(i)
+                      .append("</c> <csh=FFFFFF>shadow</csh> ");
+                    break;
+                default:
+                    sb.append("§lEntry <b>").append(i).append("</b> <c=FFA0A0>value</c>\\n§oa < b §rdone\n");
+                    break;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * A builder that only counts the committed segments and lines,
+     * so that the glyph lookups via the game's text renderer are not needed.
+     */
+    private static class CountingBuilder extends StyledText.Builder
+    {
+        private int segmentCount;
+        private int charCount;
+        private int lineCount;
+        private int styleHash;
+
+        @Override
+        protected void commitCurrentSegmentUsingStyle(TextStyle style, boolean force)
+        {
+            if (force || this.displayStringForCurrentSegment.length() > 0)
+            {
+                ++this.segmentCount;
+                this.charCount += this.displayStringForCurrentSegment.length() + this.originalTextStringForCurrentSegment.length();
+                this.styleHash = 31 * this.styleHash + style.hashCode();
+
+                this.displayStringForCurrentSegment = new StringBuilder();
+                this.originalTextStringForCurrentSegment = new StringBuilder();
+            }
+        }
+
+        @Override
+        protected void commitCurrentLine(boolean force)
+        {
+            this.commitCurrentSegment(force);
+            ++this.lineCount;
+        }
+
+        private void consume(Blackhole bh)
+        {
+            bh.consume(this.segmentCount);
+            bh.consume(this.charCount);
+            bh.consume(this.lineCount);
+            bh.consume(this.styleHash);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package fi.dy.masa.malilib.render.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import org.junit.Test;
+import fi.dy.masa.malilib.util.StringReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Differential tests of the single-pass {@link StyledTextParser#parseString(String, StyledText.Builder)}
+ * and the remaining token based path via {@link StyledTextParser#readTokens(StringReader, List)},
+ * against the original regex based parser in {@link BaselineStyledTextParser}.
+ * All of them are run against a builder that records the committed segments and line breaks,
+ * so that the glyph lookups (which need the game's text renderer) are not needed.
+ */
+public class StyledTextParserTest
+{
+    private static final String VANILLA_COLOR_CODES = "0123456789abcdefABCDEF";
+    private static final String[] FRAGMENTS = new String[] {
+            "<b>", "</b>", "<!i>", "<i>", "<u>", "<^u>", "<st>", "</st>", "<sh>", "</sh>",
+            "<rnd>", "<!rnd>", "<rst>", "</rst>", "</c>", "</csh>", "<!c>", "<c>", "<csh>",
+            "<c=F0F>", "<c=8F0F>", "<c=FF00FF>", "<c=80ff00ff>", "<csh=FF30F030>", "<csh=abc>",
+            "<c=FF00F>", "<c=GG>", "<c=FFFFFFFFF>", "<c=>", "<c=", "<csh=", "<b", "<", ">", "/", "=",
+            "\\", "\\n", "\\\\n", "\\<b>", "\\§l", "\n", "§l", "§k", "§m", "§n", "§o", "§r", "§L", "§R", "§",
+            "abc", "x", " ", "Hello World", "ö", "\t",
+            // Non-ASCII digits and letters, which are not valid hex digits
+            "٣", "Ａ", "ａ", "０", "９", "ｆ", "ß", "İ", "K",
+            "<c=٣٣٣>", "<c=ＡＡＡ>", "<c=FF٣>", "<csh=０FF>", "<c=ｆｆｆｆｆｆ>", "<c=FFFF٣٣>"
+    };
+
+    @Test
+    public void testExamples()
+    {
+        assertSameResult("");
+        assertSameResult("plain text only");
+        assertSameResult("<b>This is Bold</b> this is normal <i>some Italic</i> and normal");
+        assertSameResult("Normal text <u>some Underline</u> normal again <st>StrikeThrough</st>");
+        assertSameResult("Normal <c=FFFF5090>colored</c> normal <c=FF30FF90>other color <b>Bold <i>Italic <rnd>Random <rst>normal");
+        assertSameResult("Normal <sh>shadow</sh> <c=FFF000F0>colored</c> <csh=FF30F030>shadow color</csh> normal");
+        assertSameResult("line 1\\nline 2\nline 3\\\\n still line 3");
+        assertSameResult("§lbold§r §kobfuscated §ounderlined §§l \\§l");
+        assertSameResult("<c=FF00F>invalid <c=GG>colors <c=FFFFFFFFF> and \\<b> escaped <b");
+        assertSameResult("trailing <");
+        assertSameResult("trailing §");
+        assertSameResult("trailing \\");
+        assertSameResult("<c=٣٣٣>not a color</c> <c=ＡＡＡ>not a color either <c=FfF>but this is");
+    }
+
+    @Test
+    public void testRandomStrings()
+    {
+        Random rand = new Random(0x5EED);
+
+        for (int i = 0; i < 20000; ++i)
+        {
+            assertSameResult(createRandomString(rand));
+        }
+    }
+
+    @Test
+    public void testRandomStringsWithStartingStyle()
+    {
+        Random rand = new Random(0xC0FFEE);
+        TextStyle style = TextStyle.builder().withBold(true).withUnderline(true).build();
+
+        for (int i = 0; i < 5000; ++i)
+        {
+            String str = createRandomString(rand);
+
+            RecordingBuilder expected = new RecordingBuilder(style);
+            RecordingBuilder actual = new RecordingBuilder(style);
+            RecordingBuilder actualTokens = new RecordingBuilder(style);
+
+            BaselineStyledTextParser.parseString(str, expected);
+            StyledTextParser.parseString(str, actual);
+            parseViaTokens(str, actualTokens);
+
+            assertEquals("Different result for string: '" + str + "'", expected.events, actual.events);
+            assertEquals("Different token result for string: '" + str + "'", expected.events, actualTokens.events);
+        }
+    }
+
+    private static void assertSameResult(String str)
+    {
+        RecordingBuilder expected = new RecordingBuilder();
+        RecordingBuilder actual = new RecordingBuilder();
+        RecordingBuilder actualTokens = new RecordingBuilder();
+
+        BaselineStyledTextParser.parseString(str, expected);
+        StyledTextParser.parseString(str, actual);
+        parseViaTokens(str, actualTokens);
+
+        assertEquals("Different result for string: '" + str + "'", expected.events, actual.events);
+        assertEquals("Different token result for string: '" + str + "'", expected.events, actualTokens.events);
+    }
+
+    private static void parseViaTokens(String str, StyledText.Builder builder)
+    {
+        List<StyledTextParser.Token> tokens = new ArrayList<>();
+        StyledTextParser.readTokens(new StringReader(str), tokens);
+        StyledTextParser.parseTokensToStyledText(tokens, builder);
+    }
+
+    private static String createRandomString(Random rand)
+    {
+        StringBuilder sb = new StringBuilder();
+        int count = rand.nextInt(16);
+
+        for (int i = 0; i < count; ++i)
+        {
+            sb.append(FRAGMENTS[rand.nextInt(FRAGMENTS.length)]);
+        }
+
+        // The vanilla color codes would need the game's text renderer for the color values,
+        // so break up any that got created by concatenating the fragments
+        for (int i = 0; i < sb.length() - 1; ++i)
+        {
+            if (sb.charAt(i) == '§' && VANILLA_COLOR_CODES.indexOf(sb.charAt(i + 1)) != -1)
+            {
+                sb.setCharAt(i, '?');
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * A builder that records the committed segments and lines instead of building the actual text lines
+     */
+    private static class RecordingBuilder extends StyledText.Builder
+    {
+        private final List<Object> events = new ArrayList<>();
+
+        RecordingBuilder()
+        {
+        }
+
+        RecordingBuilder(TextStyle startingStyle)
+        {
+            super(startingStyle);
+        }
+
+        @Override
+        protected void commitCurrentSegmentUsingStyle(TextStyle style, boolean force)
+        {
+            if (force || this.displayStringForCurrentSegment.length() > 0)
+            {
+                this.events.add(new Segment(style,
+                                            this.displayStringForCurrentSegment.toString(),
+                                            this.originalTextStringForCurrentSegment.toString()));
+
+                this.displayStringForCurrentSegment = new StringBuilder();
+                this.originalTextStringForCurrentSegment = new StringBuilder();
+            }
+        }
+
+        @Override
+        protected void commitCurrentLine(boolean force)
+        {
+            this.commitCurrentSegment(force);
+            this.events.add("<line>");
+        }
+    }
+
+    private static class Segment
+    {
+        private final TextStyle style;
+        private final String displayString;
+        private final String originalString;
+
+        private Segment(TextStyle style, String displayString, String originalString)
+        {
+            this.style = style;
+            this.displayString = displayString;
+            this.originalString = originalString;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) { return true; }
+            if (o == null || this.getClass() != o.getClass()) { return false; }
+
+            Segment other = (Segment) o;
+
+            return this.style.equals(other.style) &&
+                   this.displayString.equals(other.displayString) &&
+                   this.originalString.equals(other.originalString);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(this.style, this.displayString, this.originalString);
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Segment{display='" + this.displayString + "', original='" + this.originalString + "', style=" + this.style + "}";
+        }
+    }
+}
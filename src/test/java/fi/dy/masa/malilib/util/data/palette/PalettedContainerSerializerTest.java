@@ -0,0 +1,359 @@
+package fi.dy.masa.malilib.util.data.palette;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PalettedContainerSerializerTest
+{
+    private static final int SIZE = 16 * 16 * 16;
+    private static final int DIRECT_BITS = 12;
+
+    @Test
+    public void testObjectRoundTripLinearPalette()
+    {
+        PalettedContainer<Integer> container = createContainer(SIZE, 10, 1L);
+        PalettedContainer<Integer> read = roundTrip(container);
+
+        assertTrue(read.getPalette() instanceof LinearPalette);
+        assertSameContents(container, read);
+    }
+
+    @Test
+    public void testObjectRoundTripHashPalette()
+    {
+        PalettedContainer<Integer> container = createContainer(SIZE, 200, 2L);
+        PalettedContainer<Integer> read = roundTrip(container);
+
+        assertTrue(read.getPalette() instanceof HashMapPalette);
+        assertSameContents(container, read);
+    }
+
+    @Test
+    public void testObjectRoundTripDirectPalette()
+    {
+        PalettedContainer<Integer> container = createContainer(SIZE, 1000, 3L);
+        assertTrue(container.getPalette() instanceof DirectPalette);
+
+        PalettedContainer<Integer> read = roundTrip(container);
+
+        assertTrue(read.getPalette() instanceof DirectPalette);
+        assertSameContents(container, read);
+    }
+
+    @Test
+    public void testIntRoundTripLinearPalette()
+    {
+        IntPalettedContainer container = createIntContainer(SIZE, 10, 4L);
+        IntPalettedContainer read = roundTrip(container);
+
+        assertTrue(read.getPalette() instanceof LinearIntPalette);
+        assertSameContents(container, read);
+    }
+
+    @Test
+    public void testIntRoundTripHashPalette()
+    {
+        IntPalettedContainer container = createIntContainer(SIZE, 200, 5L);
+        IntPalettedContainer read = roundTrip(container);
+
+        assertTrue(read.getPalette() instanceof HashMapIntPalette);
+        assertSameContents(container, read);
+    }
+
+    @Test
+    public void testIntRoundTripDirectPalette()
+    {
+        IntPalettedContainer container = createIntContainer(SIZE, 1000, 6L);
+        assertTrue(container.getPalette() instanceof DirectIntPalette);
+
+        IntPalettedContainer read = roundTrip(container);
+
+        assertTrue(read.getPalette() instanceof DirectIntPalette);
+        assertSameContents(container, read);
+    }
+
+    @Test
+    public void testRoundTripMappedFile() throws IOException
+    {
+        PalettedContainer<Integer> container = createContainer(SIZE * 4, 200, 7L);
+        IntPalettedContainer intContainer = createIntContainer(SIZE * 4, 1000, 8L);
+        Path file = Files.createTempFile("malilib_palette", ".bin");
+        Path intFile = Files.createTempFile("malilib_palette_int", ".bin");
+
+        try
+        {
+            assertTrue(PalettedContainerSerializer.writeToFile(container, PalettedContainerSerializerTest::writeValue, file));
+            assertTrue(PalettedContainerSerializer.writeToFile(intContainer, intFile));
+
+            PalettedContainer<Integer> read = PalettedContainerSerializer.readFromFile(file, PacketBuffer::readVarInt, 0, createDirectPalette());
+            IntPalettedContainer intRead = PalettedContainerSerializer.readFromFile(intFile, 0, new DirectIntPalette(DIRECT_BITS));
+
+            assertNotNull(read);
+            assertNotNull(intRead);
+            assertSameContents(container, read);
+            assertSameContents(intContainer, intRead);
+        }
+        finally
+        {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(intFile);
+        }
+    }
+
+    @Test
+    public void testMissingFile()
+    {
+        Path file = Paths.get("malilib_palette_does_not_exist.bin");
+
+        assertNull(PalettedContainerSerializer.readFromFile(file, 0, null));
+    }
+
+    @Test
+    public void testCorruptHeaders()
+    {
+        // Unsupported format version
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION + 1, 4, SIZE, 2)));
+
+        // Invalid entry widths
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION, 0, SIZE, 2)));
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION, 33, SIZE, 2)));
+
+        // Negative and huge sizes, which must be rejected before anything gets allocated for them
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION, 4, -1L, 2)));
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION, 4, 1L << 35, 2)));
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION, 32, Long.MAX_VALUE, 2)));
+        assertNull(readObject(header(PalettedContainerSerializer.FORMAT_VERSION, 4, 1L << 35, 2)));
+
+        // The palette can't be larger than what the entry width allows, or than the remaining data
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION, 2, SIZE, 5)));
+        assertNull(readInt(header(PalettedContainerSerializer.FORMAT_VERSION, 8, 16, 200, false)));
+
+        // Truncated packed data
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        PalettedContainerSerializer.write(createIntContainer(SIZE, 10, 9L), buf);
+        buf.writerIndex(buf.writerIndex() - 8);
+        assertNull(readInt(buf));
+
+        // Direct palette data without a direct palette to read it with
+        buf = new PacketBuffer(Unpooled.buffer());
+        PalettedContainerSerializer.write(createIntContainer(SIZE, 1000, 10L), buf);
+        assertNull(PalettedContainerSerializer.read(buf, 0, null));
+    }
+
+    /**
+     * Compares the throughput of the binary format against persisting the containers via
+     * the List based palette mapping, with the entries written and read back one at a time.
+     */
+    @Test
+    public void testThroughputAgainstListPath()
+    {
+        final int size = 64 * 64 * 64;
+        final int iterations = 10;
+        PalettedContainer<Integer> container = createContainer(size, 200, 11L);
+        long binaryTime = 0;
+        long listTime = 0;
+
+        for (int i = 0; i < iterations * 2; ++i)
+        {
+            long start = System.nanoTime();
+            PalettedContainer<Integer> readBinary = roundTrip(container);
+            long mid = System.nanoTime();
+            PalettedContainer<Integer> readList = roundTripViaList(container);
+            long end = System.nanoTime();
+
+            // The first half are warmup rounds
+            if (i >= iterations)
+            {
+                binaryTime += mid - start;
+                listTime += end - mid;
+            }
+
+            if (i == 0)
+            {
+                assertSameContents(container, readBinary);
+                assertSameContents(container, readList);
+            }
+        }
+
+        System.out.printf("Paletted container round trip of %d entries: binary: %.3f ms, List based: %.3f ms%n",
+                          size, binaryTime / (iterations * 1000000.0), listTime / (iterations * 1000000.0));
+    }
+
+    private static PalettedContainer<Integer> roundTrip(PalettedContainer<Integer> container)
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        PalettedContainerSerializer.write(container, PalettedContainerSerializerTest::writeValue, buf);
+
+        PalettedContainer<Integer> read = readObject(buf);
+        assertNotNull(read);
+        assertEquals(0, buf.readableBytes());
+
+        return read;
+    }
+
+    private static IntPalettedContainer roundTrip(IntPalettedContainer container)
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        PalettedContainerSerializer.write(container, buf);
+
+        IntPalettedContainer read = readInt(buf);
+        assertNotNull(read);
+        assertEquals(0, buf.readableBytes());
+
+        return read;
+    }
+
+    private static PalettedContainer<Integer> roundTripViaList(PalettedContainer<Integer> container)
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+        List<Integer> mapping = container.getPalette().getMapping();
+        final long size = container.getSize();
+
+        buf.writeVarInt(mapping.size());
+
+        for (Integer value : mapping)
+        {
+            writeValue(value, buf);
+        }
+
+        for (long i = 0; i < size; ++i)
+        {
+            buf.writeVarInt(container.getStorage().getAt(i));
+        }
+
+        int mappingSize = buf.readVarInt();
+        List<Integer> readMapping = new ArrayList<>(mappingSize);
+
+        for (int i = 0; i < mappingSize; ++i)
+        {
+            readMapping.add(buf.readVarInt());
+        }
+
+        PalettedContainer<Integer> read = new PalettedContainer<>(size, 0, createDirectPalette());
+
+        for (long i = 0; i < size; ++i)
+        {
+            read.set(i, readMapping.get(buf.readVarInt()));
+        }
+
+        return read;
+    }
+
+    private static PalettedContainer<Integer> readObject(PacketBuffer buf)
+    {
+        return PalettedContainerSerializer.read(buf, PacketBuffer::readVarInt, 0, createDirectPalette());
+    }
+
+    private static IntPalettedContainer readInt(PacketBuffer buf)
+    {
+        return PalettedContainerSerializer.read(buf, 0, new DirectIntPalette(DIRECT_BITS));
+    }
+
+    private static PacketBuffer header(int version, int bits, long size, int mappingSize)
+    {
+        return header(version, bits, size, mappingSize, true);
+    }
+
+    /**
+     * Creates a header, optionally followed by enough palette entries and data to pass the simple length checks
+     */
+    private static PacketBuffer header(int version, int bits, long size, int mappingSize, boolean addData)
+    {
+        PacketBuffer buf = new PacketBuffer(Unpooled.buffer());
+
+        buf.writeVarInt(version);
+        buf.writeByte(bits);
+        buf.writeVarLong(size);
+        buf.writeVarInt(mappingSize);
+
+        if (addData == false)
+        {
+            return buf;
+        }
+
+        for (int i = 0; i < 256; ++i)
+        {
+            buf.writeVarInt(i);
+        }
+
+        buf.writeVarInt(64);
+
+        for (int i = 0; i < 64; ++i)
+        {
+            buf.writeLong(0L);
+        }
+
+        return buf;
+    }
+
+    private static void writeValue(Integer value, PacketBuffer buf)
+    {
+        buf.writeVarInt(value);
+    }
+
+    private static DirectPalette<Integer> createDirectPalette()
+    {
+        return new DirectPalette<>(DIRECT_BITS, Integer::intValue, Integer::valueOf);
+    }
+
+    private static PalettedContainer<Integer> createContainer(int size, int valueCount, long seed)
+    {
+        PalettedContainer<Integer> container = new PalettedContainer<>(size, 0, createDirectPalette());
+        Random rand = new Random(seed);
+
+        for (int i = 0; i < size; ++i)
+        {
+            container.set(i, i < valueCount ? i : rand.nextInt(valueCount));
+        }
+
+        return container;
+    }
+
+    private static IntPalettedContainer createIntContainer(int size, int valueCount, long seed)
+    {
+        IntPalettedContainer container = new IntPalettedContainer(size, 0, new DirectIntPalette(DIRECT_BITS));
+        Random rand = new Random(seed);
+
+        for (int i = 0; i < size; ++i)
+        {
+            container.set(i, i < valueCount ? i : rand.nextInt(valueCount));
+        }
+
+        return container;
+    }
+
+    private static void assertSameContents(PalettedContainer<Integer> expected, PalettedContainer<Integer> actual)
+    {
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.getBits(), actual.getBits());
+
+        for (long i = 0; i < expected.getSize(); ++i)
+        {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertSameContents(IntPalettedContainer expected, IntPalettedContainer actual)
+    {
+        assertEquals(expected.getSize(), actual.getSize());
+        assertEquals(expected.getBits(), actual.getBits());
+
+        for (long i = 0; i < expected.getSize(); ++i)
+        {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+    }
+}